@@ -3,12 +3,14 @@ package com.clouddrive;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 云盘系统启动类
  */
 @SpringBootApplication
 @MapperScan("com.clouddrive.mapper")
+@EnableScheduling
 public class CloudDriveApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,59 @@
+package com.clouddrive.config;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 异步任务配置类
+ * 文件索引监听器等@Async方法在专用线程池中执行，子树索引更新不阻塞请求线程。
+ * 线程池和队列都有上限，队列已满时由发布事件的线程自己执行，索引更新不会丢失
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig implements AsyncConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncConfig.class);
+
+    private final ThreadPoolTaskExecutor asyncTaskExecutor;
+
+    public AsyncConfig(@Value("${async.core-pool-size:4}") int corePoolSize,
+                       @Value("${async.max-pool-size:8}") int maxPoolSize,
+                       @Value("${async.queue-capacity:1000}") int queueCapacity) {
+        // 不注册为Bean，避免替换Spring Boot默认的应用线程池
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("async-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        this.asyncTaskExecutor = executor;
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return asyncTaskExecutor;
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (e, method, params) -> log.error("异步任务执行失败: {}, {}", method.getName(), e.getMessage(), e);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        asyncTaskExecutor.shutdown();
+    }
+}
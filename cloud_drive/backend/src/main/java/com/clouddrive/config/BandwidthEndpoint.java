@@ -0,0 +1,35 @@
+package com.clouddrive.config;
+
+import com.clouddrive.service.BandwidthService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 下载限速管理端点（/actuator/bandwidth）
+ * GET查看当前限速，POST {"scope": "global|user|share", "key": "用户ID或分享码", "bytesPerSecond": 1048576} 调整限速。
+ * 端点只能通过监控端口（management.server.port）访问，见SecurityConfig
+ */
+@Component
+@Endpoint(id = "bandwidth")
+public class BandwidthEndpoint {
+
+    @Autowired
+    private BandwidthService bandwidthService;
+
+    @ReadOperation
+    public Map<String, Object> limits() {
+        return bandwidthService.getLimits();
+    }
+
+    @WriteOperation
+    public Map<String, Object> setLimit(String scope, @Nullable String key, long bytesPerSecond) {
+        bandwidthService.setLimit(scope, key, bytesPerSecond);
+        return bandwidthService.getLimits();
+    }
+}
@@ -0,0 +1,35 @@
+package com.clouddrive.config;
+
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对象删除队列配置
+ * 彻底删除文件时待删除对象先登记到storage_tombstone表，事务提交后将记录ID发送到该队列，由后台消费者批量删除对象
+ */
+@Configuration
+public class DeletionQueueConfig {
+
+    @Value("${storage.deletion.queue:storage.deletion}")
+    private String queueName;
+
+    /**
+     * 持久化队列，消息中只有待删除记录ID，丢失时由定时任务根据表中记录补偿
+     */
+    @Bean
+    public Queue storageDeletionQueue() {
+        return new Queue(queueName, true);
+    }
+
+    /**
+     * 消息以JSON格式传输
+     */
+    @Bean
+    public MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
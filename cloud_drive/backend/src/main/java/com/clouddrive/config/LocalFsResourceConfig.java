@@ -0,0 +1,41 @@
+package com.clouddrive.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.nio.file.Paths;
+
+/**
+ * 本地文件系统存储的公开对象访问配置
+ * 与MinIO存储桶策略一致，只公开头像前缀下的对象，上传接口返回的URL（storage.local.url-prefix + 对象名称）由此处提供；
+ * 其他对象仍需通过下载接口鉴权后读取
+ */
+@Configuration
+@Profile("localfs")
+public class LocalFsResourceConfig implements WebMvcConfigurer {
+
+    /**
+     * 公开访问的对象前缀
+     */
+    public static final String PUBLIC_PREFIX = "avatars/";
+
+    @Value("${storage.local.root:./data/storage}")
+    private String rootDir;
+
+    @Value("${minio.bucketName}")
+    private String bucketName;
+
+    @Value("${storage.local.url-prefix:/file/storage/}")
+    private String urlPrefix;
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        String location = Paths.get(rootDir).toAbsolutePath().normalize()
+                .resolve(bucketName).resolve(PUBLIC_PREFIX).toUri().toString();
+        registry.addResourceHandler(urlPrefix + PUBLIC_PREFIX + "**")
+                .addResourceLocations(location);
+    }
+}
@@ -0,0 +1,132 @@
+package com.clouddrive.config;
+
+import com.clouddrive.exception.BusinessException;
+import io.minio.BucketExistsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.SetBucketPolicyArgs;
+import io.minio.errors.ErrorResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MinIO存储桶状态登记
+ * 存储桶的存在性和访问策略在首次使用时（默认存储桶在启动时）校验一次，之后定期刷新；
+ * 操作返回NoSuchBucket时清除登记，下次使用时重新创建。上传等写操作因此只需向对象存储发送一次请求
+ */
+@Component
+@Profile("!localfs")
+public class MinioBucketRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MinioBucketRegistry.class);
+
+    @Autowired
+    private MinioClient minioClient;
+
+    /**
+     * 已校验的存储桶及校验时间
+     */
+    private final Map<String, Long> readyBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * 确保存储桶存在且访问策略已设置，已校验过时不访问对象存储
+     * @param bucketName 存储桶名称
+     */
+    public void ensureBucket(String bucketName) {
+        if (!readyBuckets.containsKey(bucketName)) {
+            validate(bucketName);
+        }
+    }
+
+    /**
+     * 存储桶是否已校验
+     */
+    public boolean isReady(String bucketName) {
+        return readyBuckets.containsKey(bucketName);
+    }
+
+    /**
+     * 校验存储桶：不存在时创建，并设置访问策略
+     * @param bucketName 存储桶名称
+     * @return 存储桶是否为新创建的
+     */
+    public synchronized boolean validate(String bucketName) {
+        try {
+            boolean created = false;
+            if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build())) {
+                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+                created = true;
+            }
+            setBucketPolicy(bucketName);
+            readyBuckets.put(bucketName, System.currentTimeMillis());
+            log.info("存储桶已校验: {}, 新创建: {}", bucketName, created);
+            return created;
+        } catch (Exception e) {
+            readyBuckets.remove(bucketName);
+            throw new BusinessException("创建或更新存储桶失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 操作失败时调用，错误为存储桶不存在时清除登记
+     * @param bucketName 存储桶名称
+     * @param error 操作抛出的异常
+     */
+    public void invalidateOnError(String bucketName, Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ErrorResponseException
+                    && "NoSuchBucket".equals(((ErrorResponseException) cause).errorResponse().code())) {
+                readyBuckets.remove(bucketName);
+                log.warn("存储桶不存在，已清除校验状态: {}", bucketName);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 定期重新校验已登记的存储桶，发现外部删除的存储桶或被修改的策略
+     */
+    @Scheduled(initialDelayString = "${minio.bucket-state.refresh-interval-ms:600000}",
+            fixedDelayString = "${minio.bucket-state.refresh-interval-ms:600000}")
+    public void refresh() {
+        for (String bucketName : new ArrayList<>(readyBuckets.keySet())) {
+            try {
+                validate(bucketName);
+            } catch (Exception e) {
+                log.error("刷新存储桶状态失败: {}, {}", bucketName, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 设置存储桶策略，允许公开读取avatars目录下的文件
+     */
+    private void setBucketPolicy(String bucketName) throws Exception {
+        String policy = "{\n" +
+                "    \"Version\": \"2012-10-17\",\n" +
+                "    \"Statement\": [\n" +
+                "        {\n" +
+                "            \"Effect\": \"Allow\",\n" +
+                "            \"Principal\": {\"AWS\": [\"*\"]},\n" +
+                "            \"Action\": [\"s3:GetObject\"],\n" +
+                "            \"Resource\": [\"arn:aws:s3:::" + bucketName + "/avatars/*\"]\n" +
+                "        }\n" +
+                "    ]\n" +
+                "}";
+
+        minioClient.setBucketPolicy(
+                SetBucketPolicyArgs.builder()
+                        .bucket(bucketName)
+                        .config(policy)
+                        .build()
+        );
+    }
+}
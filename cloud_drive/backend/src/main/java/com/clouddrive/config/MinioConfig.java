@@ -1,5 +1,6 @@
 package com.clouddrive.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -34,6 +35,18 @@ public class MinioConfig {
                 .build();
     }
     
+    /**
+     * 创建支持原生分片上传的MinIO客户端
+     */
+    @Bean
+    public MultipartMinioClient multipartMinioClient() {
+        MinioAsyncClient asyncClient = MinioAsyncClient.builder()
+                .endpoint(endpoint)
+                .credentials(accessKey, secretKey)
+                .build();
+        return new MultipartMinioClient(asyncClient);
+    }
+    
     /**
      * 获取MinIO服务器端点
      */
@@ -0,0 +1,71 @@
+package com.clouddrive.config;
+
+import com.google.common.collect.Multimap;
+import io.minio.ListPartsResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.UploadPartResponse;
+import io.minio.messages.ListMultipartUploadsResult;
+import io.minio.messages.Part;
+
+/**
+ * 支持S3原生分片上传的MinIO客户端
+ * MinioClient未公开分片上传的底层接口（初始化、上传分片、列出分片、完成、取消），这里通过继承将其暴露出来
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * 初始化分片上传
+     * @return 分片上传ID（uploadId）
+     */
+    public String initMultipartUpload(String bucketName, String objectName, Multimap<String, String> headers) throws Exception {
+        return this.createMultipartUploadAsync(bucketName, null, objectName, headers, null)
+                .get()
+                .result()
+                .uploadId();
+    }
+
+    /**
+     * 上传单个分片
+     * @return 分片的ETag
+     */
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber, byte[] data) throws Exception {
+        UploadPartResponse response = this.uploadPartAsync(
+                bucketName, null, objectName, data, data.length, uploadId, partNumber, null, null).get();
+        return response.etag();
+    }
+
+    /**
+     * 列出已上传的分片
+     */
+    public ListPartsResponse listParts(String bucketName, String objectName, String uploadId, Integer maxParts, Integer partNumberMarker) throws Exception {
+        return this.listPartsAsync(bucketName, null, objectName, maxParts, partNumberMarker, uploadId, null, null).get();
+    }
+
+    /**
+     * 完成分片上传，由服务端按分片顺序拼接为最终对象
+     */
+    public ObjectWriteResponse completeMultipartUpload(String bucketName, String objectName, String uploadId, Part[] parts) throws Exception {
+        return this.completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null).get();
+    }
+
+    /**
+     * 按前缀列出一页未完成的分片上传
+     */
+    public ListMultipartUploadsResult listMultipartUploads(String bucketName, String prefix, String keyMarker, String uploadIdMarker, Integer maxUploads) throws Exception {
+        return this.listMultipartUploadsAsync(bucketName, null, null, null, keyMarker, maxUploads, prefix, uploadIdMarker, null, null)
+                .get()
+                .result();
+    }
+
+    /**
+     * 取消分片上传，释放已上传的分片
+     */
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws Exception {
+        this.abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null).get();
+    }
+}
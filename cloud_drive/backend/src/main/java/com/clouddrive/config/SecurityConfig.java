@@ -1,8 +1,11 @@
 package com.clouddrive.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -30,6 +33,12 @@ public class SecurityConfig {
     private final UserDetailsService userDetailsService;
     private final PasswordEncoder passwordEncoder;
     
+    /**
+     * 监控端点的独立端口，未配置时为-1
+     */
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+    
     @Autowired
     public SecurityConfig(UserDetailsService userDetailsService, JwtAuthenticationFilter jwtAuthenticationFilter, PasswordEncoder passwordEncoder) {
         this.userDetailsService = userDetailsService;
@@ -45,11 +54,18 @@ public class SecurityConfig {
             .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             .and()
             .authorizeHttpRequests(auth -> auth
+                // 异步下载完成后的ASYNC分派沿用原请求已通过的认证结果
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/auth/**").permitAll()
                 .requestMatchers("/share/info/**").permitAll()
                 .requestMatchers("/share/verify/**").permitAll()
                 .requestMatchers("/file/download/public/**").permitAll()
+                // 本地文件系统存储的公开对象（头像），与MinIO存储桶策略一致
+                .requestMatchers("/file/storage/avatars/**").permitAll()
                 .requestMatchers("/error/**").permitAll()
+                // 限速调整端点只能从监控端口访问，该端口不经反向代理对外暴露；经业务端口转发的请求一律拒绝
+                .requestMatchers("/actuator/bandwidth/**").access((authentication, context) ->
+                        new AuthorizationDecision(managementPort > 0 && context.getRequest().getLocalPort() == managementPort))
                 .requestMatchers("/actuator/**").permitAll()
                 .requestMatchers("/favicon.ico").permitAll()
                 .anyRequest().authenticated()
@@ -0,0 +1,51 @@
+package com.clouddrive.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web MVC配置类
+ * 下载以StreamingResponseBody异步输出，数据转发在专用的下载线程池中进行，
+ * Tomcat请求线程在返回响应头后立即释放，慢速客户端的长时间下载不会占满请求线程，其他接口保持可用。
+ * 线程池默认不排队：每个下载直接占用一个线程，线程数达到上限后新的下载被拒绝并返回503，
+ * 避免少数慢速下载占满核心线程后其余下载在队列中等待
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final ThreadPoolTaskExecutor downloadTaskExecutor;
+
+    private final long asyncTimeout;
+
+    public WebMvcConfig(@Value("${download.async.core-pool-size:16}") int corePoolSize,
+                        @Value("${download.async.max-pool-size:256}") int maxPoolSize,
+                        @Value("${download.async.queue-capacity:0}") int queueCapacity,
+                        @Value("${download.async.timeout-ms:0}") long asyncTimeout) {
+        // 不注册为Bean，避免替换Spring Boot默认的应用线程池
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("download-");
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+        this.downloadTaskExecutor = executor;
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(downloadTaskExecutor);
+        // 大文件下载耗时可能很长，0表示不超时，客户端停止读取时由连接的写超时断开
+        configurer.setDefaultTimeout(asyncTimeout);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        downloadTaskExecutor.shutdown();
+    }
+}
@@ -1,25 +1,26 @@
 package com.clouddrive.controller;
 
+import com.clouddrive.exception.BusinessException;
+import com.clouddrive.model.dto.DownloadFileDTO;
+import com.clouddrive.model.dto.ZipEntryDTO;
 import com.clouddrive.model.entity.File;
 import com.clouddrive.model.entity.UserFile;
+import com.clouddrive.model.vo.FilePageVO;
 import com.clouddrive.model.vo.ResultVO;
 import com.clouddrive.service.StorageService;
+import com.clouddrive.service.DownloadService;
 import com.clouddrive.service.FileService;
 import com.clouddrive.service.FileSearchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStream;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import jakarta.servlet.http.HttpServletRequest;
 import java.util.Collections;
 import java.util.Map;
 import java.util.List;
@@ -47,6 +48,9 @@ public class FileController {
     @Autowired
     private FileSearchService fileSearchService;
     
+    @Autowired
+    private DownloadService downloadService;
+    
     @Value("${minio.bucketName:cloud-drive}")
     private String bucketName;
     
@@ -82,28 +86,102 @@ public class FileController {
         }
     }
     
+    /**
+     * 流式上传文件
+     * 请求体即为文件内容（非multipart格式），数据边接收边写入对象存储，不经过临时文件
+     * @param fileName 文件名
+     * @param parentId 父文件夹ID
+     * @param relativePath 相对路径
+     * @param request HTTP请求
+     * @param userId 用户ID
+     * @return 上传结果
+     */
+    @PutMapping("/upload/stream")
+    public ResultVO<String> uploadFileStream(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("parentId") Long parentId,
+            @RequestParam(value = "relativePath", required = false) String relativePath,
+            HttpServletRequest request,
+            @RequestAttribute("userId") Long userId) {
+        
+        if (fileName == null || fileName.isEmpty()) {
+            return ResultVO.fail("文件名不能为空");
+        }
+        
+        String contentType = request.getContentType() != null ? request.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        
+        try {
+            // 请求未携带Content-Length（分块传输编码）时大小为-1，由存储服务按固定分片大小上传
+            UserFile userFile = fileService.upload(request.getInputStream(), request.getContentLengthLong(),
+                    fileName, contentType, parentId, relativePath, userId);
+            return ResultVO.success("上传成功: " + userFile.getFileName(), userFile.getFileName());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResultVO.fail("上传失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 获取文件的直接下载地址
+     * 大文件返回对象存储的预签名URL，前端直接跳转下载，不经过服务端转发，也不需要携带Authorization请求头；
+     * 不满足重定向条件时url为null，前端改为请求下载接口
+     * @param id 用户文件ID
+     * @param userId 用户ID
+     * @return 下载地址和文件名
+     */
+    @GetMapping("/download-url/{id}")
+    public ResultVO<Map<String, Object>> getDownloadUrl(@PathVariable("id") Long id,
+                                                        @RequestAttribute("userId") Long userId) {
+        UserFile userFile = fileService.getUserFileById(id, userId);
+        if (userFile == null || !userFile.getUserId().equals(userId) || Boolean.TRUE.equals(userFile.getIsDir())) {
+            return ResultVO.fail("文件不存在");
+        }
+        File file = fileService.getById(userFile.getFileId());
+        if (file == null) {
+            return ResultVO.fail("文件不存在");
+        }
+        
+        DownloadFileDTO downloadFile = new DownloadFileDTO();
+        downloadFile.setUserId(userId);
+        downloadFile.setObjectName(file.getObjectName());
+        downloadFile.setFileName(userFile.getFileName());
+        downloadFile.setFileType(file.getFileType());
+        downloadFile.setFileSize(file.getFileSize());
+        String url = downloadService.getDirectDownloadUrl(downloadFile);
+        if (url != null) {
+            fileService.incrementDownloadCount(id);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("url", url);
+        result.put("fileName", userFile.getFileName());
+        return ResultVO.success(result);
+    }
+    
     /**
      * 下载文件
+     * 支持Range断点续传和拖动播放，以及基于ETag的条件请求
      * @param objectName 对象名称或文件ID
+     * @param redirect 是否允许大文件重定向到对象存储，通过XHR下载时传false（跨域重定向无法携带Authorization请求头）
+     * @param request HTTP请求
      * @return 文件流
      */
     @GetMapping("/download/{objectName}")
-    public ResponseEntity<?> downloadFile(@PathVariable("objectName") String objectName) throws Exception {
+    public ResponseEntity<?> downloadFile(@PathVariable("objectName") String objectName,
+                                          @RequestParam(value = "redirect", defaultValue = "true") boolean redirect,
+                                          @RequestAttribute(value = "userId", required = false) Long userId,
+                                          HttpServletRequest request) throws Exception {
         // 检查objectName是否为数字（文件ID）
-        InputStream inputStream = null;
-        String fileName = null;
-        String fileType = null;
-        Long fileSize = null;
-        String objectNameToDownload = null;
-        Long userFileId = null;
+        DownloadFileDTO downloadFile = new DownloadFileDTO();
+        downloadFile.setUserId(userId);
         
         try {
             // 尝试将objectName解析为数字（文件ID）
-            userFileId = Long.parseLong(objectName);
+            Long userFileId = Long.parseLong(objectName);
             
-            // 如果是数字，则查询用户文件信息
-            UserFile userFile = fileService.getUserFileById(userFileId, null);
-            if (userFile == null) {
+            // 如果是数字，则查询用户文件信息，只能下载自己的文件
+            UserFile userFile = fileService.getUserFileById(userFileId, userId);
+            if (userFile == null || !userFile.getUserId().equals(userId) || Boolean.TRUE.equals(userFile.getIsDir())) {
                 return ResponseEntity.notFound().build();
             }
             
@@ -114,149 +192,63 @@ public class FileController {
                 return ResponseEntity.notFound().build();
             }
             
-            objectNameToDownload = file.getObjectName();
-            fileName = userFile.getFileName(); // 使用用户文件名而不是文件表中的文件名
-            fileType = file.getFileType();
-            fileSize = file.getFileSize();
+            downloadFile.setObjectName(file.getObjectName());
+            downloadFile.setFileName(userFile.getFileName()); // 使用用户文件名而不是文件表中的文件名
+            downloadFile.setFileType(file.getFileType());
+            downloadFile.setFileSize(file.getFileSize());
+            downloadFile.setMd5(file.getMd5());
+            downloadFile.setRedirectAllowed(redirect);
             
-            // 更新下载次数
-            fileService.incrementDownloadCount(userFileId);
+            // 更新下载次数，断点续传和拖动播放产生的后续范围请求不重复计数
+            if (!downloadService.isPartialRequest(request)) {
+                fileService.incrementDownloadCount(userFileId);
+            }
         } catch (NumberFormatException e) {
             // 如果不是数字，则直接使用objectName下载
-            objectNameToDownload = objectName;
-            fileName = objectName.substring(objectName.lastIndexOf("/") + 1);
-        }
-        
-        // 处理文件名中可能包含的@2o.jpg等后缀
-        if (fileName != null && fileName.contains("@")) {
-            // 获取文件扩展名
-            String extension = "";
-            int lastDotIndex = fileName.lastIndexOf(".");
-            if (lastDotIndex > 0) {
-                extension = fileName.substring(lastDotIndex);
-            }
-            
-            // 截取@之前的部分
-            fileName = fileName.substring(0, fileName.indexOf("@"));
-            
-            // 如果截取后的文件名不包含扩展名，则添加扩展名
-            if (!fileName.toLowerCase().endsWith(extension.toLowerCase())) {
-                fileName += extension;
-            }
+            downloadFile.setObjectName(objectName);
+            downloadFile.setFileName(objectName.substring(objectName.lastIndexOf("/") + 1));
         }
         
         // 获取文件流
         try {
-            inputStream = storageService.downloadFile(bucketName, objectNameToDownload);
+            return downloadService.download(request, downloadFile);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(500).body("下载文件失败: " + e.getMessage());
         }
-        
-        if (inputStream == null) {
-            return ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * 打包下载
+     * 选中的文件夹递归展开，压缩包边读取边输出
+     * @param fileIds 用户文件ID列表
+     * @param fileName 压缩包文件名，为空时使用单个选中项的名称或默认名称
+     * @param userId 用户ID
+     * @return ZIP文件流
+     */
+    @GetMapping("/download/zip")
+    public ResponseEntity<?> downloadZip(
+            @RequestParam("fileIds") List<Long> fileIds,
+            @RequestParam(value = "fileName", required = false) String fileName,
+            @RequestAttribute("userId") Long userId) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            return ResponseEntity.badRequest().body("文件ID列表不能为空");
         }
         
-        // 设置文件名编码
-        String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8.toString())
-                .replaceAll("\\+", "%20"); // 替换空格为%20，避免某些浏览器问题
-        
-        // 构建响应头
-        HttpHeaders headers = new HttpHeaders();
-        
-        // 从文件扩展名确定Content-Type
-        MediaType mediaType = MediaType.APPLICATION_OCTET_STREAM;
-        String fileExtension = "";
-        int lastDotIndex = fileName.lastIndexOf(".");
-        if (lastDotIndex > 0) {
-            fileExtension = fileName.substring(lastDotIndex + 1).toLowerCase();
-            
-            // 根据扩展名设置常见的Content-Type
-            switch (fileExtension) {
-                case "jpg":
-                case "jpeg":
-                    mediaType = MediaType.IMAGE_JPEG;
-                    break;
-                case "png":
-                    mediaType = MediaType.IMAGE_PNG;
-                    break;
-                case "gif":
-                    mediaType = MediaType.IMAGE_GIF;
-                    break;
-                case "pdf":
-                    mediaType = MediaType.APPLICATION_PDF;
-                    break;
-                case "html":
-                    mediaType = MediaType.TEXT_HTML;
-                    break;
-                case "txt":
-                    mediaType = MediaType.TEXT_PLAIN;
-                    break;
-                case "json":
-                    mediaType = MediaType.APPLICATION_JSON;
-                    break;
-                case "xml":
-                    mediaType = MediaType.APPLICATION_XML;
-                    break;
-                // 可以根据需要添加更多的类型
-                default:
-                    // 如果有已知的文件类型，优先使用
-                    if (fileType != null && !fileType.isEmpty()) {
-                        try {
-                            mediaType = MediaType.parseMediaType(fileType);
-                        } catch (Exception e) {
-                            mediaType = MediaType.APPLICATION_OCTET_STREAM;
-                        }
-                    } else {
-                        mediaType = MediaType.APPLICATION_OCTET_STREAM;
-                    }
-            }
-        } else if (fileType != null && !fileType.isEmpty()) {
-            // 如果没有扩展名但有已知的文件类型，使用已知的文件类型
-            try {
-                mediaType = MediaType.parseMediaType(fileType);
-            } catch (Exception e) {
-                mediaType = MediaType.APPLICATION_OCTET_STREAM;
+        try {
+            List<ZipEntryDTO> entries = fileService.listZipEntries(fileIds, userId);
+            if (fileName == null || fileName.isEmpty()) {
+                fileName = fileIds.size() == 1 && !entries.isEmpty()
+                        ? entries.get(0).getEntryName().replaceAll("/$", "") + ".zip"
+                        : "download.zip";
             }
+            return downloadService.downloadZip(fileName, entries, userId, null);
+        } catch (BusinessException e) {
+            return ResponseEntity.status(403).body(e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(500).body("打包下载失败: " + e.getMessage());
         }
-        
-        headers.setContentType(mediaType);
-        
-        // 判断是否为可以预览的内容类型
-        boolean isPreviewable = mediaType.toString().startsWith("image/") || 
-                               mediaType.toString().startsWith("text/") || 
-                               mediaType.toString().equals("application/pdf");
-        
-        // 根据请求头判断是否需要强制下载
-        boolean forceDownload = false;
-        
-        // 根据内容类型和强制下载标志决定是直接预览还是下载
-        String contentDisposition;
-        if (isPreviewable && !forceDownload) {
-            // 对于可预览的文件类型，使用inline方式
-            contentDisposition = "inline; filename=\"" + encodedFileName + "\"";
-        } else {
-            // 对于其他文件类型，使用attachment方式下载
-            contentDisposition = "attachment; filename=\"" + encodedFileName + "\"";
-        }
-        
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
-        
-        // 如果知道文件大小，设置Content-Length
-        if (fileSize != null) {
-            headers.setContentLength(fileSize);
-        }
-        
-        // 添加缓存控制头
-        headers.setCacheControl("max-age=31536000"); // 缓存一年
-        
-        // 添加跨域头
-        headers.add("Access-Control-Expose-Headers", "Content-Disposition");
-        
-        // 返回文件流
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(new InputStreamResource(inputStream));
     }
     
     /**
@@ -498,10 +490,12 @@ public class FileController {
     }
     
     /**
-     * 获取文件列表
+     * 获取文件列表，按游标分页，排序在数据库中完成
      * @param parentId 父文件夹ID
      * @param orderBy 排序字段
      * @param orderDirection 排序方向
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param limit 每页数量
      * @param userId 用户ID
      * @return 文件列表
      */
@@ -510,40 +504,22 @@ public class FileController {
             @RequestParam(value = "parentId", defaultValue = "0") Long parentId,
             @RequestParam(value = "orderBy", defaultValue = "name") String orderBy,
             @RequestParam(value = "orderDirection", defaultValue = "asc") String orderDirection,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
             @RequestAttribute("userId") Long userId) {
         
         try {
-            // 调用文件服务获取用户文件列表
-            List<UserFile> fileList = fileService.getUserFileList(parentId, userId);
-            
-            // 根据排序参数排序
-            if ("name".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    fileList.sort((a, b) -> a.getFileName().compareTo(b.getFileName()));
-                } else {
-                    fileList.sort((a, b) -> b.getFileName().compareTo(a.getFileName()));
-                }
-            } else if ("size".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    fileList.sort((a, b) -> a.getFileSize().compareTo(b.getFileSize()));
-                } else {
-                    fileList.sort((a, b) -> b.getFileSize().compareTo(a.getFileSize()));
-                }
-            } else if ("time".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    fileList.sort((a, b) -> a.getUpdateTime().compareTo(b.getUpdateTime()));
-                } else {
-                    fileList.sort((a, b) -> b.getUpdateTime().compareTo(a.getUpdateTime()));
-                }
-            }
+            // 调用文件服务获取当前页的文件
+            FilePageVO page = fileService.getFilePage(parentId, orderBy, orderDirection, cursor, limit, userId);
             
             // 获取文件路径（面包屑导航）
             List<Map<String, Object>> pathList = fileService.getFilePath(parentId, userId);
             
-            // 构建返回结果，包含list和path属性
+            // 构建返回结果，包含list、path和nextCursor属性
             Map<String, Object> result = new HashMap<>();
-            result.put("list", fileList);
+            result.put("list", page.getList());
             result.put("path", pathList);
+            result.put("nextCursor", page.getNextCursor());
             
             return ResultVO.success(result);
         } catch (Exception e) {
@@ -552,9 +528,11 @@ public class FileController {
     }
     
     /**
-     * 获取收藏的文件列表
+     * 获取收藏的文件列表，按游标分页
      * @param orderBy 排序字段
      * @param orderDirection 排序方向
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param limit 每页数量
      * @param userId 用户ID
      * @return 收藏文件列表
      */
@@ -562,40 +540,22 @@ public class FileController {
     public ResultVO<Object> getStarredFiles(
             @RequestParam(value = "orderBy", defaultValue = "name") String orderBy,
             @RequestParam(value = "orderDirection", defaultValue = "asc") String orderDirection,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
             @RequestAttribute("userId") Long userId) {
         
         try {
             // 使用专门的收藏文件查询方法
-            List<UserFile> starredFiles = fileService.getStarredFiles(userId);
-            
-            // 根据排序参数排序
-            if ("name".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    starredFiles.sort((a, b) -> a.getFileName().compareTo(b.getFileName()));
-                } else {
-                    starredFiles.sort((a, b) -> b.getFileName().compareTo(a.getFileName()));
-                }
-            } else if ("size".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    starredFiles.sort((a, b) -> a.getFileSize().compareTo(b.getFileSize()));
-                } else {
-                    starredFiles.sort((a, b) -> b.getFileSize().compareTo(a.getFileSize()));
-                }
-            } else if ("time".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    starredFiles.sort((a, b) -> a.getUpdateTime().compareTo(b.getUpdateTime()));
-                } else {
-                    starredFiles.sort((a, b) -> b.getUpdateTime().compareTo(a.getUpdateTime()));
-                }
-            }
+            FilePageVO page = fileService.getStarredPage(orderBy, orderDirection, cursor, limit, userId);
             
             // 收藏页面不需要路径，使用空列表
             List<Map<String, Object>> emptyPath = new ArrayList<>();
             
-            // 构建返回结果，包含list和path属性
+            // 构建返回结果，包含list、path和nextCursor属性
             Map<String, Object> result = new HashMap<>();
-            result.put("list", starredFiles);
+            result.put("list", page.getList());
             result.put("path", emptyPath);
+            result.put("nextCursor", page.getNextCursor());
             
             return ResultVO.success(result);
         } catch (Exception e) {
@@ -604,9 +564,11 @@ public class FileController {
     }
     
     /**
-     * 获取回收站文件列表
+     * 获取回收站文件列表，按游标分页
      * @param orderBy 排序字段
      * @param orderDirection 排序方向
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param limit 每页数量
      * @param userId 用户ID
      * @return 回收站文件列表
      */
@@ -614,40 +576,22 @@ public class FileController {
     public ResultVO<Object> getRecycleBinFiles(
             @RequestParam(value = "orderBy", defaultValue = "updateTime") String orderBy,
             @RequestParam(value = "orderDirection", defaultValue = "desc") String orderDirection,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
             @RequestAttribute("userId") Long userId) {
         
         try {
-            // 获取回收站文件列表
-            List<UserFile> recycleBinList = fileService.getRecycleBinList(userId);
-            
-            // 根据排序参数排序
-            if ("name".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    recycleBinList.sort((a, b) -> a.getFileName().compareTo(b.getFileName()));
-                } else {
-                    recycleBinList.sort((a, b) -> b.getFileName().compareTo(a.getFileName()));
-                }
-            } else if ("size".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    recycleBinList.sort((a, b) -> a.getFileSize().compareTo(b.getFileSize()));
-                } else {
-                    recycleBinList.sort((a, b) -> b.getFileSize().compareTo(a.getFileSize()));
-                }
-            } else if ("updateTime".equals(orderBy)) {
-                if ("asc".equals(orderDirection)) {
-                    recycleBinList.sort((a, b) -> a.getUpdateTime().compareTo(b.getUpdateTime()));
-                } else {
-                    recycleBinList.sort((a, b) -> b.getUpdateTime().compareTo(a.getUpdateTime()));
-                }
-            }
+            // 获取回收站当前页的文件
+            FilePageVO page = fileService.getRecycleBinPage(orderBy, orderDirection, cursor, limit, userId);
             
             // 回收站页面不需要路径，使用空列表
             List<Map<String, Object>> emptyPath = new ArrayList<>();
             
-            // 构建返回结果，包含list和path属性
+            // 构建返回结果，包含list、path和nextCursor属性
             Map<String, Object> result = new HashMap<>();
-            result.put("list", recycleBinList);
+            result.put("list", page.getList());
             result.put("path", emptyPath);
+            result.put("nextCursor", page.getNextCursor());
             
             return ResultVO.success(result);
         } catch (Exception e) {
@@ -792,6 +736,43 @@ public class FileController {
         }
     }
     
+    /**
+     * 文件夹上传：按目录清单一次创建所有文件夹，返回相对路径到文件夹ID的映射
+     * @param requestBody 请求参数，包含parentId和folders（文件夹相对路径列表）
+     * @param userId 用户ID
+     * @return 相对路径到文件夹ID的映射
+     */
+    @PostMapping("/folder-upload")
+    public ResultVO<Map<String, Long>> prepareFolderUpload(
+            @RequestBody Map<String, Object> requestBody,
+            @RequestAttribute("userId") Long userId) {
+        
+        try {
+            // 参数验证
+            if (!requestBody.containsKey("parentId") || !(requestBody.get("folders") instanceof List)) {
+                return ResultVO.fail("缺少必要参数: parentId或folders");
+            }
+            
+            Long parentId = Long.valueOf(requestBody.get("parentId").toString());
+            List<String> folderPaths = new ArrayList<>();
+            for (Object folder : (List<?>) requestBody.get("folders")) {
+                if (folder != null) {
+                    folderPaths.add(folder.toString());
+                }
+            }
+            
+            // 调用文件服务创建目录清单中的文件夹
+            Map<String, Long> folderIds = fileService.prepareFolderUpload(parentId, folderPaths, userId);
+            
+            return ResultVO.success("创建文件夹成功", folderIds);
+        } catch (NumberFormatException e) {
+            return ResultVO.fail("参数格式错误: parentId必须是数字");
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResultVO.fail("创建文件夹失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取文件详情
      * @param fileId 文件ID
@@ -910,6 +891,37 @@ public class FileController {
         }
     }
     
+    /**
+     * 流式上传文件分片
+     * 请求体即为分片内容（非multipart格式），数据直接写入对象存储
+     * @param md5 文件MD5值
+     * @param chunkIndex 分片索引
+     * @param chunks 总分片数
+     * @param request HTTP请求
+     * @param userId 用户ID
+     * @return 上传结果
+     */
+    @PutMapping("/upload-chunk")
+    public ResultVO<String> uploadChunkStream(
+            @RequestParam("md5") String md5,
+            @RequestParam("chunkIndex") Integer chunkIndex,
+            @RequestParam("chunks") Integer chunks,
+            HttpServletRequest request,
+            @RequestAttribute("userId") Long userId) {
+        
+        if (request.getContentLengthLong() == 0) {
+            return ResultVO.fail("上传文件分片不能为空");
+        }
+        
+        try {
+            String chunkPath = fileService.saveChunk(request.getInputStream(), request.getContentLengthLong(), md5, chunkIndex, chunks, userId);
+            return ResultVO.success("分片上传成功", chunkPath);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResultVO.fail("分片上传失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 合并文件分片
      * @param requestBody 请求参数，包含md5、fileName、parentId和chunks
@@ -1034,4 +1046,43 @@ public class FileController {
             return ResultVO.fail("检查文件MD5失败: " + e.getMessage());
         }
     }
+    
+    /**
+     * 获取分片预签名上传URL，客户端直接上传分片到对象存储，完成后调用合并接口
+     * @param requestBody 请求参数，包含md5、fileName、fileSize、chunks和可选的chunkSize
+     * @param userId 用户ID
+     * @return 每个分片的上传URL
+     */
+    @PostMapping("/presign-chunks")
+    public ResultVO<Object> presignChunkUrls(
+            @RequestBody Map<String, Object> requestBody,
+            @RequestAttribute("userId") Long userId) {
+        
+        try {
+            // 参数验证
+            if (!requestBody.containsKey("md5") || !requestBody.containsKey("fileName") ||
+                !requestBody.containsKey("fileSize") || !requestBody.containsKey("chunks")) {
+                return ResultVO.fail("缺少必要参数: md5、fileName、fileSize或chunks");
+            }
+            
+            String md5 = requestBody.get("md5").toString();
+            String fileName = requestBody.get("fileName").toString();
+            Long fileSize = Long.valueOf(requestBody.get("fileSize").toString());
+            Integer chunks = Integer.valueOf(requestBody.get("chunks").toString());
+            Long chunkSize = requestBody.get("chunkSize") != null ? Long.valueOf(requestBody.get("chunkSize").toString()) : null;
+            
+            if (chunks <= 0) {
+                return ResultVO.fail("分片数必须大于0");
+            }
+            
+            Map<String, Object> result = fileService.presignChunkUrls(md5, fileName, fileSize, chunkSize, chunks, userId);
+            
+            return ResultVO.success("获取上传地址成功", result);
+        } catch (NumberFormatException e) {
+            return ResultVO.fail("参数格式错误: fileSize、chunkSize或chunks必须是数字");
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResultVO.fail("获取分片上传地址失败: " + e.getMessage());
+        }
+    }
 } 
\ No newline at end of file
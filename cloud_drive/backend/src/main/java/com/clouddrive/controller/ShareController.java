@@ -1,29 +1,26 @@
 package com.clouddrive.controller;
 
+import com.clouddrive.exception.BusinessException;
+import com.clouddrive.model.dto.DownloadFileDTO;
 import com.clouddrive.model.dto.ShareDTO;
+import com.clouddrive.model.dto.ZipEntryDTO;
 import com.clouddrive.model.entity.File;
 import com.clouddrive.model.entity.Share;
 import com.clouddrive.model.entity.UserFile;
 import com.clouddrive.model.vo.ResultVO;
 import com.clouddrive.model.vo.ShareVO;
+import com.clouddrive.service.DownloadService;
 import com.clouddrive.service.FileService;
 import com.clouddrive.service.ShareService;
-import com.clouddrive.service.StorageService;
 import com.clouddrive.service.UserFileService;
 import com.clouddrive.util.JwtUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.InputStream;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -40,7 +37,7 @@ public class ShareController {
     private final ShareService shareService;
     private final UserFileService userFileService;
     private final FileService fileService;
-    private final StorageService storageService;
+    private final DownloadService downloadService;
     private final JwtUtil jwtUtil;
     
     @Value("${minio.bucketName:cloud-drive}")
@@ -407,7 +404,8 @@ public class ShareController {
     @GetMapping("/download/{shareCode}/{userFileId}")
     public ResponseEntity<?> downloadShareFile(
             @PathVariable String shareCode,
-            @PathVariable Long userFileId) {
+            @PathVariable Long userFileId,
+            HttpServletRequest request) {
         try {
             // 查询分享信息
             Share share = shareService.getShareByCode(shareCode);
@@ -433,138 +431,73 @@ public class ShareController {
                 return ResponseEntity.notFound().build();
             }
             
-            // 增加下载次数
-            shareService.incrementDownloadCount(share.getId());
-            fileService.incrementDownloadCount(userFileId);
-            
-            // 获取文件流
-            InputStream inputStream = storageService.downloadFile(bucketName, file.getObjectName());
-            if (inputStream == null) {
-                return ResponseEntity.notFound().build();
+            // 增加下载次数，断点续传产生的后续范围请求不重复计数
+            if (!downloadService.isPartialRequest(request)) {
+                shareService.incrementDownloadCount(share.getId());
+                fileService.incrementDownloadCount(userFileId);
             }
             
-            // 设置文件名
-            String fileName = userFile.getFileName();
-            // 处理文件名中可能包含的@2o.jpg等后缀
-            if (fileName.contains("@")) {
-                // 获取文件扩展名
-                String extension = "";
-                int lastDotIndex = fileName.lastIndexOf(".");
-                if (lastDotIndex > 0) {
-                    extension = fileName.substring(lastDotIndex);
-                }
-                
-                // 截取@之前的部分
-                fileName = fileName.substring(0, fileName.indexOf("@"));
-                
-                // 如果截取后的文件名不包含扩展名，则添加扩展名
-                if (!fileName.toLowerCase().endsWith(extension.toLowerCase())) {
-                    fileName += extension;
-                }
+            DownloadFileDTO downloadFile = createDownloadFile(userFile, file, false);
+            downloadFile.setRedirectAllowed(true);
+            downloadFile.setUserId(jwtUtil.getUserIdFromRequest(request));
+            downloadFile.setShareCode(shareCode);
+            return downloadService.download(request, downloadFile);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body("下载文件失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 打包下载分享的文件
+     * @param shareCode 分享码
+     * @param fileIds 分享范围内的用户文件ID列表，为空时打包整个分享
+     * @param code 提取码
+     * @return ZIP文件流
+     */
+    @GetMapping("/download/{shareCode}/zip")
+    public ResponseEntity<?> downloadShareZip(
+            @PathVariable String shareCode,
+            @RequestParam(value = "fileIds", required = false) List<Long> fileIds,
+            @RequestParam(required = false) String code,
+            HttpServletRequest request) {
+        try {
+            // 查询分享信息
+            Share share = shareService.getShareByCode(shareCode);
+            if (share == null || share.getStatus() != 1) {
+                return ResponseEntity.notFound().build();
             }
             
-            // 设置文件名编码
-            String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8.toString())
-                    .replaceAll("\\+", "%20"); // 替换空格为%20，避免某些浏览器问题
-            
-            // 构建响应头
-            HttpHeaders headers = new HttpHeaders();
-            
-            // 从文件扩展名确定Content-Type
-            MediaType mediaType = MediaType.APPLICATION_OCTET_STREAM;
-            String fileExtension = "";
-            int lastDotIndex = fileName.lastIndexOf(".");
-            if (lastDotIndex > 0) {
-                fileExtension = fileName.substring(lastDotIndex + 1).toLowerCase();
-                
-                // 根据扩展名设置常见的Content-Type
-                switch (fileExtension) {
-                    case "jpg":
-                    case "jpeg":
-                        mediaType = MediaType.IMAGE_JPEG;
-                        break;
-                    case "png":
-                        mediaType = MediaType.IMAGE_PNG;
-                        break;
-                    case "gif":
-                        mediaType = MediaType.IMAGE_GIF;
-                        break;
-                    case "pdf":
-                        mediaType = MediaType.APPLICATION_PDF;
-                        break;
-                    case "html":
-                        mediaType = MediaType.TEXT_HTML;
-                        break;
-                    case "txt":
-                        mediaType = MediaType.TEXT_PLAIN;
-                        break;
-                    case "json":
-                        mediaType = MediaType.APPLICATION_JSON;
-                        break;
-                    case "xml":
-                        mediaType = MediaType.APPLICATION_XML;
-                        break;
-                    // 可以根据需要添加更多的类型
-                    default:
-                        // 如果有已知的文件类型，优先使用
-                        if (file.getFileType() != null && !file.getFileType().isEmpty()) {
-                            try {
-                                mediaType = MediaType.parseMediaType(file.getFileType());
-                            } catch (Exception e) {
-                                mediaType = MediaType.APPLICATION_OCTET_STREAM;
-                            }
-                        } else {
-                            mediaType = MediaType.APPLICATION_OCTET_STREAM;
-                        }
-                }
-            } else if (file.getFileType() != null && !file.getFileType().isEmpty()) {
-                // 如果没有扩展名但有已知的文件类型，使用已知的文件类型
-                try {
-                    mediaType = MediaType.parseMediaType(file.getFileType());
-                } catch (Exception e) {
-                    mediaType = MediaType.APPLICATION_OCTET_STREAM;
+            // 验证提取码
+            if (share.getExtractionCode() != null && !share.getExtractionCode().isEmpty()) {
+                if (code == null || !share.getExtractionCode().equals(code)) {
+                    return ResponseEntity.status(403).body("提取码错误");
                 }
             }
             
-            headers.setContentType(mediaType);
-            
-            // 判断是否为可以预览的内容类型
-            boolean isPreviewable = mediaType.toString().startsWith("image/") || 
-                                   mediaType.toString().startsWith("text/") || 
-                                   mediaType.toString().equals("application/pdf");
-            
-            // 根据请求头判断是否需要强制下载
-            boolean forceDownload = false;
-            
-            // 根据内容类型和强制下载标志决定是直接预览还是下载
-            String contentDisposition;
-            if (isPreviewable && !forceDownload) {
-                // 对于可预览的文件类型，使用inline方式
-                contentDisposition = "inline; filename=\"" + encodedFileName + "\"";
+            // 未指定文件时打包分享的根文件/文件夹，否则检查每个文件是否在分享范围内
+            if (fileIds == null || fileIds.isEmpty()) {
+                fileIds = Collections.singletonList(share.getUserFileId());
             } else {
-                // 对于其他文件类型，使用attachment方式下载
-                contentDisposition = "attachment; filename=\"" + encodedFileName + "\"";
-            }
-            
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
-            
-            // 如果知道文件大小，设置Content-Length
-            if (file.getFileSize() != null) {
-                headers.setContentLength(file.getFileSize());
+                for (Long fileId : fileIds) {
+                    if (!shareService.checkFileInShareScope(fileId, share.getUserFileId())) {
+                        return ResponseEntity.status(403).body("无权访问该文件");
+                    }
+                }
             }
             
-            // 添加缓存控制头
-            headers.setCacheControl("max-age=31536000"); // 缓存一年
-            
-            // 添加跨域头
-            headers.add("Access-Control-Expose-Headers", "Content-Disposition");
+            List<ZipEntryDTO> entries = fileService.listZipEntries(fileIds, share.getUserId());
+            shareService.incrementDownloadCount(share.getId());
             
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(new InputStreamResource(inputStream));
+            String zipName = fileIds.size() == 1 && !entries.isEmpty()
+                    ? entries.get(0).getEntryName().replaceAll("/$", "") + ".zip"
+                    : "share-" + shareCode + ".zip";
+            return downloadService.downloadZip(zipName, entries, jwtUtil.getUserIdFromRequest(request), shareCode);
+        } catch (BusinessException e) {
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             e.printStackTrace();
-            return ResponseEntity.internalServerError().body("下载文件失败: " + e.getMessage());
+            return ResponseEntity.internalServerError().body("打包下载失败: " + e.getMessage());
         }
     }
     
@@ -578,7 +511,8 @@ public class ShareController {
     public ResponseEntity<?> previewShareFile(
             @PathVariable String shareCode,
             @PathVariable Long userFileId,
-            @RequestParam(required = false) String code) {
+            @RequestParam(required = false) String code,
+            HttpServletRequest request) {
         try {
             // 查询分享信息
             Share share = shareService.getShareByCode(shareCode);
@@ -611,117 +545,30 @@ public class ShareController {
                 return ResponseEntity.notFound().build();
             }
             
-            // 增加浏览次数
-            shareService.incrementViewCount(share.getId());
-            
-            // 获取文件流
-            InputStream inputStream = storageService.downloadFile(bucketName, file.getObjectName());
-            if (inputStream == null) {
-                return ResponseEntity.notFound().build();
+            // 增加浏览次数，拖动播放产生的后续范围请求不重复计数
+            if (!downloadService.isPartialRequest(request)) {
+                shareService.incrementViewCount(share.getId());
             }
             
-            // 设置文件名
-            String fileName = userFile.getFileName();
-            // 处理文件名中可能包含的@2o.jpg等后缀
-            if (fileName.contains("@")) {
-                // 获取文件扩展名
-                String extension = "";
-                int lastDotIndex = fileName.lastIndexOf(".");
-                if (lastDotIndex > 0) {
-                    extension = fileName.substring(lastDotIndex);
-                }
-                
-                // 截取@之前的部分
-                fileName = fileName.substring(0, fileName.indexOf("@"));
-                
-                // 如果截取后的文件名不包含扩展名，则添加扩展名
-                if (!fileName.toLowerCase().endsWith(extension.toLowerCase())) {
-                    fileName += extension;
-                }
-            }
-            
-            // 设置文件名编码
-            String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8.toString())
-                    .replaceAll("\\+", "%20"); // 替换空格为%20，避免某些浏览器问题
-            
-            // 构建响应头
-            HttpHeaders headers = new HttpHeaders();
-            
-            // 从文件扩展名确定Content-Type
-            MediaType mediaType = MediaType.APPLICATION_OCTET_STREAM;
-            String fileExtension = "";
-            int lastDotIndex = fileName.lastIndexOf(".");
-            if (lastDotIndex > 0) {
-                fileExtension = fileName.substring(lastDotIndex + 1).toLowerCase();
-                
-                // 根据扩展名设置常见的Content-Type
-                switch (fileExtension) {
-                    case "jpg":
-                    case "jpeg":
-                        mediaType = MediaType.IMAGE_JPEG;
-                        break;
-                    case "png":
-                        mediaType = MediaType.IMAGE_PNG;
-                        break;
-                    case "gif":
-                        mediaType = MediaType.IMAGE_GIF;
-                        break;
-                    case "pdf":
-                        mediaType = MediaType.APPLICATION_PDF;
-                        break;
-                    case "html":
-                        mediaType = MediaType.TEXT_HTML;
-                        break;
-                    case "txt":
-                        mediaType = MediaType.TEXT_PLAIN;
-                        break;
-                    case "json":
-                        mediaType = MediaType.APPLICATION_JSON;
-                        break;
-                    case "xml":
-                        mediaType = MediaType.APPLICATION_XML;
-                        break;
-                    // 可以根据需要添加更多的类型
-                    default:
-                        // 如果有已知的文件类型，优先使用
-                        if (file.getFileType() != null && !file.getFileType().isEmpty()) {
-                            try {
-                                mediaType = MediaType.parseMediaType(file.getFileType());
-                            } catch (Exception e) {
-                                mediaType = MediaType.APPLICATION_OCTET_STREAM;
-                            }
-                        } else {
-                            mediaType = MediaType.APPLICATION_OCTET_STREAM;
-                        }
-                }
-            } else if (file.getFileType() != null && !file.getFileType().isEmpty()) {
-                // 如果没有扩展名但有已知的文件类型，使用已知的文件类型
-                try {
-                    mediaType = MediaType.parseMediaType(file.getFileType());
-                } catch (Exception e) {
-                    mediaType = MediaType.APPLICATION_OCTET_STREAM;
-                }
-            }
-            
-            headers.setContentType(mediaType);
-            
             // 预览接口始终使用inline
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + encodedFileName + "\"");
-            
-            // 如果知道文件大小，设置Content-Length
-            if (file.getFileSize() != null) {
-                headers.setContentLength(file.getFileSize());
-            }
-            
-            // 添加缓存控制头
-            headers.setCacheControl("max-age=31536000"); // 缓存一年
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(new InputStreamResource(inputStream));
+            DownloadFileDTO downloadFile = createDownloadFile(userFile, file, true);
+            downloadFile.setUserId(jwtUtil.getUserIdFromRequest(request));
+            downloadFile.setShareCode(shareCode);
+            return downloadService.download(request, downloadFile);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().body("预览文件失败: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+    
+    private DownloadFileDTO createDownloadFile(UserFile userFile, File file, boolean inline) {
+        DownloadFileDTO downloadFile = new DownloadFileDTO();
+        downloadFile.setObjectName(file.getObjectName());
+        downloadFile.setFileName(userFile.getFileName());
+        downloadFile.setFileType(file.getFileType());
+        downloadFile.setFileSize(file.getFileSize());
+        downloadFile.setMd5(file.getMd5());
+        downloadFile.setInline(inline);
+        return downloadFile;
+    }
+}
@@ -1,6 +1,9 @@
 package com.clouddrive.exception;
 
 import com.clouddrive.model.vo.ResultVO;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.validation.BindException;
@@ -63,6 +66,20 @@ public class GlobalExceptionHandler {
         return ResultVO.fail(e.getCode(), e.getMessage());
     }
 
+    /**
+     * 处理下载线程池已满
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResultVO<Void> handleTaskRejectedException(TaskRejectedException e, HttpServletResponse response) {
+        // 清除下载已设置的Content-Disposition等响应头
+        if (!response.isCommitted()) {
+            response.reset();
+        }
+        response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+        return ResultVO.fail(HttpStatus.SERVICE_UNAVAILABLE.value(), "下载请求过多，请稍后重试");
+    }
+
     /**
      * 处理栈溢出错误
      */
@@ -17,7 +17,7 @@ public class FileEvent {
     private String eventType;
     
     /**
-     * 单个用户文件
+     * 单个用户文件（子树事件中为子树根）
      */
     private UserFile userFile;
     
@@ -51,6 +51,17 @@ public class FileEvent {
         return event;
     }
     
+    /**
+     * 创建移动事件
+     */
+    public static FileEvent createMoveEvent(UserFile userFile) {
+        FileEvent event = new FileEvent();
+        event.setEventType("MOVE");
+        event.setUserFile(userFile);
+        event.setFileId(userFile.getId());
+        return event;
+    }
+    
     /**
      * 创建删除事件
      */
@@ -61,6 +72,28 @@ public class FileEvent {
         return event;
     }
     
+    /**
+     * 创建子树删除事件，文件夹及其中任意层级的文件移入回收站时只发布一次
+     */
+    public static FileEvent createSubtreeDeleteEvent(UserFile root) {
+        FileEvent event = new FileEvent();
+        event.setEventType("DELETE_SUBTREE");
+        event.setUserFile(root);
+        event.setFileId(root.getId());
+        return event;
+    }
+    
+    /**
+     * 创建子树恢复事件，文件夹及其中任意层级的文件从回收站恢复时只发布一次
+     */
+    public static FileEvent createSubtreeRestoreEvent(UserFile root) {
+        FileEvent event = new FileEvent();
+        event.setEventType("RESTORE_SUBTREE");
+        event.setUserFile(root);
+        event.setFileId(root.getId());
+        return event;
+    }
+    
     /**
      * 创建批量索引事件
      */
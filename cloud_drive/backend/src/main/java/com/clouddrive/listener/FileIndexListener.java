@@ -2,12 +2,15 @@ package com.clouddrive.listener;
 
 import com.clouddrive.model.entity.UserFile;
 import com.clouddrive.service.FileSearchService;
+import com.clouddrive.service.UserFileService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,9 +21,17 @@ import java.util.List;
 @Slf4j
 public class FileIndexListener {
 
+    /**
+     * 子树事件每次批量请求的最大文件数量
+     */
+    private static final int SUBTREE_BATCH_SIZE = 1000;
+
     @Autowired
     private FileSearchService fileSearchService;
 
+    @Autowired
+    private UserFileService userFileService;
+
     /**
      * 处理文件上传事件
      * @param userFile 用户文件
@@ -68,4 +79,47 @@ public class FileIndexListener {
         log.info("Received bulk index event, indexing {} files", userFiles.size());
         fileSearchService.bulkIndexFiles(userFiles);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 处理子树删除事件，事务提交后查询子树中已删除的文件并批量删除索引
+     * @param event 子树根为文件夹时包含其中任意层级的文件
+     */
+    @Async
+    @TransactionalEventListener(condition = "#event.eventType == 'DELETE_SUBTREE'", fallbackExecution = true)
+    public void handleSubtreeDeleteEvent(FileEvent event) {
+        UserFile root = event.getUserFile();
+        List<Long> fileIds = new ArrayList<>();
+        fileIds.add(root.getId());
+        if (Boolean.TRUE.equals(root.getIsDir())) {
+            for (UserFile userFile : userFileService.getDeletedDescendants(root, root.getUserId())) {
+                fileIds.add(userFile.getId());
+            }
+        }
+        log.info("Received subtree delete event, removing {} files from index, root: {}", fileIds.size(), root.getId());
+        for (int i = 0; i < fileIds.size(); i += SUBTREE_BATCH_SIZE) {
+            fileSearchService.bulkDeleteFileIndex(fileIds.subList(i, Math.min(i + SUBTREE_BATCH_SIZE, fileIds.size())));
+        }
+    }
+
+    /**
+     * 处理子树恢复事件，事务提交后查询子树中未删除的文件并批量重建索引
+     * @param event 子树根为文件夹时包含其中任意层级的文件
+     */
+    @Async
+    @TransactionalEventListener(condition = "#event.eventType == 'RESTORE_SUBTREE'", fallbackExecution = true)
+    public void handleSubtreeRestoreEvent(FileEvent event) {
+        UserFile root = userFileService.getById(event.getFileId());
+        if (root == null || !Integer.valueOf(0).equals(root.getDelFlag())) {
+            return;
+        }
+        List<UserFile> userFiles = new ArrayList<>();
+        userFiles.add(root);
+        if (Boolean.TRUE.equals(root.getIsDir())) {
+            userFiles.addAll(userFileService.getDescendants(root));
+        }
+        log.info("Received subtree restore event, indexing {} files, root: {}", userFiles.size(), root.getId());
+        for (int i = 0; i < userFiles.size(); i += SUBTREE_BATCH_SIZE) {
+            fileSearchService.bulkIndexFiles(userFiles.subList(i, Math.min(i + SUBTREE_BATCH_SIZE, userFiles.size())));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.clouddrive.listener;
+
+import com.clouddrive.service.UserFileService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 文件夹缓存监听器
+ * 文件改名或移动的事务提交后清除缓存，避免提交前的并发查询把旧数据重新写入缓存
+ */
+@Component
+@Slf4j
+public class FolderCacheListener {
+
+    @Autowired
+    private UserFileService userFileService;
+
+    /**
+     * 处理文件改名和移动事件
+     * @param event 文件事件
+     */
+    @TransactionalEventListener(condition = "#event.eventType == 'UPDATE' or #event.eventType == 'MOVE'", fallbackExecution = true)
+    public void handleFolderChangeEvent(FileEvent event) {
+        Long userFileId = event.getUserFile() != null ? event.getUserFile().getId() : event.getFileId();
+        if (userFileId != null) {
+            log.debug("Evicting folder cache: {}", userFileId);
+            userFileService.evictFolder(userFileId);
+        }
+    }
+}
@@ -5,6 +5,9 @@ import com.clouddrive.model.entity.File;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * 文件Mapper接口
  */
@@ -31,4 +34,25 @@ public interface FileMapper extends BaseMapper<File> {
      * @return 影响行数
      */
     int decreaseUsageCount(@Param("fileId") Long fileId);
-} 
\ No newline at end of file
+    
+    /**
+     * 删除不再被引用的文件记录，期间被重新引用的文件不会删除
+     * @param fileId 文件ID
+     * @return 影响行数
+     */
+    int deleteUnused(@Param("fileId") Long fileId);
+    
+    /**
+     * 统计引用指定对象的文件记录数
+     * @param objectName 对象名称
+     * @return 记录数
+     */
+    int countByObjectName(@Param("objectName") String objectName);
+    
+    /**
+     * 查询仍被文件记录引用的对象名称
+     * @param objectNames 对象名称列表
+     * @return 被引用的对象名称
+     */
+    List<String> selectReferencedObjectNames(@Param("objectNames") Collection<String> objectNames);
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.clouddrive.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.clouddrive.model.entity.StorageBlock;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 存储块Mapper接口
+ */
+@Mapper
+public interface StorageBlockMapper extends BaseMapper<StorageBlock> {
+    
+    /**
+     * 根据内容哈希查询存储块
+     * @param bucketName 存储桶名称
+     * @param blockHash 块内容SHA-256
+     * @return 存储块
+     */
+    StorageBlock selectByHash(@Param("bucketName") String bucketName, @Param("blockHash") String blockHash);
+    
+    /**
+     * 增加存储块引用次数，记录不存在时插入
+     * @param bucketName 存储桶名称
+     * @param blockHash 块内容SHA-256
+     * @param blockSize 块大小
+     * @return 影响行数，插入新记录时为1，增加已有记录的引用次数时为2
+     */
+    int increaseRefCount(@Param("bucketName") String bucketName, @Param("blockHash") String blockHash, @Param("blockSize") int blockSize);
+    
+    /**
+     * 减少存储块引用次数
+     * @param bucketName 存储桶名称
+     * @param blockHash 块内容SHA-256
+     * @param count 减少的次数
+     * @return 影响行数
+     */
+    int decreaseRefCount(@Param("bucketName") String bucketName, @Param("blockHash") String blockHash, @Param("count") int count);
+    
+    /**
+     * 查询不再被引用的存储块
+     * @param bucketName 存储桶名称
+     * @param blockHashes 块内容SHA-256列表
+     * @return 不再被引用的存储块
+     */
+    List<StorageBlock> selectUnreferenced(@Param("bucketName") String bucketName, @Param("blockHashes") Collection<String> blockHashes);
+    
+    /**
+     * 删除不再被引用的存储块记录
+     * @param id 存储块ID
+     * @return 影响行数
+     */
+    int deleteUnreferenced(@Param("id") Long id);
+}
@@ -0,0 +1,75 @@
+package com.clouddrive.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.clouddrive.model.dto.StorageObjectDTO;
+import com.clouddrive.model.entity.StorageManifest;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 对象清单Mapper接口
+ */
+@Mapper
+public interface StorageManifestMapper extends BaseMapper<StorageManifest> {
+    
+    /**
+     * 按块序号查询对象清单
+     * @param bucketName 存储桶名称
+     * @param objectName 对象名称
+     * @return 对象清单
+     */
+    List<StorageManifest> selectByObject(@Param("bucketName") String bucketName, @Param("objectName") String objectName);
+    
+    /**
+     * 查询对象大小
+     * @param bucketName 存储桶名称
+     * @param objectName 对象名称
+     * @return 对象大小，对象不存在时为null
+     */
+    Long sumObjectSize(@Param("bucketName") String bucketName, @Param("objectName") String objectName);
+    
+    /**
+     * 查询指定前缀下的对象名称
+     * @param bucketName 存储桶名称
+     * @param prefix 前缀
+     * @return 对象名称列表
+     */
+    List<String> selectObjectNamesByPrefix(@Param("bucketName") String bucketName, @Param("prefix") String prefix);
+    
+    /**
+     * 按对象名称分页查询指定前缀下的对象信息，大小为各块大小之和，修改时间为清单写入时间
+     * @param bucketName 存储桶名称
+     * @param prefix 前缀
+     * @param afterObjectName 上一页最后一个对象名称，查询第一页时为null
+     * @param limit 每页数量
+     * @return 对象信息列表，按对象名称升序
+     */
+    List<StorageObjectDTO> selectObjectsPage(@Param("bucketName") String bucketName, @Param("prefix") String prefix,
+                                             @Param("afterObjectName") String afterObjectName, @Param("limit") int limit);
+    
+    /**
+     * 查询给定对象中有对象清单的对象名称
+     * @param bucketName 存储桶名称
+     * @param objectNames 对象名称
+     * @return 有对象清单的对象名称
+     */
+    List<String> selectExistingObjectNames(@Param("bucketName") String bucketName, @Param("objectNames") Collection<String> objectNames);
+    
+    /**
+     * 批量插入对象清单
+     * @param manifests 对象清单
+     * @return 影响行数
+     */
+    int insertBatch(@Param("manifests") List<StorageManifest> manifests);
+    
+    /**
+     * 删除对象清单
+     * @param bucketName 存储桶名称
+     * @param objectName 对象名称
+     * @return 影响行数
+     */
+    int deleteByObject(@Param("bucketName") String bucketName, @Param("objectName") String objectName);
+}
@@ -0,0 +1,59 @@
+package com.clouddrive.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.clouddrive.model.entity.StorageTombstone;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 待删除对象Mapper接口
+ */
+@Mapper
+public interface StorageTombstoneMapper extends BaseMapper<StorageTombstone> {
+    
+    /**
+     * 认领已到处理时间的待删除对象，认领期间其他节点不会处理这些记录
+     * @param claimToken 本次认领的标识
+     * @param leaseUntil 认领有效期，到期未处理完的记录可被重新认领
+     * @param limit 最大数量
+     * @return 认领的记录数
+     */
+    int claimDue(@Param("claimToken") String claimToken, @Param("leaseUntil") Date leaseUntil, @Param("limit") int limit);
+    
+    /**
+     * 按ID认领尚未被认领过的待删除对象
+     * @param ids 记录ID列表
+     * @param claimToken 本次认领的标识
+     * @param leaseUntil 认领有效期，到期未处理完的记录可被重新认领
+     * @return 认领的记录数
+     */
+    int claimByIds(@Param("ids") Collection<Long> ids, @Param("claimToken") String claimToken, @Param("leaseUntil") Date leaseUntil);
+    
+    /**
+     * 查询并锁定本次认领的记录，锁持有到删除对象的事务结束
+     * @param claimToken 认领标识
+     * @return 待删除对象列表
+     */
+    List<StorageTombstone> selectClaimedForUpdate(@Param("claimToken") String claimToken);
+    
+    /**
+     * 删除对象的待删除登记，记录正在被删除时等待删除事务结束
+     * @param bucketName 存储桶名称
+     * @param objectName 对象名称
+     * @return 影响行数
+     */
+    int deleteByObjectName(@Param("bucketName") String bucketName, @Param("objectName") String objectName);
+    
+    /**
+     * 记录一次删除失败，增加重试次数并推迟下次处理时间
+     * @param id 记录ID
+     * @param lastError 错误信息
+     * @param nextAttemptTime 下次处理时间
+     * @return 影响行数
+     */
+    int markFailed(@Param("id") Long id, @Param("lastError") String lastError, @Param("nextAttemptTime") Date nextAttemptTime);
+}
@@ -1,10 +1,13 @@
 package com.clouddrive.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.clouddrive.model.dto.FileListItemDTO;
+import com.clouddrive.model.dto.FileListQueryDTO;
 import com.clouddrive.model.entity.UserFile;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -108,4 +111,81 @@ public interface UserFileMapper extends BaseMapper<UserFile> {
      * @return 用户文件
      */
     UserFile findUserFileByNameAndParent(@Param("fileName") String fileName, @Param("parentId") Long parentId, @Param("userId") Long userId);
-} 
\ No newline at end of file
+    
+    /**
+     * 获取祖先路径以指定前缀开头的所有未删除文件，即文件夹下任意层级的文件和子文件夹
+     * @param pathPrefix 文件夹的子路径，例如 "/12/34/"
+     * @param userId 用户ID
+     * @return 子树中的文件列表
+     */
+    List<UserFile> selectDescendants(@Param("pathPrefix") String pathPrefix, @Param("userId") Long userId);
+    
+    /**
+     * 获取祖先路径以指定前缀开头的所有已删除文件
+     * @param pathPrefix 文件夹的子路径，例如 "/12/34/"
+     * @param userId 用户ID
+     * @return 子树中已删除的文件列表
+     */
+    List<UserFile> selectDeletedDescendants(@Param("pathPrefix") String pathPrefix, @Param("userId") Long userId);
+    
+    /**
+     * 移动文件夹后替换子树中所有文件祖先路径的前缀
+     * @param oldPrefix 原子路径
+     * @param newPrefix 新子路径
+     * @param userId 用户ID
+     * @return 影响行数
+     */
+    int updateSubtreePath(@Param("oldPrefix") String oldPrefix, @Param("newPrefix") String newPrefix, @Param("userId") Long userId);
+    
+    /**
+     * 一条语句修改文件及其子树中所有文件的删除标志，只修改删除标志为指定值的文件
+     * @param userFileId 子树根文件ID
+     * @param pathPrefix 子树根的子路径，为空时只修改根文件本身
+     * @param fromDelFlag 原删除标志
+     * @param toDelFlag 新删除标志
+     * @param userId 用户ID
+     * @return 影响行数
+     */
+    int updateSubtreeDelFlag(@Param("userFileId") Long userFileId, @Param("pathPrefix") String pathPrefix,
+                             @Param("fromDelFlag") Integer fromDelFlag, @Param("toDelFlag") Integer toDelFlag,
+                             @Param("userId") Long userId);
+    
+    /**
+     * 查询多个父文件夹下指定名称的未删除文件
+     * @param parentIds 父文件夹ID列表
+     * @param fileNames 文件名列表
+     * @param userId 用户ID
+     * @param locking 是否加共享锁，加锁时读取最新提交的数据
+     * @return 文件列表
+     */
+    List<UserFile> selectChildrenByNames(@Param("parentIds") Collection<Long> parentIds, @Param("fileNames") Collection<String> fileNames,
+                                         @Param("userId") Long userId, @Param("locking") boolean locking);
+    
+    /**
+     * 批量插入用户文件，插入后回填ID
+     * @param userFiles 用户文件列表
+     * @return 影响行数
+     */
+    int insertBatch(List<UserFile> userFiles);
+    
+    /**
+     * 按游标分页查询文件夹下的未删除文件，排序在数据库中完成
+     * @param query 查询条件
+     * @return 文件列表
+     */
+    List<FileListItemDTO> selectFilePage(@Param("query") FileListQueryDTO query);
+    
+    /**
+     * 按游标分页查询收藏的文件
+     * @param query 查询条件
+     * @return 文件列表
+     */
+    List<FileListItemDTO> selectStarredPage(@Param("query") FileListQueryDTO query);
+    
+    /**
+     * 按游标分页查询回收站顶层的文件，父文件夹也在回收站中的文件不单独列出
+     * @param query 查询条件
+     * @return 文件列表
+     */
+    List<FileListItemDTO> selectRecycleBinPage(@Param("query") FileListQueryDTO query);
+}
\ No newline at end of file
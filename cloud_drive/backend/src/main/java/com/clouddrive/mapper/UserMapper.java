@@ -43,4 +43,12 @@ public interface UserMapper extends BaseMapper<User> {
      * @return 影响行数
      */
     int updateUsedSize(@Param("userId") Long userId, @Param("size") Long size);
+    
+    /**
+     * 锁定用户记录直到事务结束，用于串行化同一用户的文件夹创建
+     * @param userId 用户ID
+     * @return 用户ID，用户不存在时为null
+     */
+    @Select("SELECT id FROM user WHERE id = #{userId} FOR UPDATE")
+    Long lockById(@Param("userId") Long userId);
 } 
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.clouddrive.model.dto;
+
+import lombok.Data;
+
+/**
+ * 文件下载DTO，描述一次下载或预览要输出的对象
+ */
+@Data
+public class DownloadFileDTO {
+    
+    /**
+     * 对象存储名称
+     */
+    private String objectName;
+    
+    /**
+     * 下载时使用的文件名
+     */
+    private String fileName;
+    
+    /**
+     * 文件类型（MIME），扩展名无法识别时使用
+     */
+    private String fileType;
+    
+    /**
+     * 文件大小（字节），为null时从对象存储读取
+     */
+    private Long fileSize;
+    
+    /**
+     * 文件MD5，用作ETag和读缓存的键
+     */
+    private String md5;
+    
+    /**
+     * 是否始终内联展示（预览），否则仅可预览的类型内联展示
+     */
+    private boolean inline;
+    
+    /**
+     * 是否允许重定向到对象存储的预签名URL下载
+     */
+    private boolean redirectAllowed;
+    
+    /**
+     * 下载用户ID，用于按用户限速
+     */
+    private Long userId;
+    
+    /**
+     * 分享码，分享下载时用于按分享链接限速
+     */
+    private String shareCode;
+}
@@ -0,0 +1,62 @@
+package com.clouddrive.model.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 文件列表项，只包含列表页面需要的字段
+ */
+@Data
+public class FileListItemDTO {
+
+    /**
+     * 用户文件ID
+     */
+    private Long id;
+
+    /**
+     * 文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 文件类型
+     */
+    private String fileType;
+
+    /**
+     * 是否为目录
+     */
+    private Boolean isDir;
+
+    /**
+     * 父文件夹ID
+     */
+    private Long parentId;
+
+    /**
+     * 是否已收藏
+     */
+    private Boolean isStarred;
+
+    /**
+     * 删除标志，0:未删除，1:回收站
+     */
+    private Integer delFlag;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+}
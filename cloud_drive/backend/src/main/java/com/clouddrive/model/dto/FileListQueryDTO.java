@@ -0,0 +1,45 @@
+package com.clouddrive.model.dto;
+
+import lombok.Data;
+
+/**
+ * 文件列表分页查询条件，按排序列和ID组成的游标翻页
+ */
+@Data
+public class FileListQueryDTO {
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 父文件夹ID，只用于文件列表
+     */
+    private Long parentId;
+
+    /**
+     * 排序列，只能是file_name、file_size或update_time
+     */
+    private String sortColumn;
+
+    /**
+     * 是否升序
+     */
+    private boolean asc;
+
+    /**
+     * 上一页最后一项的排序列值，为空表示第一页
+     */
+    private Object cursorValue;
+
+    /**
+     * 上一页最后一项的ID，为空表示第一页
+     */
+    private Long cursorId;
+
+    /**
+     * 查询数量
+     */
+    private int limit;
+}
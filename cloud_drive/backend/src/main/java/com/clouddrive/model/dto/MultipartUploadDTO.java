@@ -0,0 +1,27 @@
+package com.clouddrive.model.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 对象存储中未完成的原生分片上传
+ */
+@Data
+public class MultipartUploadDTO {
+
+    /**
+     * 最终对象名称
+     */
+    private String objectName;
+
+    /**
+     * 分片上传ID
+     */
+    private String uploadId;
+
+    /**
+     * 初始化时间
+     */
+    private Date initiated;
+}
@@ -0,0 +1,27 @@
+package com.clouddrive.model.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 对象存储中的对象信息
+ */
+@Data
+public class StorageObjectDTO {
+
+    /**
+     * 对象名称
+     */
+    private String objectName;
+
+    /**
+     * 对象大小（字节）
+     */
+    private Long size;
+
+    /**
+     * 最后修改时间
+     */
+    private Date lastModified;
+}
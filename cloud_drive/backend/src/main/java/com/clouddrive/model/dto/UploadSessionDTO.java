@@ -0,0 +1,50 @@
+package com.clouddrive.model.dto;
+
+import lombok.Data;
+
+/**
+ * 上传会话DTO，保存在Redis中，记录一次分片上传的元信息
+ */
+@Data
+public class UploadSessionDTO {
+
+    /**
+     * 文件MD5（校验和）
+     */
+    private String md5;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 总分片数，首次上传分片后确定
+     */
+    private Integer chunks;
+
+    /**
+     * 原生分片上传ID，仅multipart模式使用
+     */
+    private String uploadId;
+
+    /**
+     * 创建时间（毫秒时间戳）
+     */
+    private Long createTime;
+
+    /**
+     * 过期时间（毫秒时间戳）
+     */
+    private Long expireTime;
+}
@@ -0,0 +1,44 @@
+package com.clouddrive.model.dto;
+
+import lombok.Data;
+
+/**
+ * 打包下载条目DTO，描述压缩包中的一个文件或文件夹
+ */
+@Data
+public class ZipEntryDTO {
+
+    /**
+     * 压缩包内的路径，文件夹以/结尾
+     */
+    private String entryName;
+
+    /**
+     * 对象存储名称，文件夹为null
+     */
+    private String objectName;
+
+    /**
+     * 文件类型（MIME）
+     */
+    private String fileType;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 文件MD5，用作读缓存的键
+     */
+    private String md5;
+
+    /**
+     * 最后修改时间（毫秒）
+     */
+    private Long lastModified;
+
+    public boolean isDirectory() {
+        return objectName == null;
+    }
+}
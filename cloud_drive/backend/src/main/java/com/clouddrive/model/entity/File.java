@@ -50,6 +50,12 @@ public class File {
     @TableField("md5")
     private String md5;
     
+    /**
+     * 文件SHA-256
+     */
+    @TableField("sha256")
+    private String sha256;
+    
     /**
      * 使用次数
      */
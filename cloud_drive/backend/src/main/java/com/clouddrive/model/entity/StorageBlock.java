@@ -0,0 +1,52 @@
+package com.clouddrive.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 存储块实体类，分块去重存储引擎中每个唯一内容块对应一条记录
+ */
+@Data
+@TableName("storage_block")
+public class StorageBlock {
+    
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+    
+    /**
+     * 存储桶名称
+     */
+    @TableField("bucket_name")
+    private String bucketName;
+    
+    /**
+     * 块内容SHA-256
+     */
+    @TableField("block_hash")
+    private String blockHash;
+    
+    /**
+     * 块大小（字节）
+     */
+    @TableField("block_size")
+    private Integer blockSize;
+    
+    /**
+     * 引用次数
+     */
+    @TableField("ref_count")
+    private Integer refCount;
+    
+    /**
+     * 创建时间
+     */
+    @TableField("create_time")
+    private Date createTime;
+}
@@ -0,0 +1,58 @@
+package com.clouddrive.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 对象清单实体类，记录对象按顺序由哪些存储块组成
+ */
+@Data
+@TableName("storage_manifest")
+public class StorageManifest {
+    
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+    
+    /**
+     * 存储桶名称
+     */
+    @TableField("bucket_name")
+    private String bucketName;
+    
+    /**
+     * 对象名称
+     */
+    @TableField("object_name")
+    private String objectName;
+    
+    /**
+     * 块序号，从0开始
+     */
+    @TableField("block_index")
+    private Integer blockIndex;
+    
+    /**
+     * 块内容SHA-256
+     */
+    @TableField("block_hash")
+    private String blockHash;
+    
+    /**
+     * 块大小（字节）
+     */
+    @TableField("block_size")
+    private Integer blockSize;
+    
+    /**
+     * 写入时间
+     */
+    @TableField("create_time")
+    private Date createTime;
+}
@@ -0,0 +1,64 @@
+package com.clouddrive.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 待删除对象记录，彻底删除文件时与元数据变更在同一事务中写入，由后台异步删除对象
+ */
+@Data
+@TableName("storage_tombstone")
+public class StorageTombstone {
+    
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+    
+    /**
+     * 存储桶名称
+     */
+    @TableField("bucket_name")
+    private String bucketName;
+    
+    /**
+     * 对象名称
+     */
+    @TableField("object_name")
+    private String objectName;
+    
+    /**
+     * 已重试次数
+     */
+    @TableField("retry_count")
+    private Integer retryCount;
+    
+    /**
+     * 下次由定时任务处理的时间
+     */
+    @TableField("next_attempt_time")
+    private Date nextAttemptTime;
+    
+    /**
+     * 最近一次认领的标识，认领后只有持有该标识的节点处理此记录
+     */
+    @TableField("claim_token")
+    private String claimToken;
+    
+    /**
+     * 最近一次删除失败的错误信息
+     */
+    @TableField("last_error")
+    private String lastError;
+    
+    /**
+     * 创建时间
+     */
+    @TableField("create_time")
+    private Date createTime;
+}
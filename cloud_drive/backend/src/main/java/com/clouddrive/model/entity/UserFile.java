@@ -56,6 +56,12 @@ public class UserFile {
     @TableField("parent_id")
     private Long parentId;
     
+    /**
+     * 祖先路径，依次记录从根目录到父文件夹的各级文件夹ID，例如 /12/34/；根目录下为 /
+     */
+    @TableField("path")
+    private String path;
+    
     /**
      * 是否为文件夹
      */
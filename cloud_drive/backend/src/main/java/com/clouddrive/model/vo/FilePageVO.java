@@ -0,0 +1,23 @@
+package com.clouddrive.model.vo;
+
+import com.clouddrive.model.dto.FileListItemDTO;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 文件列表分页结果
+ */
+@Data
+public class FilePageVO {
+
+    /**
+     * 当前页的文件
+     */
+    private List<FileListItemDTO> list;
+
+    /**
+     * 下一页的游标，没有更多数据时为null
+     */
+    private String nextCursor;
+}
@@ -50,6 +50,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         "/share/verify",
         "/share/verify/**", 
         "/file/download/public/**",
+        "/file/storage/avatars/**",
         "/error/**",
         "/actuator/**",
         "/favicon.ico"
@@ -0,0 +1,49 @@
+package com.clouddrive.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 下载带宽控制服务接口
+ * 按用户、分享链接和节点总带宽三级令牌桶限速，限速值可在运行时调整
+ */
+public interface BandwidthService {
+
+    /**
+     * 为一次下载获取限速器，下载结束后必须关闭
+     * @param userId 下载用户ID，为空时不按用户限速
+     * @param shareCode 分享码，不是分享下载时为空
+     * @return 限速器
+     */
+    Throttle open(Long userId, String shareCode);
+
+    /**
+     * 获取当前限速配置
+     * @return 各级默认限速和单独设置的限速（字节/秒，0表示不限速）
+     */
+    Map<String, Object> getLimits();
+
+    /**
+     * 调整限速
+     * @param scope 限速级别：global、user或share
+     * @param key 用户ID或分享码，为空时调整该级别的默认限速
+     * @param bytesPerSecond 限速（字节/秒），0表示不限速；单独设置时传入负数表示恢复默认
+     */
+    void setLimit(String scope, String key, long bytesPerSecond);
+
+    /**
+     * 单次下载的限速器
+     */
+    interface Throttle extends AutoCloseable {
+
+        /**
+         * 输出数据前调用，超出限速时阻塞等待
+         * @param bytes 即将输出的字节数
+         * @throws IOException 等待时被中断
+         */
+        void consume(int bytes) throws IOException;
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,15 @@
+package com.clouddrive.service;
+
+/**
+ * 分片清理服务接口
+ * 清理放弃的上传遗留的数据，避免一直占用存储空间：长期未合并的分片对象（chunks/userId/md5/N.chunk）、
+ * 未完成的原生分片上传和未转为正式对象的临时对象（staging/）
+ */
+public interface ChunkCleanupService {
+
+    /**
+     * 执行一次清理，同一时间只有一个节点执行，其他节点直接返回
+     * @return 释放的字节数，未获得执行权时返回-1
+     */
+    long cleanup();
+}
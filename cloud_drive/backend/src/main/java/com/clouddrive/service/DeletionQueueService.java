@@ -0,0 +1,33 @@
+package com.clouddrive.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 对象删除队列服务接口
+ * 彻底删除文件时不在请求事务中删除对象，而是在事务内登记待删除对象，事务提交后由后台批量删除并在失败时重试
+ */
+public interface DeletionQueueService {
+
+    /**
+     * 登记待删除对象，应在删除文件元数据的事务中调用；事务提交后才会通知后台删除，事务回滚时登记一并回滚
+     * @param bucketName 存储桶名称
+     * @param objectNames 对象名称列表
+     */
+    void enqueue(String bucketName, Collection<String> objectNames);
+
+    /**
+     * 撤销对象的待删除登记，应在重新引用该对象的事务中、确认对象存在之前调用。
+     * 后台正在删除该对象时会等待删除完成，调用返回后对象要么仍然存在且不会再被删除，要么已被删除需要重新写入
+     * @param bucketName 存储桶名称
+     * @param objectName 对象名称
+     */
+    void cancel(String bucketName, String objectName);
+
+    /**
+     * 删除登记的对象，成功后清除登记，失败时推迟重试
+     * @param tombstoneIds 待删除记录ID列表
+     * @return 实际删除的对象数量
+     */
+    int purge(List<Long> tombstoneIds);
+}
@@ -0,0 +1,47 @@
+package com.clouddrive.service;
+
+import com.clouddrive.model.dto.DownloadFileDTO;
+import com.clouddrive.model.dto.ZipEntryDTO;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * 文件下载服务接口
+ */
+public interface DownloadService {
+    
+    /**
+     * 构建文件下载响应
+     * 支持Range（单个或多个范围）、If-Range和If-None-Match条件请求，ETag取自文件MD5
+     * @param request HTTP请求
+     * @param downloadFile 要下载的文件
+     * @return 200完整内容、206部分内容、304未修改或416范围无效的响应
+     */
+    ResponseEntity<?> download(HttpServletRequest request, DownloadFileDTO downloadFile);
+    
+    /**
+     * 获取对象存储的预签名直接下载地址，满足重定向条件（已开启且文件不小于阈值）时才生成
+     * @param downloadFile 要下载的文件
+     * @return 预签名URL，不满足重定向条件或对象不支持预签名访问时返回null，此时应由服务端转发下载
+     */
+    String getDirectDownloadUrl(DownloadFileDTO downloadFile);
+    
+    /**
+     * 是否为断点续传或拖动播放产生的范围请求（不从文件开头读取）
+     * @param request HTTP请求
+     * @return 是否为范围请求
+     */
+    boolean isPartialRequest(HttpServletRequest request);
+    
+    /**
+     * 构建打包下载响应，边读取边压缩输出ZIP（必要时为ZIP64），不在服务端生成完整的压缩包
+     * @param zipName 压缩包文件名
+     * @param entries 压缩包条目，按输出顺序排列
+     * @param userId 下载用户ID，用于按用户限速
+     * @param shareCode 分享码，分享下载时用于按分享链接限速
+     * @return 200响应，响应体长度未知，以分块传输编码输出
+     */
+    ResponseEntity<?> downloadZip(String zipName, List<ZipEntryDTO> entries, Long userId, String shareCode);
+}
@@ -37,6 +37,13 @@ public interface FileSearchService {
      */
     boolean deleteFileIndex(Long fileId);
 
+    /**
+     * 批量删除文件索引
+     * @param fileIds 文件ID列表
+     * @return 是否成功
+     */
+    boolean bulkDeleteFileIndex(List<Long> fileIds);
+
     /**
      * 搜索文件
      * @param keyword 关键词
@@ -1,10 +1,13 @@
 package com.clouddrive.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.clouddrive.model.dto.ZipEntryDTO;
 import com.clouddrive.model.entity.File;
 import com.clouddrive.model.entity.UserFile;
+import com.clouddrive.model.vo.FilePageVO;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +26,19 @@ public interface FileService extends IService<File> {
      */
     UserFile upload(MultipartFile file, Long parentId, String relativePath, Long userId);
     
+    /**
+     * 以流的方式上传文件，数据直接写入对象存储，不经过临时文件
+     * @param inputStream 文件数据流
+     * @param size 文件大小，未知时传-1
+     * @param fileName 文件名
+     * @param contentType 内容类型
+     * @param parentId 父文件夹ID
+     * @param relativePath 文件的相对路径 (例如 "folderA/file.txt")
+     * @param userId 用户ID
+     * @return 文件信息
+     */
+    UserFile upload(InputStream inputStream, long size, String fileName, String contentType, Long parentId, String relativePath, Long userId);
+    
     /**
      * 创建文件夹
      * @param folderName 文件夹名称
@@ -32,6 +48,15 @@ public interface FileService extends IService<File> {
      */
     UserFile createFolder(String folderName, Long parentId, Long userId);
     
+    /**
+     * 文件夹上传前按目录清单一次创建所有文件夹，已存在的文件夹直接使用
+     * @param parentId 上传目标文件夹ID
+     * @param folderPaths 目录清单，文件夹的相对路径列表，例如 "a/b/c"
+     * @param userId 用户ID
+     * @return 相对路径到文件夹ID的映射，之后的文件上传直接使用对应的文件夹ID作为父文件夹
+     */
+    Map<String, Long> prepareFolderUpload(Long parentId, List<String> folderPaths, Long userId);
+    
     /**
      * 获取用户文件列表
      * @param parentId 父文件夹ID
@@ -47,6 +72,40 @@ public interface FileService extends IService<File> {
      */
     List<UserFile> getRecycleBinList(Long userId);
     
+    /**
+     * 按游标分页获取文件夹下的文件
+     * @param parentId 父文件夹ID
+     * @param orderBy 排序字段：name、size或time
+     * @param orderDirection 排序方向：asc或desc
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param limit 每页数量
+     * @param userId 用户ID
+     * @return 当前页的文件和下一页的游标
+     */
+    FilePageVO getFilePage(Long parentId, String orderBy, String orderDirection, String cursor, Integer limit, Long userId);
+    
+    /**
+     * 按游标分页获取收藏的文件
+     * @param orderBy 排序字段：name、size或time
+     * @param orderDirection 排序方向：asc或desc
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param limit 每页数量
+     * @param userId 用户ID
+     * @return 当前页的文件和下一页的游标
+     */
+    FilePageVO getStarredPage(String orderBy, String orderDirection, String cursor, Integer limit, Long userId);
+    
+    /**
+     * 按游标分页获取回收站中的文件
+     * @param orderBy 排序字段：name、size或updateTime
+     * @param orderDirection 排序方向：asc或desc
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param limit 每页数量
+     * @param userId 用户ID
+     * @return 当前页的文件和下一页的游标
+     */
+    FilePageVO getRecycleBinPage(String orderBy, String orderDirection, String cursor, Integer limit, Long userId);
+    
     /**
      * 获取回收站中特定文件夹的内容
      * @param folderId 文件夹ID
@@ -184,6 +243,18 @@ public interface FileService extends IService<File> {
      */
     String saveChunk(MultipartFile file, String md5, Integer chunkIndex, Integer chunks, Long userId) throws Exception;
     
+    /**
+     * 以流的方式保存文件分片
+     * @param inputStream 分片数据流
+     * @param size 分片大小，未知时传-1
+     * @param md5 文件MD5值
+     * @param chunkIndex 分片索引
+     * @param chunks 总分片数
+     * @param userId 用户ID
+     * @return 分片保存路径
+     */
+    String saveChunk(InputStream inputStream, long size, String md5, Integer chunkIndex, Integer chunks, Long userId) throws Exception;
+    
     /**
      * 合并文件分片
      * @param md5 文件MD5值
@@ -205,6 +276,18 @@ public interface FileService extends IService<File> {
      */
     Map<String, Object> checkFileMd5(String md5, String fileName, Long fileSize, Long userId);
     
+    /**
+     * 为分片生成预签名上传URL，客户端直接将分片上传到对象存储，上传完成后调用合并接口
+     * @param md5 文件MD5值
+     * @param fileName 文件名
+     * @param fileSize 文件大小
+     * @param chunkSize 分片大小，为null时只按最小分片大小校验分片数
+     * @param chunks 总分片数，必须与文件大小和分片大小一致，且不超过对象存储的分片数上限
+     * @param userId 用户ID
+     * @return 结果，包含每个分片的上传URL列表urls
+     */
+    Map<String, Object> presignChunkUrls(String md5, String fileName, Long fileSize, Long chunkSize, Integer chunks, Long userId);
+    
     /**
      * 批量删除文件（移入回收站）
      * @param fileIds 文件ID列表
@@ -212,4 +295,12 @@ public interface FileService extends IService<File> {
      * @return 删除结果
      */
     boolean batchDelete(List<Long> fileIds, Long userId);
-} 
\ No newline at end of file
+    
+    /**
+     * 展开打包下载的文件列表，文件夹递归展开为其下所有未删除的文件和子文件夹
+     * @param userFileIds 选中的用户文件ID列表
+     * @param userId 文件所有者ID
+     * @return 压缩包条目，按目录树的先序排列
+     */
+    List<ZipEntryDTO> listZipEntries(List<Long> userFileIds, Long userId);
+}
@@ -1,9 +1,13 @@
 package com.clouddrive.service;
 
+import com.clouddrive.model.dto.MultipartUploadDTO;
+import com.clouddrive.model.dto.StorageObjectDTO;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 存储服务接口
@@ -39,7 +43,7 @@ public interface StorageService {
      * @param bucketName 存储桶名称
      * @param objectName 对象名称
      * @param inputStream 输入流
-     * @param size 文件大小
+     * @param size 文件大小，未知时传-1（按固定分片大小流式上传）
      * @param contentType 内容类型
      * @return 文件访问URL
      */
@@ -53,6 +57,27 @@ public interface StorageService {
      */
     InputStream downloadFile(String bucketName, String objectName);
     
+    /**
+     * 下载文件的指定字节范围
+     * @param bucketName 存储桶名称
+     * @param objectName 对象名称
+     * @param offset 起始偏移量
+     * @param length 读取长度
+     * @return 文件输入流
+     */
+    InputStream downloadFile(String bucketName, String objectName, long offset, long length);
+    
+    /**
+     * 下载内容已知的文件，读缓存以内容MD5为键，其他实现忽略MD5
+     * @param bucketName 存储桶名称
+     * @param objectName 对象名称
+     * @param contentMd5 文件内容MD5，未知时为null
+     * @param offset 起始偏移量
+     * @param length 读取长度，小于0时读取整个对象（offset须为0）
+     * @return 文件输入流
+     */
+    InputStream downloadFile(String bucketName, String objectName, String contentMd5, long offset, long length);
+    
     /**
      * 获取文件访问URL
      * @param bucketName 存储桶名称
@@ -62,6 +87,17 @@ public interface StorageService {
      */
     String getPresignedObjectUrl(String bucketName, String objectName, int expires);
     
+    /**
+     * 获取指定请求方法的预签名URL
+     * @param bucketName 存储桶名称
+     * @param objectName 对象名称
+     * @param expires 过期时间（秒）
+     * @param method 请求方法，例如 GET、PUT
+     * @param queryParams 额外的查询参数（例如分片上传的uploadId和partNumber），可为null
+     * @return 预签名URL
+     */
+    String getPresignedObjectUrl(String bucketName, String objectName, int expires, String method, Map<String, String> queryParams);
+    
     /**
      * 删除文件
      * @param bucketName 存储桶名称
@@ -70,6 +106,14 @@ public interface StorageService {
      */
     boolean removeFile(String bucketName, String objectName);
     
+    /**
+     * 批量删除文件，不存在的对象视为删除成功
+     * @param bucketName 存储桶名称
+     * @param objectNames 对象名称列表
+     * @return 删除失败的对象名称及错误信息，全部成功时为空
+     */
+    Map<String, String> removeFiles(String bucketName, List<String> objectNames);
+    
     /**
      * 合并文件分片
      * @param bucketName 存储桶名称
@@ -80,6 +124,17 @@ public interface StorageService {
      */
     boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType);
     
+    /**
+     * 合并文件分片，并在合并时写入内容类型和用户元数据
+     * @param bucketName 存储桶名称
+     * @param sourceObjectNames 源对象名称列表
+     * @param targetObjectName 目标对象名称
+     * @param contentType 内容类型
+     * @param userMetadata 用户元数据，可为null
+     * @return 是否合并成功
+     */
+    boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType, Map<String, String> userMetadata);
+    
     /**
      * 获取对象大小
      * @param bucketName 存储桶名称
@@ -103,4 +158,68 @@ public interface StorageService {
      * @return 对象名称列表
      */
     List<String> listObjects(String bucketName, String prefix);
+    
+    /**
+     * 逐个遍历指定前缀下的对象，不在内存中保存完整列表
+     * @param bucketName 存储桶名称
+     * @param prefix 对象名称前缀
+     * @param visitor 对象信息的处理方法
+     */
+    void walkObjects(String bucketName, String prefix, Consumer<StorageObjectDTO> visitor);
+    
+    /**
+     * 初始化原生分片上传
+     * @param bucketName 存储桶名称
+     * @param objectName 最终对象名称
+     * @param contentType 内容类型
+     * @return 分片上传ID
+     */
+    String initMultipartUpload(String bucketName, String objectName, String contentType);
+    
+    /**
+     * 上传单个分片
+     * @param bucketName 存储桶名称
+     * @param objectName 最终对象名称
+     * @param uploadId 分片上传ID
+     * @param partNumber 分片序号（从1开始）
+     * @param inputStream 分片数据
+     * @param size 分片大小
+     * @return 分片ETag
+     */
+    String uploadPart(String bucketName, String objectName, String uploadId, int partNumber, InputStream inputStream, long size);
+    
+    /**
+     * 列出分片上传中已上传的分片序号
+     * @param bucketName 存储桶名称
+     * @param objectName 最终对象名称
+     * @param uploadId 分片上传ID
+     * @return 已上传的分片序号列表（从1开始）
+     */
+    List<Integer> listUploadedParts(String bucketName, String objectName, String uploadId);
+    
+    /**
+     * 完成分片上传
+     * @param bucketName 存储桶名称
+     * @param objectName 最终对象名称
+     * @param uploadId 分片上传ID
+     * @return 是否完成成功
+     */
+    boolean completeMultipartUpload(String bucketName, String objectName, String uploadId);
+    
+    /**
+     * 取消分片上传
+     * @param bucketName 存储桶名称
+     * @param objectName 最终对象名称
+     * @param uploadId 分片上传ID
+     * @return 是否取消成功
+     */
+    boolean abortMultipartUpload(String bucketName, String objectName, String uploadId);
+    
+    /**
+     * 逐个遍历未完成的原生分片上传，不在内存中保存完整列表
+     * @param bucketName 存储桶名称
+     * @param prefix 最终对象名称前缀
+     * @param visitor 分片上传信息的处理方法
+     */
+    void walkMultipartUploads(String bucketName, String prefix, Consumer<MultipartUploadDTO> visitor);
 } 
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.clouddrive.service;
+
+import com.clouddrive.model.dto.UploadSessionDTO;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * 上传会话服务接口
+ * 以Redis记录每个分片上传会话，已接收的分片以位图保存，断点续传和合并时无需遍历对象存储
+ */
+public interface UploadSessionService {
+
+    /**
+     * 获取上传会话
+     * @param md5 文件MD5值
+     * @param userId 用户ID
+     * @return 上传会话，不存在时返回null
+     */
+    UploadSessionDTO getSession(String md5, Long userId);
+
+    /**
+     * 创建上传会话，会话已存在时仅补充文件名和文件大小
+     * @param md5 文件MD5值
+     * @param userId 用户ID
+     * @param fileName 文件名
+     * @param fileSize 文件大小
+     * @return 上传会话
+     */
+    UploadSessionDTO createSession(String md5, Long userId, String fileName, Long fileSize);
+
+    /**
+     * 使用已存在的分片重建上传会话（例如Redis数据丢失后根据对象存储中的分片恢复）
+     * @param md5 文件MD5值
+     * @param userId 用户ID
+     * @param uploadedChunks 已上传的分片索引
+     */
+    void rebuildSession(String md5, Long userId, Collection<Integer> uploadedChunks);
+
+    /**
+     * 标记分片已上传
+     * @param md5 文件MD5值
+     * @param userId 用户ID
+     * @param chunkIndex 分片索引
+     * @param chunks 总分片数
+     */
+    void markChunkUploaded(String md5, Long userId, int chunkIndex, Integer chunks);
+
+    /**
+     * 获取已上传的分片索引
+     * @param md5 文件MD5值
+     * @param userId 用户ID
+     * @return 已上传的分片索引集合
+     */
+    Set<Integer> getUploadedChunks(String md5, Long userId);
+
+    /**
+     * 设置原生分片上传ID，已设置时不覆盖
+     * @param md5 文件MD5值
+     * @param userId 用户ID
+     * @param uploadId 分片上传ID
+     * @return 最终生效的分片上传ID
+     */
+    String setUploadIdIfAbsent(String md5, Long userId, String uploadId);
+
+    /**
+     * 删除上传会话
+     * @param md5 文件MD5值
+     * @param userId 用户ID
+     */
+    void removeSession(String md5, Long userId);
+}
@@ -1,9 +1,13 @@
 package com.clouddrive.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.clouddrive.model.dto.FileListItemDTO;
+import com.clouddrive.model.dto.FileListQueryDTO;
 import com.clouddrive.model.entity.UserFile;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户文件服务接口
@@ -25,6 +29,27 @@ public interface UserFileService extends IService<UserFile> {
      */
     List<UserFile> getRecycleBinList(Long userId);
     
+    /**
+     * 按游标分页获取文件夹下的文件
+     * @param query 查询条件
+     * @return 文件列表
+     */
+    List<FileListItemDTO> getFilePage(FileListQueryDTO query);
+    
+    /**
+     * 按游标分页获取收藏的文件
+     * @param query 查询条件
+     * @return 文件列表
+     */
+    List<FileListItemDTO> getStarredPage(FileListQueryDTO query);
+    
+    /**
+     * 按游标分页获取回收站中的文件
+     * @param query 查询条件
+     * @return 文件列表
+     */
+    List<FileListItemDTO> getRecycleBinPage(FileListQueryDTO query);
+    
     /**
      * 根据ID获取用户文件
      * @param userFileId 用户文件ID
@@ -112,4 +137,93 @@ public interface UserFileService extends IService<UserFile> {
      * @return 是否更新成功
      */
     boolean increaseDownloadCount(Long userFileId);
-} 
\ No newline at end of file
+    
+    /**
+     * 计算文件夹下文件的祖先路径，也是查询该文件夹子树时使用的路径前缀
+     * @param parentId 父文件夹ID，0表示根目录
+     * @return 祖先路径，例如 "/12/34/"
+     */
+    String getChildPath(Long parentId);
+    
+    /**
+     * 获取文件夹下任意层级的未删除文件和子文件夹，一次查询完成
+     * @param folder 文件夹
+     * @return 子树中的文件列表，不包括文件夹本身
+     */
+    List<UserFile> getDescendants(UserFile folder);
+    
+    /**
+     * 获取文件夹下任意层级的已删除文件和子文件夹，一次查询完成
+     * @param folder 文件夹
+     * @param userId 用户ID，只返回属于该用户的文件
+     * @return 子树中已删除的文件列表，不包括文件夹本身
+     */
+    List<UserFile> getDeletedDescendants(UserFile folder, Long userId);
+    
+    /**
+     * 获取从根目录到父文件夹的各级文件夹，一次查询完成
+     * @param userFile 用户文件
+     * @return 祖先文件夹列表，按从根目录到父文件夹的顺序
+     */
+    List<UserFile> getAncestors(UserFile userFile);
+    
+    /**
+     * 判断文件是否位于指定文件夹下（任意层级）
+     * @param userFile 用户文件
+     * @param folderId 文件夹ID
+     * @return 是否位于文件夹下
+     */
+    boolean isDescendantOf(UserFile userFile, Long folderId);
+    
+    /**
+     * 移动文件或文件夹，同时更新子树中所有文件的祖先路径
+     * @param userFile 要移动的文件
+     * @param targetParentId 目标文件夹ID，0表示根目录
+     * @return 是否移动成功
+     */
+    boolean move(UserFile userFile, Long targetParentId);
+    
+    /**
+     * 一条语句修改文件及其子树（文件夹时）中所有文件的删除标志，只修改属于指定用户的文件
+     * @param userFile 子树根文件
+     * @param fromDelFlag 原删除标志，只修改删除标志为该值的文件
+     * @param toDelFlag 新删除标志
+     * @param userId 发起操作的用户ID
+     * @return 影响行数
+     */
+    int updateSubtreeDelFlag(UserFile userFile, Integer fromDelFlag, Integer toDelFlag, Long userId);
+    
+    /**
+     * 获取文件夹及其各级上级文件夹，用于面包屑导航。
+     * 结果使用进程内缓存，缓存未命中时按祖先路径一次批量查询
+     * @param folderId 文件夹ID
+     * @return 文件夹列表，按从根目录到文件夹本身的顺序，保证包含ID、名称、父文件夹ID、用户ID和是否目录
+     */
+    List<UserFile> getFolderChain(Long folderId);
+    
+    /**
+     * 清除文件夹缓存，文件改名或移动后调用
+     * @param userFileId 用户文件ID
+     */
+    void evictFolder(Long userFileId);
+    
+    /**
+     * 按相对路径获取或创建文件夹，同一层级的文件夹一次查询、一次批量插入。
+     * 同一用户的创建操作互斥，并发上传不会创建重复的文件夹；
+     * 在独立的短事务中执行并立即提交，在上传事务中调用时不会在传输文件期间持有用户记录的锁
+     * @param parentId 起始文件夹ID，0表示根目录
+     * @param folderPaths 相对路径列表，例如 "a/b/c"，各级上级路径自动包含
+     * @param userId 用户ID
+     * @return 规范化后的相对路径到文件夹ID的映射，包含各级上级路径
+     */
+    Map<String, Long> getOrCreateFolders(Long parentId, Collection<String> folderPaths, Long userId);
+    
+    /**
+     * 按相对路径获取或创建文件夹，在独立的短事务中执行
+     * @param parentId 起始文件夹ID，0表示根目录
+     * @param folderPath 相对路径，例如 "a/b/c"
+     * @param userId 用户ID
+     * @return 最后一级文件夹ID，路径为空时返回起始文件夹ID
+     */
+    Long getOrCreateFolder(Long parentId, String folderPath, Long userId);
+}
\ No newline at end of file
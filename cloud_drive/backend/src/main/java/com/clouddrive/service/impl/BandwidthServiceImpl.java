@@ -0,0 +1,332 @@
+package com.clouddrive.service.impl;
+
+import com.clouddrive.exception.BusinessException;
+import com.clouddrive.service.BandwidthService;
+import com.clouddrive.util.TokenBucket;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下载带宽控制服务实现类
+ * 每个正在下载的用户和分享链接各有一个令牌桶，最后一个下载结束后保留一段空闲时间再移除，所有下载共用节点总带宽令牌桶。
+ * 输出数据前从各级令牌桶预支令牌，按其中最长的等待时间等待，单个用户或热门分享无法占满节点出口带宽；
+ * 令牌桶在空闲期间不会被重建，反复断开重连的下载拿不到新的满桶突发额度
+ */
+@Service
+public class BandwidthServiceImpl implements BandwidthService {
+
+    private static final Logger log = LoggerFactory.getLogger(BandwidthServiceImpl.class);
+
+    private static final String SCOPE_GLOBAL = "global";
+
+    private static final String SCOPE_USER = "user";
+
+    private static final String SCOPE_SHARE = "share";
+
+    /**
+     * 节点总带宽（字节/秒），0表示不限速
+     */
+    @Value("${download.bandwidth.global-bytes-per-second:0}")
+    private volatile long globalRate;
+
+    /**
+     * 每个用户的默认带宽（字节/秒），0表示不限速
+     */
+    @Value("${download.bandwidth.user-bytes-per-second:0}")
+    private volatile long userRate;
+
+    /**
+     * 每个分享链接的默认带宽（字节/秒），0表示不限速
+     */
+    @Value("${download.bandwidth.share-bytes-per-second:0}")
+    private volatile long shareRate;
+
+    /**
+     * 允许突发的时长（秒），空闲一段时间后可以按该时长的流量一次性输出
+     */
+    @Value("${download.bandwidth.burst-seconds:1}")
+    private double burstSeconds;
+
+    /**
+     * 没有下载使用的令牌桶保留的时间（毫秒），不小于突发时长，移除时令牌桶已经重新装满
+     */
+    @Value("${download.bandwidth.idle-ttl-ms:60000}")
+    private long idleTtl;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TokenBucket globalBucket;
+
+    private final ConcurrentHashMap<Long, SharedBucket> userBuckets = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, SharedBucket> shareBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * 单独设置的用户带宽
+     */
+    private final Map<Long, Long> userLimits = new ConcurrentHashMap<>();
+
+    /**
+     * 单独设置的分享链接带宽
+     */
+    private final Map<String, Long> shareLimits = new ConcurrentHashMap<>();
+
+    private Timer globalThrottled;
+
+    private Timer userThrottled;
+
+    private Timer shareThrottled;
+
+    @PostConstruct
+    public void init() {
+        globalBucket = new TokenBucket(globalRate, burstSeconds);
+
+        Gauge.builder("clouddrive.download.bandwidth.limit", this, service -> service.globalRate)
+                .description("下载限速（字节/秒），0表示不限速")
+                .tag("scope", SCOPE_GLOBAL)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("clouddrive.download.bandwidth.limit", this, service -> service.userRate)
+                .description("下载限速（字节/秒），0表示不限速")
+                .tag("scope", SCOPE_USER)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("clouddrive.download.bandwidth.limit", this, service -> service.shareRate)
+                .description("下载限速（字节/秒），0表示不限速")
+                .tag("scope", SCOPE_SHARE)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("clouddrive.download.bandwidth.buckets", userBuckets, Map::size)
+                .description("正在下载或空闲未过期的限速对象数")
+                .tag("scope", SCOPE_USER)
+                .register(meterRegistry);
+        Gauge.builder("clouddrive.download.bandwidth.buckets", shareBuckets, Map::size)
+                .description("正在下载或空闲未过期的限速对象数")
+                .tag("scope", SCOPE_SHARE)
+                .register(meterRegistry);
+        globalThrottled = throttledTimer(SCOPE_GLOBAL);
+        userThrottled = throttledTimer(SCOPE_USER);
+        shareThrottled = throttledTimer(SCOPE_SHARE);
+    }
+
+    private Timer throttledTimer(String scope) {
+        return Timer.builder("clouddrive.download.bandwidth.throttled")
+                .description("下载因限速而等待的时间，按造成等待的限速级别统计")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Throttle open(Long userId, String shareCode) {
+        TokenBucket userBucket = userId != null ? retain(userBuckets, userId, getUserRate(userId)) : null;
+        TokenBucket shareBucket = shareCode != null ? retain(shareBuckets, shareCode, getShareRate(shareCode)) : null;
+        return new DownloadThrottle(userId, shareCode, userBucket, shareBucket);
+    }
+
+    @Override
+    public Map<String, Object> getLimits() {
+        Map<String, Object> limits = new HashMap<>();
+        limits.put(SCOPE_GLOBAL, globalRate);
+        limits.put(SCOPE_USER, userRate);
+        limits.put(SCOPE_SHARE, shareRate);
+        limits.put("userLimits", new HashMap<>(userLimits));
+        limits.put("shareLimits", new HashMap<>(shareLimits));
+        limits.put("activeUsers", userBuckets.size());
+        limits.put("activeShares", shareBuckets.size());
+        return limits;
+    }
+
+    @Override
+    public void setLimit(String scope, String key, long bytesPerSecond) {
+        if (SCOPE_GLOBAL.equals(scope)) {
+            globalRate = Math.max(bytesPerSecond, 0);
+            globalBucket.setRate(globalRate);
+        } else if (SCOPE_USER.equals(scope)) {
+            if (key == null || key.isEmpty()) {
+                userRate = Math.max(bytesPerSecond, 0);
+                userBuckets.forEach((userId, shared) -> shared.bucket.setRate(getUserRate(userId)));
+            } else {
+                Long userId;
+                try {
+                    userId = Long.parseLong(key);
+                } catch (NumberFormatException e) {
+                    throw new BusinessException("无效的用户ID: " + key);
+                }
+                if (bytesPerSecond < 0) {
+                    userLimits.remove(userId);
+                } else {
+                    userLimits.put(userId, bytesPerSecond);
+                }
+                SharedBucket shared = userBuckets.get(userId);
+                if (shared != null) {
+                    shared.bucket.setRate(getUserRate(userId));
+                }
+            }
+        } else if (SCOPE_SHARE.equals(scope)) {
+            if (key == null || key.isEmpty()) {
+                shareRate = Math.max(bytesPerSecond, 0);
+                shareBuckets.forEach((shareCode, shared) -> shared.bucket.setRate(getShareRate(shareCode)));
+            } else {
+                if (bytesPerSecond < 0) {
+                    shareLimits.remove(key);
+                } else {
+                    shareLimits.put(key, bytesPerSecond);
+                }
+                SharedBucket shared = shareBuckets.get(key);
+                if (shared != null) {
+                    shared.bucket.setRate(getShareRate(key));
+                }
+            }
+        } else {
+            throw new BusinessException("不支持的限速级别: " + scope);
+        }
+        log.info("下载限速已调整: scope={}, key={}, bytesPerSecond={}", scope, key, bytesPerSecond);
+    }
+
+    private long getUserRate(Long userId) {
+        return userLimits.getOrDefault(userId, userRate);
+    }
+
+    private long getShareRate(String shareCode) {
+        return shareLimits.getOrDefault(shareCode, shareRate);
+    }
+
+    /**
+     * 定时移除空闲超过保留时间的令牌桶
+     */
+    @Scheduled(initialDelayString = "${download.bandwidth.idle-ttl-ms:60000}",
+            fixedDelayString = "${download.bandwidth.idle-ttl-ms:60000}")
+    public void evictIdleBuckets() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(Math.max(idleTtl, (long) (burstSeconds * 1000)));
+        evictIdle(userBuckets, cutoff);
+        evictIdle(shareBuckets, cutoff);
+    }
+
+    private <K> void evictIdle(ConcurrentHashMap<K, SharedBucket> buckets, long cutoff) {
+        for (K key : buckets.keySet()) {
+            buckets.computeIfPresent(key, (k, shared) ->
+                    shared.references == 0 && shared.releasedAt - cutoff < 0 ? null : shared);
+        }
+    }
+
+    /**
+     * 获取令牌桶并增加引用计数，不存在时按给定速率创建
+     */
+    private <K> TokenBucket retain(ConcurrentHashMap<K, SharedBucket> buckets, K key, long rate) {
+        return buckets.compute(key, (k, shared) -> {
+            if (shared == null) {
+                shared = new SharedBucket(new TokenBucket(rate, burstSeconds));
+            }
+            shared.references++;
+            return shared;
+        }).bucket;
+    }
+
+    /**
+     * 减少引用计数，没有下载在使用时记录空闲开始时间，令牌桶由定时任务在空闲超时后移除
+     */
+    private <K> void release(ConcurrentHashMap<K, SharedBucket> buckets, K key) {
+        buckets.computeIfPresent(key, (k, shared) -> {
+            if (--shared.references == 0) {
+                shared.releasedAt = System.nanoTime();
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * 同一用户或分享链接的多个下载共用的令牌桶，引用计数和空闲时间只在ConcurrentHashMap.compute中修改
+     */
+    private static class SharedBucket {
+
+        private final TokenBucket bucket;
+
+        private int references;
+
+        private long releasedAt;
+
+        SharedBucket(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    private class DownloadThrottle implements Throttle {
+
+        private final Long userId;
+
+        private final String shareCode;
+
+        private final TokenBucket userBucket;
+
+        private final TokenBucket shareBucket;
+
+        private boolean closed;
+
+        DownloadThrottle(Long userId, String shareCode, TokenBucket userBucket, TokenBucket shareBucket) {
+            this.userId = userId;
+            this.shareCode = shareCode;
+            this.userBucket = userBucket;
+            this.shareBucket = shareBucket;
+        }
+
+        @Override
+        public void consume(int bytes) throws IOException {
+            long wait = globalBucket.reserve(bytes);
+            Timer timer = globalThrottled;
+            if (userBucket != null) {
+                long userWait = userBucket.reserve(bytes);
+                if (userWait > wait) {
+                    wait = userWait;
+                    timer = userThrottled;
+                }
+            }
+            if (shareBucket != null) {
+                long shareWait = shareBucket.reserve(bytes);
+                if (shareWait > wait) {
+                    wait = shareWait;
+                    timer = shareThrottled;
+                }
+            }
+            if (wait <= 0) {
+                return;
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("下载限速等待时被中断", e);
+            }
+            timer.record(wait, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (userBucket != null) {
+                release(userBuckets, userId);
+            }
+            if (shareBucket != null) {
+                release(shareBuckets, shareCode);
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package com.clouddrive.service.impl;
+
+import com.clouddrive.model.dto.MultipartUploadDTO;
+import com.clouddrive.model.dto.StorageObjectDTO;
+import com.clouddrive.service.StorageService;
+import com.clouddrive.util.FileRegionInputStream;
+import com.clouddrive.util.FrequencySketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Priority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 本地磁盘读缓存存储服务实现类
+ * 热点对象缓存在本地磁盘上，按总字节数限制容量，按LRU顺序淘汰；新对象是否进入缓存由TinyLFU决定：
+ * 访问频率达到阈值且高于将被淘汰的对象时才缓存，只下载一次的大文件不会把热点挤出缓存。
+ * 未命中时直接从下层存储读取，缓存在后台单独填充，请求不会等待整个对象下载完成。
+ * 缓存以存储桶和文件内容MD5为键，只缓存调用方给出内容MD5的读取（下载、预览、打包下载）：
+ * 按路径命名时对象名称会在删除后被内容不同的文件重新使用，而同一MD5的内容不会改变，
+ * 各节点的缓存无需在写入或删除时失效。填充时校验读到的内容与MD5一致，对象已被覆盖时放弃填充。
+ * 通过 storage.cache.enabled=true 启用，装饰分块去重存储（启用时）或底层对象存储。
+ */
+@Service
+@Priority(10)
+@ConditionalOnProperty(name = "storage.cache.enabled", havingValue = "true")
+public class CachingStorageServiceImpl implements StorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingStorageServiceImpl.class);
+
+    private static final String TMP_DIR = "tmp";
+
+    @Autowired(required = false)
+    private CdcStorageServiceImpl cdcStorageService;
+
+    @Autowired
+    @Qualifier("objectStore")
+    private StorageService objectStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 缓存目录
+     */
+    @Value("${storage.cache.dir:${java.io.tmpdir}/clouddrive-cache}")
+    private String cacheDir;
+
+    /**
+     * 缓存容量（字节）
+     */
+    @Value("${storage.cache.max-bytes:10737418240}")
+    private long maxBytes;
+
+    /**
+     * 可缓存的最大对象大小（字节）
+     */
+    @Value("${storage.cache.max-object-size:536870912}")
+    private long maxObjectSize;
+
+    /**
+     * 对象访问次数达到该值后才开始填充缓存
+     */
+    @Value("${storage.cache.admit-frequency:2}")
+    private int admitFrequency;
+
+    /**
+     * 后台填充线程数
+     */
+    @Value("${storage.cache.fill-threads:2}")
+    private int fillThreads;
+
+    /**
+     * 等待填充的对象数上限，超过时放弃本次填充
+     */
+    @Value("${storage.cache.fill-queue-capacity:64}")
+    private int fillQueueCapacity;
+
+    /**
+     * 不缓存的对象前缀，例如合并前的临时对象
+     */
+    @Value("${storage.cache.exclude-prefixes:staging/}")
+    private String[] excludePrefixes;
+
+    private StorageService delegate;
+
+    private Path root;
+
+    private FrequencySketch sketch;
+
+    /**
+     * 缓存条目，按访问顺序排列，最久未访问的在最前；由this保护
+     */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedBytes;
+
+    /**
+     * 正在填充的对象，值为填充令牌，同一对象只有一个填充任务
+     */
+    private final Map<String, Long> filling = new ConcurrentHashMap<>();
+
+    private final AtomicLong fillTokens = new AtomicLong();
+
+    private ThreadPoolTaskExecutor fillExecutor;
+
+    private Counter hits;
+
+    private Counter misses;
+
+    private Counter fills;
+
+    @PostConstruct
+    public void init() throws IOException {
+        delegate = cdcStorageService != null ? cdcStorageService : objectStore;
+        root = Paths.get(cacheDir);
+        sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, Math.max(maxBytes / (1024 * 1024), 1024)));
+
+        // 清理上次未完成的填充，已完成的缓存文件按修改时间恢复访问顺序
+        Path tmp = root.resolve(TMP_DIR);
+        Files.createDirectories(tmp);
+        try (Stream<Path> files = Files.list(tmp)) {
+            files.forEach(this::deleteQuietly);
+        }
+        loadEntries();
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(fillThreads);
+        executor.setMaxPoolSize(fillThreads);
+        executor.setQueueCapacity(fillQueueCapacity);
+        executor.setThreadNamePrefix("cache-fill-");
+        executor.initialize();
+        fillExecutor = executor;
+
+        Gauge.builder("clouddrive.storage.cache.bytes", this, CachingStorageServiceImpl::getCachedBytes)
+                .description("本地读缓存占用的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("clouddrive.storage.cache.entries", this, CachingStorageServiceImpl::getEntryCount)
+                .description("本地读缓存中的对象数")
+                .register(meterRegistry);
+        hits = Counter.builder("clouddrive.storage.cache.requests")
+                .description("读缓存请求数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        misses = Counter.builder("clouddrive.storage.cache.requests")
+                .description("读缓存请求数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        fills = Counter.builder("clouddrive.storage.cache.fills")
+                .description("填充到读缓存的对象数")
+                .register(meterRegistry);
+        log.info("本地读缓存已启用: dir={}, maxBytes={}, entries={}, cachedBytes={}", root, maxBytes, getEntryCount(), getCachedBytes());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        fillExecutor.shutdown();
+    }
+
+    @Override
+    public boolean createBucket(String bucketName) {
+        return delegate.createBucket(bucketName);
+    }
+
+    @Override
+    public boolean bucketExists(String bucketName) {
+        return delegate.bucketExists(bucketName);
+    }
+
+    @Override
+    public String uploadFile(String bucketName, String objectName, MultipartFile file, String contentType) {
+        return delegate.uploadFile(bucketName, objectName, file, contentType);
+    }
+
+    @Override
+    public String uploadFile(String bucketName, String objectName, InputStream inputStream, long size, String contentType) {
+        return delegate.uploadFile(bucketName, objectName, inputStream, size, contentType);
+    }
+
+    /**
+     * 内容未知，不经过缓存
+     */
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName) {
+        return delegate.downloadFile(bucketName, objectName);
+    }
+
+    /**
+     * 内容未知，不经过缓存
+     */
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName, long offset, long length) {
+        return delegate.downloadFile(bucketName, objectName, offset, length);
+    }
+
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName, String contentMd5, long offset, long length) {
+        if (contentMd5 != null) {
+            InputStream cached = openCached(bucketName, objectName, contentMd5, offset, length);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return delegate.downloadFile(bucketName, objectName, contentMd5, offset, length);
+    }
+
+    @Override
+    public String getPresignedObjectUrl(String bucketName, String objectName, int expires) {
+        return delegate.getPresignedObjectUrl(bucketName, objectName, expires);
+    }
+
+    @Override
+    public String getPresignedObjectUrl(String bucketName, String objectName, int expires, String method, Map<String, String> queryParams) {
+        return delegate.getPresignedObjectUrl(bucketName, objectName, expires, method, queryParams);
+    }
+
+    @Override
+    public boolean removeFile(String bucketName, String objectName) {
+        return delegate.removeFile(bucketName, objectName);
+    }
+
+    @Override
+    public Map<String, String> removeFiles(String bucketName, List<String> objectNames) {
+        return delegate.removeFiles(bucketName, objectNames);
+    }
+
+    @Override
+    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType) {
+        return delegate.composeObject(bucketName, sourceObjectNames, targetObjectName, contentType);
+    }
+
+    @Override
+    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType, Map<String, String> userMetadata) {
+        return delegate.composeObject(bucketName, sourceObjectNames, targetObjectName, contentType, userMetadata);
+    }
+
+    @Override
+    public long getObjectSize(String bucketName, String objectName) {
+        return delegate.getObjectSize(bucketName, objectName);
+    }
+
+    @Override
+    public boolean objectExists(String bucketName, String objectName) {
+        return delegate.objectExists(bucketName, objectName);
+    }
+
+    @Override
+    public List<String> listObjects(String bucketName, String prefix) {
+        return delegate.listObjects(bucketName, prefix);
+    }
+
+    @Override
+    public void walkObjects(String bucketName, String prefix, Consumer<StorageObjectDTO> visitor) {
+        delegate.walkObjects(bucketName, prefix, visitor);
+    }
+
+    @Override
+    public String initMultipartUpload(String bucketName, String objectName, String contentType) {
+        return delegate.initMultipartUpload(bucketName, objectName, contentType);
+    }
+
+    @Override
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber, InputStream inputStream, long size) {
+        return delegate.uploadPart(bucketName, objectName, uploadId, partNumber, inputStream, size);
+    }
+
+    @Override
+    public List<Integer> listUploadedParts(String bucketName, String objectName, String uploadId) {
+        return delegate.listUploadedParts(bucketName, objectName, uploadId);
+    }
+
+    @Override
+    public boolean completeMultipartUpload(String bucketName, String objectName, String uploadId) {
+        return delegate.completeMultipartUpload(bucketName, objectName, uploadId);
+    }
+
+    @Override
+    public boolean abortMultipartUpload(String bucketName, String objectName, String uploadId) {
+        return delegate.abortMultipartUpload(bucketName, objectName, uploadId);
+    }
+
+    @Override
+    public void walkMultipartUploads(String bucketName, String prefix, Consumer<MultipartUploadDTO> visitor) {
+        delegate.walkMultipartUploads(bucketName, prefix, visitor);
+    }
+
+    /**
+     * 从缓存读取对象
+     * @return 缓存文件的输入流，未命中时返回null并在需要时安排后台填充
+     */
+    private InputStream openCached(String bucketName, String objectName, String contentMd5, long offset, long length) {
+        if (isExcluded(objectName)) {
+            return null;
+        }
+
+        String key = cacheKey(bucketName, contentMd5);
+        sketch.increment(key);
+        CacheEntry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            try {
+                InputStream inputStream = new FileRegionInputStream(entry.path, offset, length);
+                hits.increment();
+                return inputStream;
+            } catch (IOException e) {
+                // 缓存文件被外部删除
+                log.warn("读取缓存文件失败，已移除: {}, {}", entry.path, e.getMessage());
+                remove(key);
+            }
+        }
+
+        misses.increment();
+        if (sketch.frequency(key) >= admitFrequency) {
+            scheduleFill(bucketName, objectName, contentMd5, key);
+        }
+        return null;
+    }
+
+    private void scheduleFill(String bucketName, String objectName, String contentMd5, String key) {
+        long token = fillTokens.incrementAndGet();
+        if (filling.putIfAbsent(key, token) != null) {
+            return;
+        }
+        try {
+            fillExecutor.execute(() -> fill(bucketName, objectName, contentMd5, key, token));
+        } catch (TaskRejectedException e) {
+            // 填充队列已满，之后的访问会再次尝试
+            filling.remove(key, token);
+        }
+    }
+
+    /**
+     * 将对象下载到临时文件，校验内容MD5后原子地移动到缓存目录
+     */
+    private void fill(String bucketName, String objectName, String contentMd5, String key, long token) {
+        Path tmp = root.resolve(TMP_DIR).resolve(key + "." + token);
+        try {
+            long size = delegate.getObjectSize(bucketName, objectName);
+            if (size > maxObjectSize || !admit(key, size)) {
+                return;
+            }
+
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            try (InputStream inputStream = new DigestInputStream(delegate.downloadFile(bucketName, objectName), md5)) {
+                Files.copy(inputStream, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // 对象在文件记录之后被覆盖（按路径命名时名称被重新使用）时内容与MD5不符
+            if (Files.size(tmp) != size || !HexFormat.of().formatHex(md5.digest()).equalsIgnoreCase(contentMd5)) {
+                log.warn("缓存填充的内容与文件MD5不一致，已放弃: {}/{}", bucketName, objectName);
+                return;
+            }
+
+            Path target = entryPath(key);
+            Files.createDirectories(target.getParent());
+            synchronized (this) {
+                if (!filling.remove(key, token)) {
+                    return;
+                }
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                CacheEntry previous = entries.put(key, new CacheEntry(target, size));
+                if (previous != null) {
+                    cachedBytes -= previous.size;
+                }
+                cachedBytes += size;
+                evict();
+            }
+            fills.increment();
+        } catch (Exception e) {
+            log.warn("缓存填充失败: {}/{}, {}", bucketName, objectName, e.getMessage());
+        } finally {
+            filling.remove(key, token);
+            deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * TinyLFU准入：缓存空间不足时，新对象的访问频率必须高于所有将被淘汰的对象
+     */
+    private synchronized boolean admit(String key, long size) {
+        if (size > maxBytes) {
+            return false;
+        }
+        long needed = cachedBytes + size - maxBytes;
+        if (needed <= 0) {
+            return true;
+        }
+
+        int candidateFrequency = sketch.frequency(key);
+        long freed = 0;
+        for (Map.Entry<String, CacheEntry> victim : entries.entrySet()) {
+            if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                return false;
+            }
+            freed += victim.getValue().size;
+            if (freed >= needed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按LRU顺序淘汰，直到占用不超过容量
+     */
+    private synchronized void evict() {
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            CacheEntry entry = iterator.next();
+            iterator.remove();
+            cachedBytes -= entry.size;
+            deleteQuietly(entry.path);
+        }
+    }
+
+    private synchronized void remove(String key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null) {
+            cachedBytes -= entry.size;
+            deleteQuietly(entry.path);
+        }
+    }
+
+    /**
+     * 启动时加载已有的缓存文件，最近修改的排在最后
+     */
+    private synchronized void loadEntries() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root, 2)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getParent().getFileName().toString().equals(TMP_DIR))
+                    .forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(path -> path.toFile().lastModified()));
+        for (Path path : files) {
+            long size = path.toFile().length();
+            entries.put(path.getFileName().toString(), new CacheEntry(path, size));
+            cachedBytes += size;
+        }
+        evict();
+    }
+
+    private synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    private synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * 缓存文件按键的前两位分目录存放
+     */
+    private Path entryPath(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private String cacheKey(String bucketName, String contentMd5) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((bucketName + "/" + contentMd5.toLowerCase()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean isExcluded(String objectName) {
+        for (String prefix : excludePrefixes) {
+            if (!prefix.isEmpty() && objectName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除缓存文件失败: {}, {}", path, e.getMessage());
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final Path path;
+
+        private final long size;
+
+        CacheEntry(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
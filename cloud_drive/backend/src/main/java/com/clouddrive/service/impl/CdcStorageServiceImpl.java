@@ -0,0 +1,529 @@
+package com.clouddrive.service.impl;
+
+import com.clouddrive.exception.BusinessException;
+import com.clouddrive.mapper.StorageBlockMapper;
+import com.clouddrive.mapper.StorageManifestMapper;
+import com.clouddrive.model.dto.MultipartUploadDTO;
+import com.clouddrive.model.dto.StorageObjectDTO;
+import com.clouddrive.model.entity.StorageBlock;
+import com.clouddrive.model.entity.StorageManifest;
+import com.clouddrive.service.DeletionQueueService;
+import com.clouddrive.service.StorageService;
+import com.clouddrive.util.FastCdcChunker;
+import jakarta.annotation.Priority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 分块去重存储服务实现类
+ * 对象按内容定义分块（FastCDC）切分，每个唯一块以 blocks/ab/cd/<sha256> 保存一次，对象本身只是一份块清单。
+ * 编辑过的文档、重新导出的视频、追加写的日志等相似文件之间可以共享大部分块。
+ * 不在清单表中的对象（启用前已存在的对象、原生分片上传的对象、排除前缀下的对象）直接交给底层对象存储（MinIO或本地文件系统）处理。
+ * 块的引用次数在调用方事务中增减，增减时持有块记录的行锁；不再被引用的块登记到删除队列，事务提交后才由后台删除。
+ * 通过 storage.engine=cdc 启用。
+ * 存储服务按@Priority选择注入的实现，值越小越优先：读缓存（启用时）→ 分块去重 → 底层对象存储。
+ */
+@Service
+@Priority(20)
+@ConditionalOnProperty(name = "storage.engine", havingValue = "cdc")
+public class CdcStorageServiceImpl implements StorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(CdcStorageServiceImpl.class);
+
+    private static final String BLOCK_PREFIX = "blocks/";
+
+    /**
+     * 单次批量插入的清单条数
+     */
+    private static final int MANIFEST_BATCH_SIZE = 500;
+
+    /**
+     * 遍历对象时每批处理的对象数量
+     */
+    private static final int WALK_BATCH_SIZE = 500;
+
+    @Autowired
+    @Qualifier("objectStore")
+    private StorageService blockStore;
+
+    @Autowired
+    private StorageBlockMapper storageBlockMapper;
+
+    @Autowired
+    private StorageManifestMapper storageManifestMapper;
+
+    @Autowired
+    private DeletionQueueService deletionQueueService;
+
+    @Value("${storage.cdc.min-block-size:262144}")
+    private int minBlockSize;
+
+    @Value("${storage.cdc.avg-block-size:1048576}")
+    private int avgBlockSize;
+
+    @Value("${storage.cdc.max-block-size:4194304}")
+    private int maxBlockSize;
+
+    /**
+     * 不做分块存储的对象前缀，例如需要公开直链访问的头像
+     */
+    @Value("${storage.cdc.exclude-prefixes:avatars/}")
+    private String[] excludePrefixes;
+
+    @Override
+    public boolean createBucket(String bucketName) {
+        return blockStore.createBucket(bucketName);
+    }
+
+    @Override
+    public boolean bucketExists(String bucketName) {
+        return blockStore.bucketExists(bucketName);
+    }
+
+    @Override
+    public String uploadFile(String bucketName, String objectName, MultipartFile file, String contentType) {
+        try {
+            return uploadFile(bucketName, objectName, file.getInputStream(), file.getSize(), contentType);
+        } catch (IOException e) {
+            throw new BusinessException("上传文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    @Transactional
+    public String uploadFile(String bucketName, String objectName, InputStream inputStream, long size, String contentType) {
+        if (isExcluded(objectName)) {
+            return blockStore.uploadFile(bucketName, objectName, inputStream, size, contentType);
+        }
+
+        try {
+            // 覆盖已存在的对象
+            releaseObject(bucketName, objectName);
+
+            FastCdcChunker chunker = new FastCdcChunker(inputStream, minBlockSize, avgBlockSize, maxBlockSize);
+            List<StorageManifest> manifests = new ArrayList<>();
+            int blockIndex = 0;
+            int newBlocks = 0;
+            byte[] block;
+            while ((block = chunker.nextChunk()) != null) {
+                String blockHash = sha256(block);
+                if (storeBlock(bucketName, blockHash, block)) {
+                    newBlocks++;
+                }
+                manifests.add(createManifest(bucketName, objectName, blockIndex++, blockHash, block.length));
+                if (manifests.size() >= MANIFEST_BATCH_SIZE) {
+                    storageManifestMapper.insertBatch(manifests);
+                    manifests.clear();
+                }
+            }
+            if (!manifests.isEmpty()) {
+                storageManifestMapper.insertBatch(manifests);
+            }
+            if (blockIndex == 0) {
+                // 空对象没有任何块，作为普通对象保存
+                return blockStore.uploadFile(bucketName, objectName, new ByteArrayInputStream(new byte[0]), 0, contentType);
+            }
+
+            log.info("分块存储对象: {}, 块数: {}, 新增块数: {}", objectName, blockIndex, newBlocks);
+            return objectName;
+        } catch (IOException e) {
+            throw new BusinessException("上传文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName) {
+        List<StorageManifest> manifests = storageManifestMapper.selectByObject(bucketName, objectName);
+        if (manifests.isEmpty()) {
+            return blockStore.downloadFile(bucketName, objectName);
+        }
+
+        // 按顺序拼接各块，读到某块时才打开该块的数据流
+        Iterator<StorageManifest> iterator = manifests.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return blockStore.downloadFile(bucketName, getBlockObjectName(iterator.next().getBlockHash()));
+            }
+        });
+    }
+
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName, String contentMd5, long offset, long length) {
+        return length < 0 ? downloadFile(bucketName, objectName) : downloadFile(bucketName, objectName, offset, length);
+    }
+
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName, long offset, long length) {
+        List<StorageManifest> manifests = storageManifestMapper.selectByObject(bucketName, objectName);
+        if (manifests.isEmpty()) {
+            return blockStore.downloadFile(bucketName, objectName, offset, length);
+        }
+
+        // 只读取与请求范围重叠的块，首尾两块按块内偏移读取
+        List<long[]> segments = new ArrayList<>();
+        List<String> segmentHashes = new ArrayList<>();
+        long blockStart = 0;
+        long end = offset + length;
+        for (StorageManifest manifest : manifests) {
+            long blockEnd = blockStart + manifest.getBlockSize();
+            if (blockEnd > offset && blockStart < end) {
+                long from = Math.max(offset, blockStart) - blockStart;
+                long to = Math.min(end, blockEnd) - blockStart;
+                segments.add(new long[]{from, to - from});
+                segmentHashes.add(manifest.getBlockHash());
+            }
+            if (blockEnd >= end) {
+                break;
+            }
+            blockStart = blockEnd;
+        }
+
+        Iterator<long[]> segmentIterator = segments.iterator();
+        Iterator<String> hashIterator = segmentHashes.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return segmentIterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                long[] segment = segmentIterator.next();
+                return blockStore.downloadFile(bucketName, getBlockObjectName(hashIterator.next()), segment[0], segment[1]);
+            }
+        });
+    }
+
+    @Override
+    public String getPresignedObjectUrl(String bucketName, String objectName, int expires) {
+        checkNotChunked(bucketName, objectName);
+        return blockStore.getPresignedObjectUrl(bucketName, objectName, expires);
+    }
+
+    @Override
+    public String getPresignedObjectUrl(String bucketName, String objectName, int expires, String method, Map<String, String> queryParams) {
+        if ("GET".equalsIgnoreCase(method)) {
+            checkNotChunked(bucketName, objectName);
+        }
+        return blockStore.getPresignedObjectUrl(bucketName, objectName, expires, method, queryParams);
+    }
+
+    @Override
+    @Transactional
+    public boolean removeFile(String bucketName, String objectName) {
+        if (releaseObject(bucketName, objectName)) {
+            return true;
+        }
+        return blockStore.removeFile(bucketName, objectName);
+    }
+
+    @Override
+    @Transactional
+    public Map<String, String> removeFiles(String bucketName, List<String> objectNames) {
+        List<String> plainObjects = new ArrayList<>();
+        for (String objectName : objectNames) {
+            if (!releaseObject(bucketName, objectName)) {
+                plainObjects.add(objectName);
+            }
+        }
+        if (plainObjects.isEmpty()) {
+            return new HashMap<>();
+        }
+        return blockStore.removeFiles(bucketName, plainObjects);
+    }
+
+    @Override
+    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType) {
+        return composeObject(bucketName, sourceObjectNames, targetObjectName, contentType, null);
+    }
+
+    @Override
+    @Transactional
+    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType, Map<String, String> userMetadata) {
+        if (isExcluded(targetObjectName)) {
+            return blockStore.composeObject(bucketName, sourceObjectNames, targetObjectName, contentType, userMetadata);
+        }
+
+        List<List<StorageManifest>> sourceManifests = new ArrayList<>();
+        for (String sourceObjectName : sourceObjectNames) {
+            List<StorageManifest> manifests = storageManifestMapper.selectByObject(bucketName, sourceObjectName);
+            if (manifests.isEmpty()) {
+                // 存在未分块的源对象（例如通过预签名URL直接上传的分片），读取全部源对象重新分块
+                return recompose(bucketName, sourceObjectNames, targetObjectName, contentType);
+            }
+            sourceManifests.add(manifests);
+        }
+
+        // 所有源对象都已分块存储时只需拼接清单，不读写任何数据
+        releaseObject(bucketName, targetObjectName);
+        List<StorageManifest> targetManifests = new ArrayList<>();
+        int blockIndex = 0;
+        for (List<StorageManifest> manifests : sourceManifests) {
+            for (StorageManifest manifest : manifests) {
+                storageBlockMapper.increaseRefCount(bucketName, manifest.getBlockHash(), manifest.getBlockSize());
+                targetManifests.add(createManifest(bucketName, targetObjectName, blockIndex++, manifest.getBlockHash(), manifest.getBlockSize()));
+                if (targetManifests.size() >= MANIFEST_BATCH_SIZE) {
+                    storageManifestMapper.insertBatch(targetManifests);
+                    targetManifests.clear();
+                }
+            }
+        }
+        if (!targetManifests.isEmpty()) {
+            storageManifestMapper.insertBatch(targetManifests);
+        }
+        return true;
+    }
+
+    @Override
+    public long getObjectSize(String bucketName, String objectName) {
+        Long size = storageManifestMapper.sumObjectSize(bucketName, objectName);
+        if (size != null) {
+            return size;
+        }
+        return blockStore.getObjectSize(bucketName, objectName);
+    }
+
+    @Override
+    public boolean objectExists(String bucketName, String objectName) {
+        if (storageManifestMapper.sumObjectSize(bucketName, objectName) != null) {
+            return true;
+        }
+        return blockStore.objectExists(bucketName, objectName);
+    }
+
+    @Override
+    public List<String> listObjects(String bucketName, String prefix) {
+        Set<String> objectNames = new LinkedHashSet<>(storageManifestMapper.selectObjectNamesByPrefix(bucketName, prefix));
+        objectNames.addAll(blockStore.listObjects(bucketName, prefix));
+        return new ArrayList<>(objectNames);
+    }
+
+    /**
+     * 分块对象按对象名称分页读取清单；未分块对象边遍历边按批查询清单去重，
+     * 内存中最多保存一批对象
+     */
+    @Override
+    public void walkObjects(String bucketName, String prefix, Consumer<StorageObjectDTO> visitor) {
+        String afterObjectName = null;
+        List<StorageObjectDTO> page;
+        do {
+            page = storageManifestMapper.selectObjectsPage(bucketName, prefix, afterObjectName, WALK_BATCH_SIZE);
+            page.forEach(visitor);
+            if (!page.isEmpty()) {
+                afterObjectName = page.get(page.size() - 1).getObjectName();
+            }
+        } while (page.size() == WALK_BATCH_SIZE);
+
+        List<StorageObjectDTO> batch = new ArrayList<>();
+        blockStore.walkObjects(bucketName, prefix, object -> {
+            batch.add(object);
+            if (batch.size() >= WALK_BATCH_SIZE) {
+                visitUnchunked(bucketName, batch, visitor);
+                batch.clear();
+            }
+        });
+        visitUnchunked(bucketName, batch, visitor);
+    }
+
+    /**
+     * 跳过已有对象清单的对象（块存储中可能残留同名的未分块对象）
+     */
+    private void visitUnchunked(String bucketName, List<StorageObjectDTO> batch, Consumer<StorageObjectDTO> visitor) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> objectNames = new ArrayList<>(batch.size());
+        for (StorageObjectDTO object : batch) {
+            objectNames.add(object.getObjectName());
+        }
+        Set<String> chunkedObjects = new HashSet<>(storageManifestMapper.selectExistingObjectNames(bucketName, objectNames));
+        for (StorageObjectDTO object : batch) {
+            if (!chunkedObjects.contains(object.getObjectName())) {
+                visitor.accept(object);
+            }
+        }
+    }
+
+    /**
+     * 原生分片上传由对象存储服务端拼接，生成的是普通对象，读取时走未分块对象的处理逻辑
+     */
+    @Override
+    public String initMultipartUpload(String bucketName, String objectName, String contentType) {
+        return blockStore.initMultipartUpload(bucketName, objectName, contentType);
+    }
+
+    @Override
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber, InputStream inputStream, long size) {
+        return blockStore.uploadPart(bucketName, objectName, uploadId, partNumber, inputStream, size);
+    }
+
+    @Override
+    public List<Integer> listUploadedParts(String bucketName, String objectName, String uploadId) {
+        return blockStore.listUploadedParts(bucketName, objectName, uploadId);
+    }
+
+    @Override
+    public boolean completeMultipartUpload(String bucketName, String objectName, String uploadId) {
+        return blockStore.completeMultipartUpload(bucketName, objectName, uploadId);
+    }
+
+    @Override
+    public boolean abortMultipartUpload(String bucketName, String objectName, String uploadId) {
+        return blockStore.abortMultipartUpload(bucketName, objectName, uploadId);
+    }
+
+    @Override
+    public void walkMultipartUploads(String bucketName, String prefix, Consumer<MultipartUploadDTO> visitor) {
+        blockStore.walkMultipartUploads(bucketName, prefix, visitor);
+    }
+
+    /**
+     * 保存块，块已存在时只增加引用次数。
+     * 先插入或增加引用次数，持有块记录的行锁后再写入数据：同一块的释放要等待当前事务结束，
+     * 当前事务也会等待正在释放该块的事务结束，不会出现引用次数已增加而块被删除的情况
+     * @return 是否新写入了块数据
+     */
+    private boolean storeBlock(String bucketName, String blockHash, byte[] block) {
+        // 插入新记录时影响行数为1，已存在的记录增加引用次数时为2
+        if (storageBlockMapper.increaseRefCount(bucketName, blockHash, block.length) != 1) {
+            return false;
+        }
+
+        // 新记录对应的块可能刚被释放、仍在删除队列中，撤销登记后对象要么仍然存在，要么已被删除需要重新写入
+        String blockObjectName = getBlockObjectName(blockHash);
+        deletionQueueService.cancel(bucketName, blockObjectName);
+        if (blockStore.objectExists(bucketName, blockObjectName)) {
+            return false;
+        }
+        // 相同内容写入同一对象名称，并发写入同一块也不会产生不一致
+        blockStore.uploadFile(bucketName, blockObjectName,
+                new ByteArrayInputStream(block), block.length, "application/octet-stream");
+        return true;
+    }
+
+    /**
+     * 释放对象的块引用，不再被引用的块登记到删除队列，在调用方事务提交后删除
+     * @return 对象是否为分块存储的对象
+     */
+    private boolean releaseObject(String bucketName, String objectName) {
+        List<StorageManifest> manifests = storageManifestMapper.selectByObject(bucketName, objectName);
+        if (manifests.isEmpty()) {
+            return false;
+        }
+
+        // 按块哈希顺序减少引用次数并持有行锁直到事务结束，多个事务同时释放相同的块时按相同顺序加锁
+        Map<String, Integer> releases = new TreeMap<>();
+        for (StorageManifest manifest : manifests) {
+            releases.merge(manifest.getBlockHash(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : releases.entrySet()) {
+            storageBlockMapper.decreaseRefCount(bucketName, entry.getKey(), entry.getValue());
+        }
+        storageManifestMapper.deleteByObject(bucketName, objectName);
+
+        List<String> blockObjectNames = new ArrayList<>();
+        for (StorageBlock block : storageBlockMapper.selectUnreferenced(bucketName, releases.keySet())) {
+            if (storageBlockMapper.deleteUnreferenced(block.getId()) > 0) {
+                blockObjectNames.add(getBlockObjectName(block.getBlockHash()));
+            }
+        }
+        deletionQueueService.enqueue(bucketName, blockObjectNames);
+        return true;
+    }
+
+    /**
+     * 读取全部源对象并重新分块保存为目标对象
+     */
+    private boolean recompose(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType) {
+        Iterator<String> iterator = Arrays.asList(sourceObjectNames).iterator();
+        try (InputStream inputStream = new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return downloadFile(bucketName, iterator.next());
+            }
+        })) {
+            uploadFile(bucketName, targetObjectName, inputStream, -1, contentType);
+            return true;
+        } catch (IOException e) {
+            throw new BusinessException("合并文件失败: " + e.getMessage());
+        }
+    }
+
+    private void checkNotChunked(String bucketName, String objectName) {
+        if (storageManifestMapper.sumObjectSize(bucketName, objectName) != null) {
+            throw new BusinessException("分块存储的对象不支持预签名访问，请通过服务端下载");
+        }
+    }
+
+    private boolean isExcluded(String objectName) {
+        if (objectName.startsWith(BLOCK_PREFIX)) {
+            return true;
+        }
+        for (String prefix : excludePrefixes) {
+            if (!prefix.isEmpty() && objectName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getBlockObjectName(String blockHash) {
+        return BLOCK_PREFIX + blockHash.substring(0, 2) + "/" + blockHash.substring(2, 4) + "/" + blockHash;
+    }
+
+    private StorageManifest createManifest(String bucketName, String objectName, int blockIndex, String blockHash, int blockSize) {
+        StorageManifest manifest = new StorageManifest();
+        manifest.setBucketName(bucketName);
+        manifest.setObjectName(objectName);
+        manifest.setBlockIndex(blockIndex);
+        manifest.setBlockHash(blockHash);
+        manifest.setBlockSize(blockSize);
+        return manifest;
+    }
+
+    private String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("不支持的摘要算法", e);
+        }
+    }
+}
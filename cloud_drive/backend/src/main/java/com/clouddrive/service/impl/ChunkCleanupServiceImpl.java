@@ -0,0 +1,358 @@
+package com.clouddrive.service.impl;
+
+import com.clouddrive.mapper.FileMapper;
+import com.clouddrive.model.dto.StorageObjectDTO;
+import com.clouddrive.model.dto.UploadSessionDTO;
+import com.clouddrive.service.ChunkCleanupService;
+import com.clouddrive.service.StorageService;
+import com.clouddrive.service.UploadSessionService;
+import com.clouddrive.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分片清理服务实现类
+ * 只遍历上传专用的 chunks/、staging/ 前缀和未完成的原生分片上传，超过保留时间且对应的上传会话已不存在时批量删除。
+ * 通过Redis锁选出一个节点执行，遍历和删除都按配置的速率限速，避免清理占满对象存储的请求配额
+ */
+@Service
+public class ChunkCleanupServiceImpl implements ChunkCleanupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkCleanupServiceImpl.class);
+
+    private static final String LOCK_KEY = "upload:chunk-cleanup:lock";
+
+    private static final String CHUNK_PREFIX = "chunks/";
+
+    private static final String STAGING_PREFIX = "staging/";
+
+    /**
+     * 分片对象名称：chunks/userId/md5/N.chunk
+     */
+    private static final Pattern CHUNK_PATTERN = Pattern.compile("^chunks/(\\d+)/([^/]+)/\\d+\\.chunk$");
+
+    /**
+     * 原生分片上传的最终对象名称：userId/md5/md5
+     */
+    private static final Pattern MULTIPART_PATTERN = Pattern.compile("^(\\d+)/([^/]+)/\\2$");
+
+    /**
+     * 每遍历该数量的对象检查一次执行锁
+     */
+    private static final int RENEW_INTERVAL_OBJECTS = 10000;
+
+    /**
+     * 仍持有锁时延长过期时间
+     */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    /**
+     * 仍持有锁时释放
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private FileMapper fileMapper;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${minio.bucketName}")
+    private String bucketName;
+
+    @Value("${upload.chunk.cleanup.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 分片保留时间（小时），应大于上传会话保留时间
+     */
+    @Value("${upload.chunk.cleanup.ttl-hours:48}")
+    private long ttlHours;
+
+    /**
+     * 每秒最多遍历的对象数
+     */
+    @Value("${upload.chunk.cleanup.scan-rate:5000}")
+    private long scanRate;
+
+    /**
+     * 每秒最多删除的对象数
+     */
+    @Value("${upload.chunk.cleanup.delete-rate:1000}")
+    private long deleteRate;
+
+    /**
+     * 每次批量删除的最大对象数量
+     */
+    @Value("${upload.chunk.cleanup.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 执行锁的有效期（秒），执行期间定期延长，节点异常退出后锁在该时间后失效
+     */
+    @Value("${upload.chunk.cleanup.lock-seconds:300}")
+    private long lockSeconds;
+
+    /**
+     * 当前节点的锁标识
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private Counter reclaimedBytes;
+
+    private Counter reclaimedObjects;
+
+    private Counter abortedUploads;
+
+    @PostConstruct
+    public void init() {
+        reclaimedBytes = Counter.builder("clouddrive.upload.chunks.reclaimed.bytes")
+                .description("清理未合并分片释放的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        reclaimedObjects = Counter.builder("clouddrive.upload.chunks.reclaimed")
+                .description("清理的未合并分片对象数")
+                .register(meterRegistry);
+        abortedUploads = Counter.builder("clouddrive.upload.multipart.aborted")
+                .description("取消的未完成原生分片上传数")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${upload.chunk.cleanup.interval-ms:3600000}",
+            fixedDelayString = "${upload.chunk.cleanup.interval-ms:3600000}")
+    public void scheduledCleanup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            cleanup();
+        } catch (Exception e) {
+            log.error("清理未合并分片失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public long cleanup() {
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId, Duration.ofSeconds(lockSeconds));
+        if (!Boolean.TRUE.equals(acquired)) {
+            return -1;
+        }
+
+        Sweep sweep = new Sweep(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(ttlHours));
+        try {
+            sweepChunks(sweep);
+            sweepStaging(sweep);
+            sweepMultipartUploads(sweep);
+
+            log.info("分片清理完成: 遍历 {} 个对象, 删除 {} 个对象, 释放 {} bytes, 取消 {} 个分片上传",
+                    sweep.scanned, sweep.reclaimedObjects, sweep.reclaimedBytes, sweep.abortedUploads);
+            return sweep.reclaimedBytes;
+        } catch (IllegalStateException e) {
+            log.warn("{}，停止本次清理", e.getMessage());
+            return sweep.reclaimedBytes;
+        } finally {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LOCK_KEY), nodeId);
+        }
+    }
+
+    /**
+     * 遍历 chunks/ 前缀，分片超过保留时间且对应的上传会话已不存在时删除。
+     * 对象按名称顺序遍历，同一文件的分片相邻，只需记住上一个文件的会话状态
+     */
+    private void sweepChunks(Sweep sweep) {
+        String[] lastKey = {null};
+        boolean[] lastActive = {false};
+        storageService.walkObjects(bucketName, CHUNK_PREFIX, object -> {
+            scanned(sweep);
+
+            Matcher matcher = CHUNK_PATTERN.matcher(object.getObjectName());
+            if (!matcher.matches() || !expired(sweep, object.getLastModified())) {
+                return;
+            }
+            String key = matcher.group(1) + "/" + matcher.group(2);
+            if (!key.equals(lastKey[0])) {
+                lastKey[0] = key;
+                lastActive[0] = uploadSessionService.getSession(matcher.group(2), Long.valueOf(matcher.group(1))) != null;
+            }
+            if (!lastActive[0]) {
+                enqueue(sweep, object);
+            }
+        });
+        flush(sweep);
+    }
+
+    /**
+     * 遍历 staging/ 前缀，上传中断后未转为正式对象的临时对象超过保留时间时删除
+     */
+    private void sweepStaging(Sweep sweep) {
+        storageService.walkObjects(bucketName, STAGING_PREFIX, object -> {
+            scanned(sweep);
+            if (expired(sweep, object.getLastModified())) {
+                enqueue(sweep, object);
+            }
+        });
+        flush(sweep);
+    }
+
+    /**
+     * 取消超过保留时间且不属于当前上传会话的原生分片上传，释放已上传的分片
+     */
+    private void sweepMultipartUploads(Sweep sweep) {
+        storageService.walkMultipartUploads(bucketName, "", upload -> {
+            scanned(sweep);
+
+            Matcher matcher = MULTIPART_PATTERN.matcher(upload.getObjectName());
+            if (!matcher.matches() || !expired(sweep, upload.getInitiated())) {
+                return;
+            }
+            UploadSessionDTO session = uploadSessionService.getSession(matcher.group(2), Long.valueOf(matcher.group(1)));
+            if (session != null && upload.getUploadId().equals(session.getUploadId())) {
+                return;
+            }
+
+            pace(sweep.deleteBucket, 1);
+            if (storageService.abortMultipartUpload(bucketName, upload.getObjectName(), upload.getUploadId())) {
+                sweep.abortedUploads++;
+                abortedUploads.increment();
+            } else {
+                log.warn("取消分片上传失败: {}, {}", upload.getObjectName(), upload.getUploadId());
+            }
+        });
+    }
+
+    private void scanned(Sweep sweep) {
+        if (++sweep.scanned % RENEW_INTERVAL_OBJECTS == 0 && !renewLock()) {
+            throw new IllegalStateException("分片清理执行锁已失效");
+        }
+        pace(sweep.scanBucket, 1);
+    }
+
+    private boolean expired(Sweep sweep, Date time) {
+        return time != null && time.getTime() <= sweep.cutoff;
+    }
+
+    private void enqueue(Sweep sweep, StorageObjectDTO object) {
+        sweep.pending.add(object);
+        if (sweep.pending.size() >= batchSize) {
+            flush(sweep);
+        }
+    }
+
+    private void flush(Sweep sweep) {
+        if (sweep.pending.isEmpty()) {
+            return;
+        }
+        List<String> candidates = new ArrayList<>(sweep.pending.size());
+        for (StorageObjectDTO object : sweep.pending) {
+            candidates.add(object.getObjectName());
+        }
+        // 被文件记录引用的对象不删除（合并或转存后尚未清理的记录、路径命名时恰好同名的普通文件）
+        Set<String> referenced = new HashSet<>(fileMapper.selectReferencedObjectNames(candidates));
+        List<StorageObjectDTO> batch = new ArrayList<>();
+        List<String> objectNames = new ArrayList<>();
+        for (StorageObjectDTO object : sweep.pending) {
+            if (!referenced.contains(object.getObjectName())) {
+                batch.add(object);
+                objectNames.add(object.getObjectName());
+            }
+        }
+        sweep.pending.clear();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        pace(sweep.deleteBucket, batch.size());
+        Map<String, String> failures = storageService.removeFiles(bucketName, objectNames);
+        for (StorageObjectDTO object : batch) {
+            String error = failures.get(object.getObjectName());
+            if (error != null) {
+                log.warn("删除过期对象失败: {}, {}", object.getObjectName(), error);
+                continue;
+            }
+            long size = object.getSize() != null ? object.getSize() : 0;
+            sweep.reclaimedBytes += size;
+            sweep.reclaimedObjects++;
+            reclaimedBytes.increment(size);
+            reclaimedObjects.increment();
+        }
+    }
+
+    private boolean renewLock() {
+        Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(LOCK_KEY),
+                nodeId, TimeUnit.SECONDS.toMillis(lockSeconds));
+        return renewed != null && renewed > 0;
+    }
+
+    private void pace(TokenBucket bucket, long permits) {
+        long waitNanos = bucket.reserve(permits);
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("分片清理被中断", e);
+            }
+        }
+    }
+
+    /**
+     * 一次清理的状态
+     */
+    private class Sweep {
+
+        private final long cutoff;
+
+        private final TokenBucket scanBucket = new TokenBucket(scanRate, 1);
+
+        private final TokenBucket deleteBucket = new TokenBucket(deleteRate, 1);
+
+        private final List<StorageObjectDTO> pending = new ArrayList<>();
+
+        private long scanned;
+
+        private long reclaimedObjects;
+
+        private long reclaimedBytes;
+
+        private long abortedUploads;
+
+        private Sweep(long cutoff) {
+            this.cutoff = cutoff;
+        }
+    }
+}
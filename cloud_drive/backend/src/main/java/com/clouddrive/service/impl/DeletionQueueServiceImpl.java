@@ -0,0 +1,328 @@
+package com.clouddrive.service.impl;
+
+import com.clouddrive.mapper.FileMapper;
+import com.clouddrive.mapper.StorageTombstoneMapper;
+import com.clouddrive.model.entity.StorageTombstone;
+import com.clouddrive.service.DeletionQueueService;
+import com.clouddrive.service.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对象删除队列服务实现类
+ * 登记记录与文件元数据在同一事务中写入，事务提交后才发送消息，消费者不会删除回滚事务中的对象；
+ * 消息丢失或删除失败的记录由定时任务按退避时间重新处理。
+ * 消息消费者和定时任务都先以一条UPDATE认领记录，只处理自己认领到的记录，同一记录不会被多个节点同时删除；
+ * 删除对象期间持有记录的行锁，重新引用对象的上传通过 cancel 等待删除结束，不会引用到正在删除的对象
+ */
+@Service
+public class DeletionQueueServiceImpl implements DeletionQueueService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeletionQueueServiceImpl.class);
+
+    /**
+     * 错误信息最大保存长度
+     */
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final String LOCK_KEY = "storage:deletion:sweep:lock";
+
+    /**
+     * 仍持有锁时延长过期时间
+     */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    /**
+     * 仍持有锁时释放
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private StorageTombstoneMapper storageTombstoneMapper;
+
+    @Autowired
+    private FileMapper fileMapper;
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${storage.deletion.queue:storage.deletion}")
+    private String queueName;
+
+    /**
+     * 每条消息和每次批量删除的最大对象数量
+     */
+    @Value("${storage.deletion.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 登记后经过该时间仍未处理的记录由定时任务处理（毫秒），正常情况下消息消费者会先处理
+     */
+    @Value("${storage.deletion.sweep-delay-ms:300000}")
+    private long sweepDelay;
+
+    /**
+     * 删除失败后的首次重试间隔（毫秒），之后每次翻倍
+     */
+    @Value("${storage.deletion.retry-base-delay-ms:60000}")
+    private long retryBaseDelay;
+
+    /**
+     * 重试间隔上限（毫秒）
+     */
+    @Value("${storage.deletion.retry-max-delay-ms:3600000}")
+    private long retryMaxDelay;
+
+    /**
+     * 认领有效期（毫秒），节点在处理中途退出时，记录在该时间后可被定时任务重新认领
+     */
+    @Value("${storage.deletion.lease-ms:600000}")
+    private long leaseTime;
+
+    /**
+     * 定时任务执行锁的有效期（秒），每处理一批延长一次
+     */
+    @Value("${storage.deletion.lock-seconds:300}")
+    private long lockSeconds;
+
+    /**
+     * 当前节点的锁标识
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Override
+    public void enqueue(String bucketName, Collection<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return;
+        }
+
+        Date now = new Date();
+        Date nextAttemptTime = new Date(now.getTime() + sweepDelay);
+        List<Long> tombstoneIds = new ArrayList<>(objectNames.size());
+        for (String objectName : objectNames) {
+            StorageTombstone tombstone = new StorageTombstone();
+            tombstone.setBucketName(bucketName);
+            tombstone.setObjectName(objectName);
+            tombstone.setRetryCount(0);
+            tombstone.setNextAttemptTime(nextAttemptTime);
+            tombstone.setCreateTime(now);
+            storageTombstoneMapper.insert(tombstone);
+            tombstoneIds.add(tombstone.getId());
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(tombstoneIds);
+                }
+            });
+        } else {
+            publish(tombstoneIds);
+        }
+    }
+
+    /**
+     * 消费删除消息，处理失败时不重新入队，由定时任务按记录重试
+     */
+    @RabbitListener(queues = "${storage.deletion.queue:storage.deletion}")
+    public void onMessage(List<Long> tombstoneIds) {
+        try {
+            purge(tombstoneIds);
+        } catch (Exception e) {
+            log.error("处理对象删除消息失败: {} 条记录, {}", tombstoneIds.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 定时处理消息丢失或删除失败、已到重试时间的记录，通过Redis锁选出一个节点执行
+     */
+    @Scheduled(initialDelayString = "${storage.deletion.sweep-interval-ms:60000}",
+            fixedDelayString = "${storage.deletion.sweep-interval-ms:60000}")
+    public void sweep() {
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId, Duration.ofSeconds(lockSeconds));
+        if (!Boolean.TRUE.equals(acquired)) {
+            return;
+        }
+        try {
+            int claimed;
+            do {
+                // 认领的记录有效期在当前时间之后，循环不会重复认领到同一批记录
+                String claimToken = UUID.randomUUID().toString();
+                claimed = storageTombstoneMapper.claimDue(claimToken, leaseUntil(), batchSize);
+                if (claimed > 0) {
+                    purgeClaimed(claimToken);
+                }
+            } while (claimed == batchSize && renewLock());
+        } catch (Exception e) {
+            log.error("处理待删除对象失败: {}", e.getMessage());
+        } finally {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LOCK_KEY), nodeId);
+        }
+    }
+
+    @Override
+    public int purge(List<Long> tombstoneIds) {
+        if (tombstoneIds == null || tombstoneIds.isEmpty()) {
+            return 0;
+        }
+        // 已处理或已被其他节点认领的记录认领不到，消息重复投递、与定时任务同时执行时不会重复删除
+        String claimToken = UUID.randomUUID().toString();
+        if (storageTombstoneMapper.claimByIds(tombstoneIds, claimToken, leaseUntil()) == 0) {
+            return 0;
+        }
+        return purgeClaimed(claimToken);
+    }
+
+    @Override
+    public void cancel(String bucketName, String objectName) {
+        storageTombstoneMapper.deleteByObjectName(bucketName, objectName);
+    }
+
+    /**
+     * 删除本次认领的对象，整个过程在一个事务中持有记录的行锁，删除完成后清除记录
+     */
+    private int purgeClaimed(String claimToken) {
+        Integer removed = new TransactionTemplate(transactionManager).execute(status -> {
+            // 认领后已被撤销的记录查询不到；认领过期后被重新认领的记录标识已变化，也查询不到
+            List<StorageTombstone> tombstones = storageTombstoneMapper.selectClaimedForUpdate(claimToken);
+            return tombstones.isEmpty() ? 0 : purgeTombstones(tombstones);
+        });
+        return removed == null ? 0 : removed;
+    }
+
+    private int purgeTombstones(List<StorageTombstone> tombstones) {
+        Set<String> objectNames = new HashSet<>();
+        for (StorageTombstone tombstone : tombstones) {
+            objectNames.add(tombstone.getObjectName());
+        }
+        // 按内容命名的对象在登记后可能被重新上传的相同文件引用，此时不再删除；
+        // 重新引用前上传会先撤销登记，撤销需要等待当前事务释放行锁，因此检查之后不会再出现新的引用
+        Set<String> referenced = new HashSet<>(fileMapper.selectReferencedObjectNames(objectNames));
+
+        Map<String, List<StorageTombstone>> byBucket = new LinkedHashMap<>();
+        List<Long> skippedIds = new ArrayList<>();
+        for (StorageTombstone tombstone : tombstones) {
+            if (referenced.contains(tombstone.getObjectName())) {
+                skippedIds.add(tombstone.getId());
+                continue;
+            }
+            byBucket.computeIfAbsent(tombstone.getBucketName(), k -> new ArrayList<>()).add(tombstone);
+        }
+        if (!skippedIds.isEmpty()) {
+            storageTombstoneMapper.deleteBatchIds(skippedIds);
+        }
+
+        int removed = 0;
+        for (Map.Entry<String, List<StorageTombstone>> entry : byBucket.entrySet()) {
+            List<StorageTombstone> bucketTombstones = entry.getValue();
+            for (int i = 0; i < bucketTombstones.size(); i += batchSize) {
+                removed += purgeBatch(entry.getKey(), bucketTombstones.subList(i, Math.min(i + batchSize, bucketTombstones.size())));
+            }
+        }
+        return removed;
+    }
+
+    private int purgeBatch(String bucketName, List<StorageTombstone> batch) {
+        List<String> objectNames = new ArrayList<>(batch.size());
+        for (StorageTombstone tombstone : batch) {
+            objectNames.add(tombstone.getObjectName());
+        }
+
+        Map<String, String> failures;
+        try {
+            failures = storageService.removeFiles(bucketName, objectNames);
+        } catch (Exception e) {
+            // 整批失败，全部推迟重试
+            failures = new LinkedHashMap<>();
+            for (String objectName : objectNames) {
+                failures.put(objectName, e.getMessage());
+            }
+        }
+
+        List<Long> removedIds = new ArrayList<>(batch.size());
+        for (StorageTombstone tombstone : batch) {
+            String error = failures.get(tombstone.getObjectName());
+            if (error == null) {
+                removedIds.add(tombstone.getId());
+            } else {
+                markFailed(tombstone, error);
+            }
+        }
+        if (!removedIds.isEmpty()) {
+            storageTombstoneMapper.deleteBatchIds(removedIds);
+        }
+        return removedIds.size();
+    }
+
+    private void markFailed(StorageTombstone tombstone, String error) {
+        int retryCount = tombstone.getRetryCount() == null ? 0 : tombstone.getRetryCount();
+        long delay = Math.min(retryMaxDelay, retryBaseDelay << Math.min(retryCount, 20));
+        if (error != null && error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        storageTombstoneMapper.markFailed(tombstone.getId(), error, new Date(System.currentTimeMillis() + delay));
+        log.warn("删除对象失败，第 {} 次重试将在 {} ms 后进行: {}, {}",
+                retryCount + 1, delay, tombstone.getObjectName(), error);
+    }
+
+    private Date leaseUntil() {
+        return new Date(System.currentTimeMillis() + leaseTime);
+    }
+
+    private boolean renewLock() {
+        Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(LOCK_KEY),
+                nodeId, TimeUnit.SECONDS.toMillis(lockSeconds));
+        return renewed != null && renewed > 0;
+    }
+
+    private void publish(List<Long> tombstoneIds) {
+        try {
+            for (int i = 0; i < tombstoneIds.size(); i += batchSize) {
+                rabbitTemplate.convertAndSend(queueName,
+                        new ArrayList<>(tombstoneIds.subList(i, Math.min(i + batchSize, tombstoneIds.size()))));
+            }
+        } catch (Exception e) {
+            // 消息发送失败时记录仍在表中，到期后由定时任务处理
+            log.warn("发送对象删除消息失败，将由定时任务处理: {}", e.getMessage());
+        }
+    }
+}
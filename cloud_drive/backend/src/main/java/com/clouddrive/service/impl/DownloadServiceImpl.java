@@ -0,0 +1,713 @@
+package com.clouddrive.service.impl;
+
+import com.clouddrive.exception.BusinessException;
+import com.clouddrive.model.dto.DownloadFileDTO;
+import com.clouddrive.model.dto.ZipEntryDTO;
+import com.clouddrive.service.BandwidthService;
+import com.clouddrive.service.DownloadService;
+import com.clouddrive.service.StorageService;
+import com.clouddrive.util.BufferPool;
+import com.clouddrive.util.FileRegionInputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 文件下载服务实现类
+ */
+@Service
+public class DownloadServiceImpl implements DownloadService {
+
+    private static final Logger log = LoggerFactory.getLogger(DownloadServiceImpl.class);
+
+    /**
+     * 内容已经压缩过的文件扩展名，打包时不再压缩
+     */
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "lz4",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif",
+            "mp3", "aac", "m4a", "ogg", "opus", "flac",
+            "mp4", "m4v", "mov", "mkv", "webm", "avi", "wmv", "flv",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub", "jar", "apk", "ipa", "pdf");
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private BandwidthService bandwidthService;
+
+    @Value("${minio.bucketName:cloud-drive}")
+    private String bucketName;
+
+    /**
+     * 是否将下载重定向到预签名URL
+     */
+    @Value("${download.redirect.enabled:false}")
+    private boolean redirectEnabled;
+
+    /**
+     * 重定向下载的最小文件大小（字节），更小的文件仍由应用节点转发
+     */
+    @Value("${download.redirect.threshold:10485760}")
+    private long redirectThreshold;
+
+    /**
+     * 预签名下载URL有效期（秒）
+     */
+    @Value("${download.redirect.expire-seconds:300}")
+    private int redirectExpireSeconds;
+
+    /**
+     * 转发下载使用的缓冲区大小（字节）
+     */
+    @Value("${download.relay.buffer-size:65536}")
+    private int relayBufferSize;
+
+    /**
+     * 缓冲区数量上限，同时转发的下载数超过该值时等待空闲缓冲区
+     */
+    @Value("${download.relay.max-buffers:512}")
+    private int relayMaxBuffers;
+
+    /**
+     * 等待空闲缓冲区的超时时间（毫秒）
+     */
+    @Value("${download.relay.acquire-timeout-ms:30000}")
+    private long relayAcquireTimeoutMs;
+
+    /**
+     * 打包下载时提前读取的后续文件数
+     */
+    @Value("${download.zip.prefetch-window:4}")
+    private int zipPrefetchWindow;
+
+    /**
+     * 打包下载预取线程数，所有打包下载共用
+     */
+    @Value("${download.zip.prefetch-threads:16}")
+    private int zipPrefetchThreads;
+
+    /**
+     * 预取时完整读入内存的最大文件大小（字节），更大的文件只提前建立读取连接
+     */
+    @Value("${download.zip.prefetch-max-size:1048576}")
+    private long zipPrefetchMaxSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolTaskExecutor zipPrefetchExecutor;
+
+    private BufferPool bufferPool;
+
+    /**
+     * 已从对象存储读取、尚未写给客户端的字节数
+     */
+    private final AtomicLong bytesInFlight = new AtomicLong();
+
+    /**
+     * 正在转发的下载数
+     */
+    private final AtomicInteger activeRelays = new AtomicInteger();
+
+    private Counter bytesServed;
+
+    @PostConstruct
+    public void init() {
+        bufferPool = new BufferPool(relayBufferSize, relayMaxBuffers);
+
+        Gauge.builder("clouddrive.download.bytes.in-flight", bytesInFlight, AtomicLong::get)
+                .description("已从存储读取、尚未写给客户端的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("clouddrive.download.active", activeRelays, AtomicInteger::get)
+                .description("正在转发的下载数")
+                .register(meterRegistry);
+        Gauge.builder("clouddrive.download.buffers.created", bufferPool, BufferPool::getCreated)
+                .description("已创建的转发缓冲区数")
+                .register(meterRegistry);
+        Gauge.builder("clouddrive.download.buffers.available", bufferPool, BufferPool::getAvailable)
+                .description("空闲的转发缓冲区数")
+                .register(meterRegistry);
+        bytesServed = Counter.builder("clouddrive.download.bytes")
+                .description("转发下载的总字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(zipPrefetchThreads);
+        executor.setMaxPoolSize(zipPrefetchThreads);
+        executor.setThreadNamePrefix("zip-prefetch-");
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+        zipPrefetchExecutor = executor;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        zipPrefetchExecutor.shutdown();
+    }
+
+    @Override
+    public ResponseEntity<?> download(HttpServletRequest request, DownloadFileDTO downloadFile) {
+        String fileName = normalizeFileName(downloadFile.getFileName());
+        MediaType mediaType = resolveMediaType(fileName, downloadFile.getFileType());
+        String objectName = downloadFile.getObjectName();
+        long fileSize = downloadFile.getFileSize() != null
+                ? downloadFile.getFileSize()
+                : storageService.getObjectSize(bucketName, objectName);
+        String eTag = downloadFile.getMd5() != null ? "\"" + downloadFile.getMd5() + "\"" : null;
+
+        String contentDisposition = buildContentDisposition(fileName, mediaType, downloadFile.isInline());
+
+        // 大文件重定向到对象存储直接下载，Range等请求头由对象存储处理
+        if (downloadFile.isRedirectAllowed() && redirectEnabled && fileSize >= redirectThreshold) {
+            String presignedUrl = getRedirectUrl(objectName, mediaType, contentDisposition);
+            if (presignedUrl != null) {
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(URI.create(presignedUrl))
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
+        }
+
+        // 构建响应头
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (eTag != null) {
+            headers.setETag(eTag);
+        }
+
+        // 添加缓存控制头，内容变化时ETag随之变化
+        headers.setCacheControl("max-age=31536000"); // 缓存一年
+
+        // 添加跨域头
+        headers.add("Access-Control-Expose-Headers", "Content-Disposition, Content-Range, Accept-Ranges, ETag");
+
+        // 客户端缓存的内容仍然有效
+        if (eTag != null && matchesIfNoneMatch(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        // If-Range不匹配时说明客户端持有的是旧内容，忽略Range返回完整文件
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isIfRangeSatisfied(request.getHeader(HttpHeaders.IF_RANGE), eTag)) {
+            List<long[]> regions = resolveRanges(rangeHeader, fileSize);
+            if (regions == null) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+            }
+            if (regions.size() == 1) {
+                return singleRange(headers, downloadFile, mediaType, fileSize, regions.get(0));
+            }
+            return multipleRanges(headers, downloadFile, mediaType, fileSize, regions);
+        }
+
+        headers.setContentType(mediaType);
+        headers.setContentLength(fileSize);
+        InputStream inputStream = storageService.downloadFile(bucketName, objectName, downloadFile.getMd5(), 0, -1);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(relayBody(inputStream, downloadFile));
+    }
+
+    @Override
+    public String getDirectDownloadUrl(DownloadFileDTO downloadFile) {
+        if (!redirectEnabled) {
+            return null;
+        }
+        String objectName = downloadFile.getObjectName();
+        long fileSize = downloadFile.getFileSize() != null
+                ? downloadFile.getFileSize()
+                : storageService.getObjectSize(bucketName, objectName);
+        if (fileSize < redirectThreshold) {
+            return null;
+        }
+        String fileName = normalizeFileName(downloadFile.getFileName());
+        MediaType mediaType = resolveMediaType(fileName, downloadFile.getFileType());
+        return getRedirectUrl(objectName, mediaType, buildContentDisposition(fileName, mediaType, downloadFile.isInline()));
+    }
+
+    @Override
+    public boolean isPartialRequest(HttpServletRequest request) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        return rangeHeader != null && !rangeHeader.replace(" ", "").startsWith("bytes=0-");
+    }
+
+    @Override
+    public ResponseEntity<?> downloadZip(String zipName, List<ZipEntryDTO> entries, Long userId, String shareCode) {
+        MediaType mediaType = MediaType.parseMediaType("application/zip");
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, buildContentDisposition(zipName, mediaType, false));
+        headers.setContentType(mediaType);
+        headers.setCacheControl(CacheControl.noStore());
+        headers.add("Access-Control-Expose-Headers", "Content-Disposition");
+
+        StreamingResponseBody body = outputStream -> {
+            Map<Integer, Future<ZipSource>> prefetching = new HashMap<>();
+            int prefetchIndex = 0;
+            try (BandwidthService.Throttle throttle = bandwidthService.open(userId, shareCode)) {
+                // 条目名使用UTF-8编码；条目大小、偏移量或条目数超出ZIP限制时自动写入ZIP64扩展
+                ZipOutputStream zip = new ZipOutputStream(outputStream, StandardCharsets.UTF_8);
+                for (int i = 0; i < entries.size(); i++) {
+                    // 写当前文件时，后续的文件在预取线程中并行读取
+                    while (prefetchIndex < entries.size() && prefetchIndex <= i + zipPrefetchWindow) {
+                        ZipEntryDTO next = entries.get(prefetchIndex);
+                        if (!next.isDirectory()) {
+                            prefetching.put(prefetchIndex, zipPrefetchExecutor.submit(() -> prefetch(next)));
+                        }
+                        prefetchIndex++;
+                    }
+
+                    ZipEntryDTO entry = entries.get(i);
+                    if (entry.isDirectory()) {
+                        ZipEntry zipEntry = new ZipEntry(entry.getEntryName());
+                        if (entry.getLastModified() != null) {
+                            zipEntry.setTime(entry.getLastModified());
+                        }
+                        zip.putNextEntry(zipEntry);
+                        zip.closeEntry();
+                        continue;
+                    }
+                    try (ZipSource source = await(prefetching.remove(i))) {
+                        writeZipEntry(zip, entry, source, throttle);
+                    }
+                }
+                zip.finish();
+            } finally {
+                // 客户端中断或出错时，释放已预取的数据和连接
+                for (Future<ZipSource> future : prefetching.values()) {
+                    try {
+                        future.get().close();
+                    } catch (Exception e) {
+                        log.debug("关闭预取的文件失败: {}", e.getMessage());
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    /**
+     * 写出一个文件条目
+     * 已压缩的格式不再压缩：完整预取的小文件可在写入前计算CRC，使用STORED；
+     * 大文件无法预先计算CRC，使用不压缩的DEFLATED，CRC和大小写在条目后的数据描述符中
+     */
+    private void writeZipEntry(ZipOutputStream zip, ZipEntryDTO entry, ZipSource source,
+                               BandwidthService.Throttle throttle) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(entry.getEntryName());
+        if (entry.getLastModified() != null) {
+            zipEntry.setTime(entry.getLastModified());
+        }
+
+        boolean compressed = isCompressedContent(entry);
+        if (compressed && source.data != null) {
+            CRC32 crc = new CRC32();
+            crc.update(source.data);
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(source.data.length);
+            zipEntry.setCompressedSize(source.data.length);
+            zipEntry.setCrc(crc.getValue());
+        } else {
+            zipEntry.setMethod(ZipEntry.DEFLATED);
+            zip.setLevel(compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        }
+
+        zip.putNextEntry(zipEntry);
+        relay(source.getInputStream(), zip, throttle);
+        zip.closeEntry();
+    }
+
+    /**
+     * 预取文件：小文件完整读入内存，大文件只打开读取流，使建立连接和首字节等待与当前文件的输出重叠
+     */
+    private ZipSource prefetch(ZipEntryDTO entry) throws IOException {
+        InputStream inputStream = storageService.downloadFile(bucketName, entry.getObjectName(), entry.getMd5(), 0, -1);
+        if (entry.getFileSize() != null && entry.getFileSize() <= zipPrefetchMaxSize) {
+            try (inputStream) {
+                return new ZipSource(inputStream.readAllBytes(), null);
+            }
+        }
+        return new ZipSource(null, inputStream);
+    }
+
+    private ZipSource await(Future<ZipSource> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待预取文件时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("读取文件失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 根据扩展名和文件类型判断内容是否已经压缩过
+     */
+    private boolean isCompressedContent(ZipEntryDTO entry) {
+        String entryName = entry.getEntryName();
+        int lastDotIndex = entryName.lastIndexOf(".");
+        if (lastDotIndex > entryName.lastIndexOf("/")
+                && COMPRESSED_EXTENSIONS.contains(entryName.substring(lastDotIndex + 1).toLowerCase())) {
+            return true;
+        }
+        String fileType = entry.getFileType();
+        return fileType != null && (fileType.startsWith("video/") || fileType.startsWith("audio/"))
+                && !fileType.equals("audio/wav") && !fileType.equals("audio/x-wav");
+    }
+
+    /**
+     * 预取的文件内容：小文件为内存中的数据，大文件为已打开的读取流
+     */
+    private static class ZipSource implements AutoCloseable {
+
+        private final byte[] data;
+
+        private final InputStream stream;
+
+        ZipSource(byte[] data, InputStream stream) {
+            this.data = data;
+            this.stream = stream;
+        }
+
+        InputStream getInputStream() {
+            return data != null ? new ByteArrayInputStream(data) : stream;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * 生成带响应头覆盖参数的预签名下载URL
+     * @return 预签名URL，对象不支持预签名访问（例如分块存储的对象）时返回null
+     */
+    private String getRedirectUrl(String objectName, MediaType mediaType, String contentDisposition) {
+        Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("response-content-disposition", contentDisposition);
+        queryParams.put("response-content-type", mediaType.toString());
+        try {
+            return storageService.getPresignedObjectUrl(bucketName, objectName, redirectExpireSeconds, "GET", queryParams);
+        } catch (BusinessException e) {
+            log.warn("无法生成预签名下载URL，改为转发下载: {}, {}", objectName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 返回单个范围，响应体为该范围的原始字节
+     */
+    private ResponseEntity<?> singleRange(HttpHeaders headers, DownloadFileDTO downloadFile, MediaType mediaType, long fileSize, long[] region) {
+        long start = region[0];
+        long length = region[1] - region[0] + 1;
+        headers.setContentType(mediaType);
+        headers.setContentLength(length);
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + region[0] + "-" + region[1] + "/" + fileSize);
+
+        InputStream inputStream = storageService.downloadFile(bucketName, downloadFile.getObjectName(), downloadFile.getMd5(), start, length);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .body(relayBody(inputStream, downloadFile));
+    }
+
+    /**
+     * 返回多个范围，响应体为multipart/byteranges，每个部分按需读取对应范围
+     */
+    private ResponseEntity<?> multipleRanges(HttpHeaders headers, DownloadFileDTO downloadFile, MediaType mediaType, long fileSize, List<long[]> regions) {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+        for (long[] region : regions) {
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + mediaType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + region[0] + "-" + region[1] + "/" + fileSize + "\r\n\r\n";
+            byte[] partHeaderBytes = partHeader.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeaderBytes);
+            contentLength += partHeaderBytes.length + region[1] - region[0] + 1;
+        }
+        byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closeDelimiter.length;
+
+        headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+        headers.setContentLength(contentLength);
+
+        StreamingResponseBody body = outputStream -> {
+            try (BandwidthService.Throttle throttle = bandwidthService.open(downloadFile.getUserId(), downloadFile.getShareCode())) {
+                for (int i = 0; i < regions.size(); i++) {
+                    long[] region = regions.get(i);
+                    outputStream.write(partHeaders.get(i));
+                    try (InputStream inputStream = storageService.downloadFile(bucketName, downloadFile.getObjectName(),
+                            downloadFile.getMd5(), region[0], region[1] - region[0] + 1)) {
+                        relay(inputStream, outputStream, throttle);
+                    }
+                }
+                outputStream.write(closeDelimiter);
+            }
+        };
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .body(body);
+    }
+
+    /**
+     * 响应体：通过池化缓冲区将对象数据限速转发给客户端，转发结束后关闭输入流
+     */
+    private StreamingResponseBody relayBody(InputStream inputStream, DownloadFileDTO downloadFile) {
+        return outputStream -> {
+            try (inputStream; BandwidthService.Throttle throttle =
+                    bandwidthService.open(downloadFile.getUserId(), downloadFile.getShareCode())) {
+                relay(inputStream, outputStream, throttle);
+            }
+        };
+    }
+
+    /**
+     * 使用池中的缓冲区转发数据
+     * 每填满一个缓冲区写出并刷新一次；客户端读取缓慢时写操作阻塞，不会继续从存储读取，在途数据不超过一个缓冲区。
+     * 写出前按限速器等待，限速时同样不会提前从存储读取
+     */
+    private void relay(InputStream inputStream, OutputStream outputStream, BandwidthService.Throttle throttle) throws IOException {
+        if (inputStream instanceof FileRegionInputStream) {
+            relayFileRegion((FileRegionInputStream) inputStream, outputStream, throttle);
+            return;
+        }
+
+        byte[] buffer = bufferPool.acquire(relayAcquireTimeoutMs);
+        activeRelays.incrementAndGet();
+        try {
+            int n;
+            while ((n = inputStream.readNBytes(buffer, 0, buffer.length)) > 0) {
+                throttle.consume(n);
+                bytesInFlight.addAndGet(n);
+                try {
+                    outputStream.write(buffer, 0, n);
+                    outputStream.flush();
+                } finally {
+                    bytesInFlight.addAndGet(-n);
+                }
+                bytesServed.increment(n);
+            }
+        } finally {
+            activeRelays.decrementAndGet();
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 转发本地缓存文件：通过FileChannel.transferTo输出，不占用池中的缓冲区，每次输出一个缓冲区大小的数据以便限速
+     */
+    private void relayFileRegion(FileRegionInputStream inputStream, OutputStream outputStream, BandwidthService.Throttle throttle) throws IOException {
+        activeRelays.incrementAndGet();
+        try {
+            int n;
+            while ((n = Math.min(relayBufferSize, inputStream.available())) > 0) {
+                throttle.consume(n);
+                long transferred = inputStream.transferTo(outputStream, n);
+                if (transferred <= 0) {
+                    break;
+                }
+                outputStream.flush();
+                bytesServed.increment(transferred);
+            }
+        } finally {
+            activeRelays.decrementAndGet();
+        }
+    }
+
+    /**
+     * 解析Range请求头
+     * @return 各范围的起止位置（含），范围无效或无法满足时返回null
+     */
+    private List<long[]> resolveRanges(String rangeHeader, long fileSize) {
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            if (ranges.isEmpty()) {
+                return null;
+            }
+
+            List<long[]> regions = new ArrayList<>();
+            long total = 0;
+            for (HttpRange range : ranges) {
+                long start = range.getRangeStart(fileSize);
+                long end = range.getRangeEnd(fileSize);
+                regions.add(new long[]{start, end});
+                total += end - start + 1;
+            }
+            // 范围总和超过文件大小时视为恶意请求
+            if (ranges.size() > 1 && total > fileSize) {
+                return null;
+            }
+            return regions;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * If-None-Match是否与当前ETag匹配（弱比较）
+     */
+    private boolean matchesIfNoneMatch(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || eTag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If-Range是否允许按Range返回部分内容
+     * 只支持以ETag作为验证器（强比较），日期形式的If-Range无法验证，按不匹配处理
+     */
+    private boolean isIfRangeSatisfied(String ifRange, String eTag) {
+        if (ifRange == null) {
+            return true;
+        }
+        return eTag != null && eTag.equals(ifRange.trim());
+    }
+
+    /**
+     * 处理文件名中可能包含的@2o.jpg等后缀
+     */
+    private String normalizeFileName(String fileName) {
+        if (fileName == null || !fileName.contains("@")) {
+            return fileName;
+        }
+
+        // 获取文件扩展名
+        String extension = "";
+        int lastDotIndex = fileName.lastIndexOf(".");
+        if (lastDotIndex > 0) {
+            extension = fileName.substring(lastDotIndex);
+        }
+
+        // 截取@之前的部分
+        String normalized = fileName.substring(0, fileName.indexOf("@"));
+
+        // 如果截取后的文件名不包含扩展名，则添加扩展名
+        if (!normalized.toLowerCase().endsWith(extension.toLowerCase())) {
+            normalized += extension;
+        }
+        return normalized;
+    }
+
+    /**
+     * 从文件扩展名确定Content-Type，无法识别时使用已知的文件类型
+     */
+    private MediaType resolveMediaType(String fileName, String fileType) {
+        String fileExtension = "";
+        int lastDotIndex = fileName.lastIndexOf(".");
+        if (lastDotIndex > 0) {
+            fileExtension = fileName.substring(lastDotIndex + 1).toLowerCase();
+        }
+
+        // 根据扩展名设置常见的Content-Type
+        switch (fileExtension) {
+            case "jpg":
+            case "jpeg":
+                return MediaType.IMAGE_JPEG;
+            case "png":
+                return MediaType.IMAGE_PNG;
+            case "gif":
+                return MediaType.IMAGE_GIF;
+            case "pdf":
+                return MediaType.APPLICATION_PDF;
+            case "html":
+                return MediaType.TEXT_HTML;
+            case "txt":
+                return MediaType.TEXT_PLAIN;
+            case "json":
+                return MediaType.APPLICATION_JSON;
+            case "xml":
+                return MediaType.APPLICATION_XML;
+            default:
+                // 如果有已知的文件类型，优先使用
+                if (fileType != null && !fileType.isEmpty()) {
+                    try {
+                        return MediaType.parseMediaType(fileType);
+                    } catch (Exception e) {
+                        return MediaType.APPLICATION_OCTET_STREAM;
+                    }
+                }
+                return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    /**
+     * 根据内容类型决定是直接预览还是下载
+     */
+    private String buildContentDisposition(String fileName, MediaType mediaType, boolean inline) {
+        // 设置文件名编码
+        String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8)
+                .replaceAll("\\+", "%20"); // 替换空格为%20，避免某些浏览器问题
+
+        // 判断是否为可以预览的内容类型
+        boolean isPreviewable = mediaType.toString().startsWith("image/") ||
+                               mediaType.toString().startsWith("text/") ||
+                               mediaType.toString().equals("application/pdf");
+
+        if (inline || isPreviewable) {
+            // 对于可预览的文件类型，使用inline方式
+            return "inline; filename=\"" + encodedFileName + "\"";
+        }
+        // 对于其他文件类型，使用attachment方式下载
+        return "attachment; filename=\"" + encodedFileName + "\"";
+    }
+}
@@ -205,6 +205,48 @@ public class FileSearchServiceImpl implements FileSearchService {
         }
     }
 
+    @Override
+    public boolean bulkDeleteFileIndex(List<Long> fileIds) {
+        if (fileIds.isEmpty()) {
+            return true;
+        }
+        try {
+            // 准备批量删除操作
+            List<BulkOperation> operations = new ArrayList<>();
+            for (Long fileId : fileIds) {
+                operations.add(new BulkOperation.Builder()
+                    .delete(d -> d
+                        .index(FILE_INDEX)
+                        .id(fileId.toString())
+                    )
+                    .build()
+                );
+            }
+            
+            // 执行批量操作
+            BulkResponse response = elasticsearchClient.bulk(b -> b
+                .index(FILE_INDEX)
+                .operations(operations)
+            );
+            
+            // 索引中不存在的文件返回not_found，不视为失败
+            if (response.errors()) {
+                for (BulkResponseItem item : response.items()) {
+                    if (item.error() != null) {
+                        log.error("Failed to delete file index: {}, error: {}", item.id(), item.error().reason());
+                    }
+                }
+                return false;
+            }
+            
+            log.debug("Deleted {} file indexes", fileIds.size());
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to bulk delete file indexes", e);
+            return false;
+        }
+    }
+
     @Override
     public List<UserFile> searchFiles(String keyword, Long userId) {
         return searchFiles(keyword, userId, 0, 100);
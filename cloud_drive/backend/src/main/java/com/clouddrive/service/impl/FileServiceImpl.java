@@ -3,31 +3,50 @@ package com.clouddrive.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.clouddrive.exception.BusinessException;
 import com.clouddrive.listener.FileEvent;
 import com.clouddrive.mapper.FileMapper;
 import com.clouddrive.mapper.UserFileMapper;
+import com.clouddrive.model.dto.FileListItemDTO;
+import com.clouddrive.model.dto.FileListQueryDTO;
+import com.clouddrive.model.dto.UploadSessionDTO;
+import com.clouddrive.model.dto.ZipEntryDTO;
 import com.clouddrive.model.entity.File;
 import com.clouddrive.model.entity.UserFile;
+import com.clouddrive.model.vo.FilePageVO;
+import com.clouddrive.service.DeletionQueueService;
 import com.clouddrive.service.FileService;
 import com.clouddrive.service.StorageService;
+import com.clouddrive.service.UploadSessionService;
 import com.clouddrive.service.UserService;
 import com.clouddrive.service.UserFileService;
+import com.clouddrive.util.HashingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * 文件服务实现类
@@ -57,6 +76,66 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
 
     @Autowired
     private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private UploadSessionService uploadSessionService;
+    
+    @Autowired
+    private DeletionQueueService deletionQueueService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    /**
+     * 分片上传模式：compose（分片作为独立对象上传，合并时服务端拼接）或 multipart（直接映射为S3原生分片上传）
+     */
+    @Value("${upload.chunk.mode:compose}")
+    private String chunkMode;
+    
+    /**
+     * 分片预签名上传URL的有效期（秒）
+     */
+    @Value("${upload.presign.expire-seconds:3600}")
+    private int presignExpireSeconds;
+    
+    /**
+     * 最小分片大小（字节），除最后一片外每片不能小于该大小，与对象存储的最小分片大小一致
+     */
+    @Value("${upload.chunk.min-size:5242880}")
+    private long minChunkSize;
+    
+    /**
+     * 对象命名方式：path（按用户路径命名）或 content（按内容SHA-256寻址）
+     */
+    @Value("${storage.layout:path}")
+    private String storageLayout;
+    
+    private static final String STAGING_PREFIX = "staging/";
+    
+    /**
+     * 分片对象模式下分片临时对象的前缀
+     */
+    private static final String CHUNK_PREFIX = "chunks/";
+    
+    /**
+     * 按ID批量查询或删除时每批的数量
+     */
+    private static final int QUERY_BATCH_SIZE = 1000;
+    
+    /**
+     * 文件列表默认每页数量
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    
+    /**
+     * 文件列表每页最大数量
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+    
+    /**
+     * 对象存储单次分片上传的最大分片数
+     */
+    private static final int MAX_UPLOAD_PARTS = 10000;
 
     // 辅助方法：逐级创建或获取文件夹ID
     private Long getOrCreateFolderHierarchy(Long initialParentId, String folderPath, Long userId) {
@@ -64,57 +143,26 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
             return initialParentId;
         }
 
-        // 分割路径，处理Windows和Unix风格的路径分隔符
-        String normalizedPath = folderPath.replace('\\', '/');
-        
-        // 不再检测和处理重复路径，允许嵌套同名文件夹
-        String[] folderNames = normalizedPath.split("/");
-        Long currentParentId = initialParentId;
+        // 不再检测和处理重复路径，允许嵌套同名文件夹；同一层级一次查询，同一用户的创建操作互斥。
+        // 文件夹在独立事务中创建并提交，之后传输文件时不持有用户记录的锁，上传失败时已创建的文件夹保留
+        return userFileService.getOrCreateFolder(initialParentId, folderPath, userId);
+    }
 
-        System.out.println("创建文件夹层次结构: " + folderPath + ", 初始父ID: " + initialParentId);
-        
-        for (String folderName : folderNames) {
-            if (folderName.isEmpty()) {
-                continue;
-            }
-            
-            System.out.println("处理文件夹: " + folderName + ", 父ID: " + currentParentId);
-            
-            // 查找是否已存在该文件夹
-            UserFile existingFolder = userFileService.findUserFileByNameAndParent(folderName, currentParentId, userId);
-            if (existingFolder != null && existingFolder.getIsDir()) {
-                System.out.println("文件夹已存在: " + folderName + ", ID: " + existingFolder.getId());
-                currentParentId = existingFolder.getId();
-            } else if (existingFolder == null) {
-                // 如果不存在，则创建
-                UserFile newFolder = new UserFile();
-                newFolder.setFileName(folderName);
-                newFolder.setFileSize(0L);
-                newFolder.setFileType("folder");
-                newFolder.setIsDir(true);
-                newFolder.setDelFlag(0);
-                newFolder.setUserId(userId);
-                newFolder.setParentId(currentParentId);
-                newFolder.setCreateTime(new Date());
-                newFolder.setUpdateTime(new Date());
-                userFileService.save(newFolder);
-                System.out.println("创建新文件夹: " + folderName + ", ID: " + newFolder.getId());
-                currentParentId = newFolder.getId();
-            } else {
-                // 存在同名文件但不是文件夹，这是一个冲突
-                throw new RuntimeException("目标路径中存在同名文件，无法创建文件夹: " + folderName);
-            }
+    @Override
+    @Transactional
+    public UserFile upload(MultipartFile file, Long parentId, String relativePath, Long userId) {
+        try {
+            return upload(file.getInputStream(), file.getSize(), file.getOriginalFilename(), file.getContentType(), parentId, relativePath, userId);
+        } catch (IOException e) {
+            throw new RuntimeException("上传文件失败: " + e.getMessage(), e);
         }
-        
-        System.out.println("文件夹层次结构创建完成，最终父ID: " + currentParentId);
-        return currentParentId;
     }
 
     @Override
     @Transactional
-    public UserFile upload(MultipartFile file, Long parentId, String relativePath, Long userId) {
+    public UserFile upload(InputStream inputStream, long size, String fileName, String contentType, Long parentId, String relativePath, Long userId) {
         try {
-            String actualFileName = file.getOriginalFilename();
+            String actualFileName = fileName;
             Long finalParentId = parentId;
             String objectPathPrefix = ""; // 用于构建MinIO的objectName中的路径部分
 
@@ -146,15 +194,11 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
                 throw new RuntimeException("目标位置已存在同名文件或文件夹: " + actualFileName);
             }
 
-            // 1. 先保存文件元数据到File表
-            File fileEntity = new File();
-            fileEntity.setFileName(actualFileName); // 使用解析后的文件名
-            fileEntity.setFileSize(file.getSize());
-            fileEntity.setFileType(file.getContentType());
-            
-            // 构建对象存储路径
+            // 构建对象存储路径，按内容寻址时先写入临时对象，得到摘要后再确定最终名称
             String minioObjectName;
-            if (!objectPathPrefix.isEmpty()) {
+            if (isContentAddressed()) {
+                minioObjectName = getStagingObjectName();
+            } else if (!objectPathPrefix.isEmpty()) {
                 // 如果有相对路径，使用userId/relativePath作为MinIO中的路径
                 minioObjectName = userId + "/" + relativePath;
             } else {
@@ -166,23 +210,20 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
                 }
             }
 
-            fileEntity.setObjectName(minioObjectName);
-            
-            fileEntity.setUsageCount(1); 
-            fileEntity.setStatus(1); 
-            fileEntity.setCreateTime(new Date());
-            fileEntity.setUpdateTime(new Date());
-            
-            fileMapper.insert(fileEntity);
+            // 1. 边接收边上传文件到MinIO，请求体不落地；上传的同时计算MD5和SHA-256
+            HashingInputStream hashingInputStream = new HashingInputStream(inputStream);
+            storageService.uploadFile(bucketName, minioObjectName, hashingInputStream, size, contentType);
+            long fileSize = hashingInputStream.getBytesRead();
             
-            // 2. 上传文件到MinIO
-            storageService.uploadFile(bucketName, minioObjectName, file, file.getContentType());
+            // 2. 保存文件元数据到File表，内容已存在时复用已有文件
+            File fileEntity = saveFileEntity(hashingInputStream.getMd5(), hashingInputStream.getSha256(),
+                    actualFileName, contentType, minioObjectName, fileSize);
             
             // 3. 创建用户文件记录
             UserFile userFile = new UserFile();
             userFile.setFileName(actualFileName); // 使用解析后的文件名
-            userFile.setFileSize(file.getSize());
-            userFile.setFileType(file.getContentType());
+            userFile.setFileSize(fileSize);
+            userFile.setFileType(contentType);
             userFile.setIsDir(false);
             userFile.setDelFlag(0); 
             userFile.setUserId(userId);
@@ -194,7 +235,7 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
             userFileService.save(userFile);
             
             // 4. 更新用户已使用空间
-            userService.updateUsedSize(userId, file.getSize());
+            userService.updateUsedSize(userId, fileSize);
             
             // 5. 发布文件上传事件，用于索引
             eventPublisher.publishEvent(FileEvent.createUploadEvent(userFile));
@@ -236,12 +277,113 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
         return folder;
     }
 
+    @Override
+    public Map<String, Long> prepareFolderUpload(Long parentId, List<String> folderPaths, Long userId) {
+        // 同一层级的文件夹一次查询、一次批量插入，整个清单在一个事务中完成
+        return userFileService.getOrCreateFolders(parentId, folderPaths, userId);
+    }
+
     @Override
     public List<UserFile> getUserFileList(Long parentId, Long userId) {
         // 从数据库中获取用户文件列表
         return userFileService.getUserFileList(parentId, userId);
     }
 
+    @Override
+    public FilePageVO getFilePage(Long parentId, String orderBy, String orderDirection, String cursor, Integer limit, Long userId) {
+        FileListQueryDTO query = buildPageQuery(orderBy, orderDirection, cursor, limit, userId);
+        query.setParentId(parentId);
+        return toFilePage(query, userFileService.getFilePage(query));
+    }
+
+    @Override
+    public FilePageVO getStarredPage(String orderBy, String orderDirection, String cursor, Integer limit, Long userId) {
+        FileListQueryDTO query = buildPageQuery(orderBy, orderDirection, cursor, limit, userId);
+        return toFilePage(query, userFileService.getStarredPage(query));
+    }
+
+    @Override
+    public FilePageVO getRecycleBinPage(String orderBy, String orderDirection, String cursor, Integer limit, Long userId) {
+        FileListQueryDTO query = buildPageQuery(orderBy, orderDirection, cursor, limit, userId);
+        return toFilePage(query, userFileService.getRecycleBinPage(query));
+    }
+
+    /**
+     * 构建分页查询条件，排序列只能取白名单中的列
+     */
+    private FileListQueryDTO buildPageQuery(String orderBy, String orderDirection, String cursor, Integer limit, Long userId) {
+        FileListQueryDTO query = new FileListQueryDTO();
+        query.setUserId(userId);
+        if ("size".equals(orderBy)) {
+            query.setSortColumn("file_size");
+        } else if ("time".equals(orderBy) || "updateTime".equals(orderBy)) {
+            query.setSortColumn("update_time");
+        } else {
+            query.setSortColumn("file_name");
+        }
+        query.setAsc(!"desc".equalsIgnoreCase(orderDirection));
+        
+        // 多查询一条，用于判断是否还有下一页
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        query.setLimit(pageSize + 1);
+        
+        if (cursor != null && !cursor.isEmpty()) {
+            decodeCursor(cursor, query);
+        }
+        return query;
+    }
+
+    private FilePageVO toFilePage(FileListQueryDTO query, List<FileListItemDTO> items) {
+        FilePageVO page = new FilePageVO();
+        int pageSize = query.getLimit() - 1;
+        if (items.size() > pageSize) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+            page.setNextCursor(encodeCursor(query.getSortColumn(), items.get(items.size() - 1)));
+        }
+        page.setList(items);
+        return page;
+    }
+
+    /**
+     * 游标内容为 排序列|排序列值|ID，时间以毫秒数表示，整体使用URL安全的Base64编码
+     */
+    private String encodeCursor(String sortColumn, FileListItemDTO last) {
+        Object value;
+        if ("file_size".equals(sortColumn)) {
+            // file_size 列非空，游标值与数据库中的值一致
+            value = last.getFileSize();
+        } else if ("update_time".equals(sortColumn)) {
+            value = last.getUpdateTime().getTime();
+        } else {
+            value = last.getFileName();
+        }
+        String cursor = sortColumn + "|" + value + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void decodeCursor(String cursor, FileListQueryDTO query) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int first = decoded.indexOf('|');
+            int last = decoded.lastIndexOf('|');
+            // 排序方式改变后旧游标不再有效
+            if (first < 0 || first == last || !decoded.substring(0, first).equals(query.getSortColumn())) {
+                throw new BusinessException("分页游标无效");
+            }
+            String value = decoded.substring(first + 1, last);
+            if ("file_size".equals(query.getSortColumn())) {
+                query.setCursorValue(Long.valueOf(value));
+            } else if ("update_time".equals(query.getSortColumn())) {
+                query.setCursorValue(new Date(Long.parseLong(value)));
+            } else {
+                query.setCursorValue(value);
+            }
+            query.setCursorId(Long.valueOf(decoded.substring(last + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("分页游标无效");
+        }
+    }
+
     @Override
     public List<UserFile> getRecycleBinList(Long userId) {
         // 从数据库获取回收站文件列表
@@ -295,13 +437,20 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
     @Override
     @Transactional
     public boolean move(Long userFileId, Long targetParentId, Long userId) {
-        // 更新父文件夹ID
-        LambdaUpdateWrapper<UserFile> updateWrapper = new LambdaUpdateWrapper<>();
-        updateWrapper.eq(UserFile::getId, userFileId)
-                    .eq(UserFile::getUserId, userId)
-                    .set(UserFile::getParentId, targetParentId)
-                    .set(UserFile::getUpdateTime, new Date());
-        return userFileService.update(updateWrapper);
+        UserFile userFile = getUserFileById(userFileId, userId);
+        if (userFile == null || !userFile.getUserId().equals(userId)) {
+            return false;
+        }
+        
+        // 更新父文件夹ID，文件夹的子树一并更新祖先路径
+        boolean result = userFileService.move(userFile, targetParentId);
+        
+        // 发布文件移动事件
+        if (result) {
+            eventPublisher.publishEvent(FileEvent.createMoveEvent(userFile));
+        }
+        
+        return result;
     }
 
     @Override
@@ -334,7 +483,7 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
     public boolean delete(Long userFileId, Long userId) {
         // 获取文件信息，用于计算空间变化
         UserFile userFile = getUserFileById(userFileId, userId);
-        if (userFile == null) {
+        if (userFile == null || !userFile.getUserId().equals(userId)) {
             return false;
         }
         
@@ -344,23 +493,12 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
             // 当彻底删除时才会更新
         }
         
-        // 将文件移动到回收站
-        boolean success = userFileService.updateDelFlag(userFileId, 1, userId);
+        // 文件夹连同其中任意层级的文件和子文件夹一条语句移动到回收站，已在回收站中的子文件保持不变
+        boolean success = userFileService.updateSubtreeDelFlag(userFile, 0, 1, userId) > 0;
         
-        // 如果是文件夹，递归处理其中的文件和子文件夹
-        if (userFile.getIsDir()) {
-            // 获取文件夹下的所有子文件和子文件夹
-            List<UserFile> subFiles = userFileService.getSubFiles(userFileId, userId);
-            
-            // 递归删除每个子文件和子文件夹
-            for (UserFile subFile : subFiles) {
-                delete(subFile.getId(), userId);
-            }
-        }
-        
-        // 发布文件删除事件
-        if (userFile != null) {
-            eventPublisher.publishEvent(FileEvent.createDeleteEvent(userFileId));
+        // 发布子树删除事件，事务提交后统一删除索引
+        if (success) {
+            eventPublisher.publishEvent(FileEvent.createSubtreeDeleteEvent(userFile));
         }
         
         return success;
@@ -371,7 +509,7 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
     public boolean restore(Long userFileId, Long userId) {
         // 获取文件信息，用于计算空间变化
         UserFile userFile = getUserFileById(userFileId, userId);
-        if (userFile == null) {
+        if (userFile == null || !userFile.getUserId().equals(userId)) {
             return false;
         }
         
@@ -381,18 +519,12 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
             // 当彻底删除时才会更新
         }
         
-        // 从回收站恢复文件
-        boolean success = userFileService.updateDelFlag(userFileId, 0, userId);
+        // 文件夹连同其中任意层级的回收站文件一条语句恢复；已清空（删除标志为2）的文件占用的存储已释放，不恢复
+        boolean success = userFileService.updateSubtreeDelFlag(userFile, 1, 0, userId) > 0;
         
-        // 如果是文件夹，递归处理其中的文件和子文件夹
-        if (userFile.getIsDir()) {
-            // 获取文件夹下所有被删除的子文件和子文件夹（包括回收站中的）
-            List<UserFile> subFiles = userFileService.getDeletedSubFiles(userFileId, userId);
-            
-            // 递归恢复每个子文件和子文件夹
-            for (UserFile subFile : subFiles) {
-                restore(subFile.getId(), userId);
-            }
+        // 发布子树恢复事件，事务提交后统一重建索引
+        if (success) {
+            eventPublisher.publishEvent(FileEvent.createSubtreeRestoreEvent(userFile));
         }
         
         return success;
@@ -403,60 +535,53 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
     public boolean deleteCompletely(Long userFileId, Long userId) {
         // 获取用户文件
         UserFile userFile = getUserFileById(userFileId, userId);
-        if (userFile == null) {
+        // 只能彻底删除自己的文件，校验通过前不查询子树、不释放任何文件
+        if (userFile == null || !userFile.getUserId().equals(userId)) {
             return false;
         }
         
-        boolean success = false;
-        
-        // 如果是文件夹，先递归删除其中的文件和子文件夹
+        // 如果是文件夹，按祖先路径一次查询子树中的文件和子文件夹（包括回收站中的）
+        List<UserFile> userFiles = new ArrayList<>();
+        userFiles.add(userFile);
         if (userFile.getIsDir()) {
-            // 获取文件夹下的所有子文件和子文件夹（包括回收站中的）
-            List<UserFile> subFiles = userFileService.getDeletedSubFiles(userFileId, userId);
-            
-            // 递归彻底删除每个子文件和子文件夹
-            for (UserFile subFile : subFiles) {
-                deleteCompletely(subFile.getId(), userId);
-            }
-            
-            // 删除文件夹记录
-            LambdaQueryWrapper<UserFile> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(UserFile::getId, userFileId)
-                       .eq(UserFile::getUserId, userId);
-            success = userFileService.remove(queryWrapper);
-        } else {
-            // 如果是文件，处理文件元数据
-            if (userFile.getFileId() != null) {
-                // 减少文件使用次数
-                fileMapper.decreaseUsageCount(userFile.getFileId());
-                
-                // 查询文件使用次数
-                File fileEntity = fileMapper.selectById(userFile.getFileId());
-                if (fileEntity != null && (fileEntity.getUsageCount() == null || fileEntity.getUsageCount() <= 0)) {
-                    // 如果使用次数为0，从对象存储中删除文件
-                    storageService.removeFile(bucketName, fileEntity.getObjectName());
-                    
-                    // 从数据库删除文件元数据
-                    fileMapper.deleteById(fileEntity.getId());
-                }
-                
-                // 更新用户已使用空间（减少）
-                if (userFile.getFileSize() != null && userFile.getFileSize() > 0) {
-                    userService.updateUsedSize(userId, -userFile.getFileSize());
-                    log.info("删除文件 {} ({}), 释放空间: {} bytes", userFile.getFileName(), userFileId, userFile.getFileSize());
+            userFiles.addAll(userFileService.getDeletedDescendants(userFile, userId));
+        }
+        
+        Set<String> orphanObjects = new LinkedHashSet<>();
+        long releasedSize = 0;
+        List<Long> userFileIds = new ArrayList<>(userFiles.size());
+        for (UserFile file : userFiles) {
+            userFileIds.add(file.getId());
+            // 如果是文件，处理文件元数据；清空回收站时已处理过的文件（del_flag=2）只删除记录
+            if (!file.getIsDir() && file.getFileId() != null && !Integer.valueOf(2).equals(file.getDelFlag())) {
+                releaseFile(file.getFileId(), orphanObjects);
+                if (file.getFileSize() != null && file.getFileSize() > 0) {
+                    releasedSize += file.getFileSize();
                 }
             }
-            
-            // 删除用户文件记录
+        }
+        
+        // 删除用户文件记录
+        boolean success = false;
+        for (int i = 0; i < userFileIds.size(); i += QUERY_BATCH_SIZE) {
             LambdaQueryWrapper<UserFile> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(UserFile::getId, userFileId)
+            queryWrapper.in(UserFile::getId, userFileIds.subList(i, Math.min(i + QUERY_BATCH_SIZE, userFileIds.size())))
                        .eq(UserFile::getUserId, userId);
-            success = userFileService.remove(queryWrapper);
+            success |= userFileService.remove(queryWrapper);
+        }
+        
+        // 更新用户已使用空间（减少）
+        if (releasedSize > 0) {
+            userService.updateUsedSize(userId, -releasedSize);
+            log.info("删除文件 {} ({}), 共 {} 项, 释放空间: {} bytes", userFile.getFileName(), userFileId, userFiles.size(), releasedSize);
         }
         
+        // 对象在事务提交后由后台删除，事务回滚时不会删除
+        deletionQueueService.enqueue(bucketName, orphanObjects);
+        
         // 发布文件删除事件
-        if (userFile != null) {
-            eventPublisher.publishEvent(FileEvent.createDeleteEvent(userFileId));
+        for (Long id : userFileIds) {
+            eventPublisher.publishEvent(FileEvent.createDeleteEvent(id));
         }
         
         return success;
@@ -467,6 +592,7 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
     public boolean emptyRecycleBin(Long userId) {
         // 获取回收站文件列表
         List<UserFile> recycleBinList = getRecycleBinList(userId);
+        Set<String> orphanObjects = new LinkedHashSet<>();
         
         // 计算总大小
         long totalSize = 0;
@@ -476,55 +602,29 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
                 
                 // 如果是文件，处理文件元数据
                 if (userFile.getFileId() != null) {
-                    // 减少文件使用次数
-                    fileMapper.decreaseUsageCount(userFile.getFileId());
-                    
-                    // 查询文件使用次数
-                    File fileEntity = fileMapper.selectById(userFile.getFileId());
-                    if (fileEntity != null && (fileEntity.getUsageCount() == null || fileEntity.getUsageCount() <= 0)) {
-                        // 如果使用次数为0，从对象存储中删除文件
-                        try {
-                            storageService.removeFile(bucketName, fileEntity.getObjectName());
-                            
-                            // 从数据库删除文件元数据
-                            fileMapper.deleteById(fileEntity.getId());
-                        } catch (Exception e) {
-                            log.error("清空回收站时删除文件失败: {}", e.getMessage());
-                        }
-                    }
+                    releaseFile(userFile.getFileId(), orphanObjects);
                 }
             } else if (userFile.getIsDir()) {
-                // 对于文件夹，递归获取其中的文件大小
-                // 获取文件夹下的所有子文件和子文件夹（包括回收站中的）
-                List<UserFile> subFiles = getDeletedSubFiles(userFile.getId(), userId);
+                // 对于文件夹，按祖先路径一次查询子树中的文件大小
+                // 获取文件夹下任意层级的子文件和子文件夹（包括回收站中的）
+                List<UserFile> subFiles = userFileService.getDeletedDescendants(userFile, userId);
                 for (UserFile subFile : subFiles) {
-                    if (!subFile.getIsDir() && subFile.getFileSize() != null) {
+                    // 之前清空回收站时已处理过的文件（del_flag=2）不再重复计算
+                    if (!subFile.getIsDir() && subFile.getFileSize() != null && Integer.valueOf(1).equals(subFile.getDelFlag())) {
                         totalSize += subFile.getFileSize();
                         
                         // 如果是文件，处理文件元数据
                         if (subFile.getFileId() != null) {
-                            // 减少文件使用次数
-                            fileMapper.decreaseUsageCount(subFile.getFileId());
-                            
-                            // 查询文件使用次数
-                            File fileEntity = fileMapper.selectById(subFile.getFileId());
-                            if (fileEntity != null && (fileEntity.getUsageCount() == null || fileEntity.getUsageCount() <= 0)) {
-                                // 如果使用次数为0，从对象存储中删除文件
-                                try {
-                                    storageService.removeFile(bucketName, fileEntity.getObjectName());
-                                    
-                                    // 从数据库删除文件元数据
-                                    fileMapper.deleteById(fileEntity.getId());
-                                } catch (Exception e) {
-                                    log.error("清空回收站时删除子文件失败: {}", e.getMessage());
-                                }
-                            }
+                            releaseFile(subFile.getFileId(), orphanObjects);
                         }
                     }
                 }
             }
         }
         
+        // 登记不再被引用的对象，事务提交后由后台批量删除
+        deletionQueueService.enqueue(bucketName, orphanObjects);
+        
         // 清空回收站
         boolean result = userFileService.emptyRecycleBin(userId);
         
@@ -537,6 +637,23 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
         return result;
     }
 
+    /**
+     * 减少文件使用次数，使用次数为0时删除文件元数据并记录对象名称，等待事务内统一登记删除
+     */
+    private void releaseFile(Long fileId, Set<String> orphanObjects) {
+        // 减少文件使用次数
+        fileMapper.decreaseUsageCount(fileId);
+        
+        // 查询文件使用次数
+        File fileEntity = fileMapper.selectById(fileId);
+        if (fileEntity != null && (fileEntity.getUsageCount() == null || fileEntity.getUsageCount() <= 0)) {
+            // 从数据库删除文件元数据，期间被秒传重新引用的文件不会删除
+            if (fileMapper.deleteUnused(fileEntity.getId()) > 0) {
+                orphanObjects.add(fileEntity.getObjectName());
+            }
+        }
+    }
+
     @Override
     @Transactional
     public boolean toggleStar(Long userFileId, Boolean isStarred, Long userId) {
@@ -553,27 +670,28 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
             return path;
         }
         
-        // 构建文件路径
-        UserFile currentFolder = null;
-        Long currentParentId = parentId;
+        // 文件夹及各级上级文件夹优先从缓存获取，未缓存的部分按祖先路径一次批量查询
+        List<UserFile> folders = userFileService.getFolderChain(parentId);
+        if (folders.isEmpty()) {
+            return path;
+        }
+        UserFile currentFolder = folders.get(folders.size() - 1);
+        if (!currentFolder.getUserId().equals(userId) || !currentFolder.getIsDir()) {
+            return path;
+        }
         
-        while (currentParentId != 0L) {
-            // 查找当前父文件夹
-            currentFolder = userFileService.getById(currentParentId);
-            
-            // 如果找不到父文件夹，或者不是当前用户的文件夹，中断循环
-            if (currentFolder == null || !currentFolder.getUserId().equals(userId) || !currentFolder.getIsDir()) {
+        // 从当前文件夹向上构建路径，遇到不属于当前用户的文件夹时停止
+        for (int i = folders.size() - 1; i >= 0; i--) {
+            UserFile folder = folders.get(i);
+            if (!folder.getUserId().equals(userId) || !folder.getIsDir()) {
                 break;
             }
             
-            // 将父文件夹添加到路径前面
+            // 将文件夹添加到路径前面
             Map<String, Object> folderInfo = new HashMap<>();
-            folderInfo.put("id", currentFolder.getId());
-            folderInfo.put("name", currentFolder.getFileName());
+            folderInfo.put("id", folder.getId());
+            folderInfo.put("name", folder.getFileName());
             path.add(0, folderInfo);
-            
-            // 继续查找上一级父文件夹
-            currentParentId = currentFolder.getParentId();
         }
         
         return path;
@@ -632,147 +750,293 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
             throw new Exception("上传文件分片不能为空");
         }
         
-        // 创建临时文件夹存储分片，路径为：userId/md5/
-        String chunkFolderPath = userId + "/" + md5 + "/";
-        String chunkFileName = chunkIndex + ".chunk";
-        String objectName = chunkFolderPath + chunkFileName;
+        return saveChunk(file.getInputStream(), file.getSize(), md5, chunkIndex, chunks, userId);
+    }
+    
+    @Override
+    public String saveChunk(InputStream inputStream, long size, String md5, Integer chunkIndex, Integer chunks, Long userId) throws Exception {
+        String objectName;
+        if (isMultipartMode()) {
+            // 原生分片上传模式：分片直接作为S3分片写入最终对象，不产生临时对象
+            if (size < 0) {
+                throw new Exception("原生分片上传模式下分片必须指定大小");
+            }
+            objectName = getMultipartObjectName(md5, userId);
+            String uploadId = getOrCreateMultipartUpload(md5, userId, "application/octet-stream");
+            storageService.uploadPart(bucketName, objectName, uploadId, chunkIndex + 1, inputStream, size);
+        } else {
+            // 分片存储为临时对象，路径为：chunks/userId/md5/N.chunk
+            objectName = getChunkObjectName(md5, chunkIndex, userId);
+            storageService.uploadFile(bucketName, objectName, inputStream, size, "application/octet-stream");
+        }
         
-        // 上传分片到对象存储
-        storageService.uploadFile(bucketName, objectName, file, "application/octet-stream");
+        // 在上传会话的位图中记录已接收的分片
+        uploadSessionService.markChunkUploaded(md5, userId, chunkIndex, chunks);
         
         return objectName;
     }
     
-    @Override
-    @Transactional
-    public UserFile mergeChunks(String md5, String fileName, Long parentId, Integer chunks, Long userId) throws Exception {
-        // 1. 获取所有实际存在的分片
-        String chunkFolderPath = userId + "/" + md5 + "/";
+    /**
+     * 是否使用S3原生分片上传模式
+     */
+    private boolean isMultipartMode() {
+        return "multipart".equalsIgnoreCase(chunkMode);
+    }
+    
+    /**
+     * 分片对象模式下单个分片的对象名称
+     */
+    private String getChunkObjectName(String md5, int chunkIndex, Long userId) {
+        return CHUNK_PREFIX + userId + "/" + md5 + "/" + chunkIndex + ".chunk";
+    }
+    
+    /**
+     * 原生分片上传模式下最终对象的名称，初始化时文件名尚未确定，因此使用MD5命名
+     */
+    private String getMultipartObjectName(String md5, Long userId) {
+        return userId + "/" + md5 + "/" + md5;
+    }
+    
+    /**
+     * 获取当前上传会话的uploadId，不存在时初始化新的分片上传
+     */
+    private String getOrCreateMultipartUpload(String md5, Long userId, String contentType) {
+        UploadSessionDTO session = uploadSessionService.getSession(md5, userId);
+        if (session != null && session.getUploadId() != null) {
+            return session.getUploadId();
+        }
         
-        System.out.println("开始合并分片，用户ID: " + userId + ", MD5: " + md5 + ", 文件名: " + fileName + ", 前端报告分片数: " + chunks);
+        String objectName = getMultipartObjectName(md5, userId);
+        String uploadId = storageService.initMultipartUpload(bucketName, objectName, contentType);
+        String effectiveUploadId = uploadSessionService.setUploadIdIfAbsent(md5, userId, uploadId);
+        if (!uploadId.equals(effectiveUploadId)) {
+            // 并发上传时其他请求已经初始化了会话，放弃本次初始化的uploadId
+            try {
+                storageService.abortMultipartUpload(bucketName, objectName, uploadId);
+            } catch (Exception e) {
+                log.warn("取消重复的分片上传失败: {}", e.getMessage());
+            }
+        }
+        return effectiveUploadId;
+    }
+    
+    /**
+     * 获取已上传的分片索引
+     * 优先从Redis上传会话的位图读取；会话不存在（例如Redis数据丢失）或位图中缺少期望的分片
+     * （例如分片通过预签名URL直接上传）时，才遍历对象存储重建会话
+     * @param md5 文件MD5值
+     * @param userId 用户ID
+     * @param expectedChunks 期望的分片数，为null时只要会话存在就信任位图
+     * @return 已上传的分片索引集合
+     */
+    private Set<Integer> resolveUploadedChunks(String md5, Long userId, Integer expectedChunks) {
+        UploadSessionDTO session = uploadSessionService.getSession(md5, userId);
+        if (session != null) {
+            Set<Integer> uploadedChunks = uploadSessionService.getUploadedChunks(md5, userId);
+            if (expectedChunks == null || containsAllChunks(uploadedChunks, expectedChunks)) {
+                return uploadedChunks;
+            }
+        }
         
-        // 使用 listObjects 获取所有已上传的分片
-        List<String> existingObjects = storageService.listObjects(bucketName, chunkFolderPath);
-        Set<Integer> uploadedChunks = new HashSet<>();
-        int maxChunkIndex = -1;
+        log.info("从对象存储重建上传会话, 用户ID: {}, MD5: {}", userId, md5);
+        Set<Integer> storedChunks = listStoredChunks(md5, userId, session != null ? session.getUploadId() : null);
+        uploadSessionService.rebuildSession(md5, userId, storedChunks);
+        return storedChunks;
+    }
+    
+    private boolean containsAllChunks(Set<Integer> uploadedChunks, int chunks) {
+        for (int i = 0; i < chunks; i++) {
+            if (!uploadedChunks.contains(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 遍历对象存储获取已上传的分片索引，仅用于重建上传会话
+     */
+    private Set<Integer> listStoredChunks(String md5, Long userId, String uploadId) {
+        Set<Integer> storedChunks = new HashSet<>();
         
-        System.out.println("找到对象数量: " + existingObjects.size());
+        if (isMultipartMode()) {
+            if (uploadId != null) {
+                for (Integer partNumber : storageService.listUploadedParts(bucketName, getMultipartObjectName(md5, userId), uploadId)) {
+                    storedChunks.add(partNumber - 1);
+                }
+            }
+            return storedChunks;
+        }
         
-        // 解析对象名称，提取分片索引
-        for (String objectName : existingObjects) {
+        String chunkFolderPath = CHUNK_PREFIX + userId + "/" + md5 + "/";
+        for (String objectName : storageService.listObjects(bucketName, chunkFolderPath)) {
             if (objectName.endsWith(".chunk")) {
                 String chunkFileName = objectName.substring(objectName.lastIndexOf('/') + 1);
-                String chunkIndexStr = chunkFileName.replace(".chunk", "");
                 try {
-                    int chunkIndex = Integer.parseInt(chunkIndexStr);
-                    uploadedChunks.add(chunkIndex);
-                    if (chunkIndex > maxChunkIndex) {
-                        maxChunkIndex = chunkIndex;
-                    }
-                    System.out.println("找到分片: " + chunkIndex);
+                    storedChunks.add(Integer.parseInt(chunkFileName.replace(".chunk", "")));
                 } catch (NumberFormatException e) {
                     // 忽略无法解析的文件名
-                    System.err.println("无法解析分片索引: " + chunkFileName);
+                    log.warn("无法解析分片索引: {}", chunkFileName);
                 }
             }
         }
+        return storedChunks;
+    }
+    
+    /**
+     * 原生分片上传模式下合并分片：仅需一次完成分片上传的元数据请求
+     */
+    private UserFile completeMultipartChunks(String md5, String fileName, Long parentId, Integer chunks, Long userId) throws Exception {
+        UploadSessionDTO session = uploadSessionService.getSession(md5, userId);
+        if (session == null || session.getUploadId() == null) {
+            throw new Exception("分片上传会话不存在或已过期");
+        }
+        String uploadId = session.getUploadId();
+        String objectName = getMultipartObjectName(md5, userId);
+        
+        // 检查是否有缺失的分片
+        Set<Integer> uploadedChunks = resolveUploadedChunks(md5, userId, chunks);
+        List<Integer> missingChunks = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            if (!uploadedChunks.contains(i)) {
+                missingChunks.add(i);
+            }
+        }
+        if (!missingChunks.isEmpty()) {
+            throw new Exception("分片文件不完整，缺少分片: " + missingChunks);
+        }
+        
+        storageService.completeMultipartUpload(bucketName, objectName, uploadId);
+        uploadSessionService.removeSession(md5, userId);
+        
+        HashingInputStream digest = verifyMergedObject(objectName, md5);
+        return saveMergedFile(digest.getMd5(), digest.getSha256(), fileName, parentId, objectName, getFileType(fileName), digest.getBytesRead(), userId);
+    }
+    
+    /**
+     * 合并和校验需要读写整个文件，不在事务中执行；只有保存元数据的步骤在事务中完成
+     */
+    @Override
+    public UserFile mergeChunks(String md5, String fileName, Long parentId, Integer chunks, Long userId) throws Exception {
+        if (isMultipartMode()) {
+            return completeMultipartChunks(md5, fileName, parentId, chunks, userId);
+        }
+        
+        log.info("开始合并分片，用户ID: {}, MD5: {}, 文件名: {}, 前端报告分片数: {}", userId, md5, fileName, chunks);
+        
+        // 1. 从上传会话获取已上传的分片
+        Set<Integer> uploadedChunks = resolveUploadedChunks(md5, userId, chunks);
+        int maxChunkIndex = uploadedChunks.isEmpty() ? -1 : Collections.max(uploadedChunks);
         
         // 确定实际分片数量（使用实际上传的最大分片索引+1，而不是前端传递的chunks）
         int actualChunks = maxChunkIndex + 1;
-        System.out.println("已上传分片数量: " + uploadedChunks.size() + ", 最大分片索引: " + maxChunkIndex + ", 实际分片数: " + actualChunks + ", 前端报告分片数: " + chunks);
-        
         if (actualChunks != chunks) {
-            System.out.println("警告: 实际分片数(" + actualChunks + ")与前端报告的分片数(" + chunks + ")不一致，将使用实际分片数");
+            log.warn("实际分片数({})与前端报告的分片数({})不一致，将使用实际分片数", actualChunks, chunks);
         }
         
-        // 检查是否有缺失的分片（只检查0到maxChunkIndex范围内的分片）
+        // 检查是否有缺失的分片
         List<Integer> missingChunks = new ArrayList<>();
         for (int i = 0; i < actualChunks; i++) {
             if (!uploadedChunks.contains(i)) {
                 missingChunks.add(i);
-                System.err.println("缺少分片: " + i);
-            }
-        }
-        
-        // 如果有分片缺失，尝试使用 objectExists 方法再次检查
-        if (!missingChunks.isEmpty()) {
-            System.out.println("使用 objectExists 方法再次检查缺失的分片");
-            List<Integer> stillMissingChunks = new ArrayList<>();
-            for (Integer chunkIndex : missingChunks) {
-                String chunkName = chunkFolderPath + chunkIndex + ".chunk";
-                if (!storageService.objectExists(bucketName, chunkName)) {
-                    stillMissingChunks.add(chunkIndex);
-                    System.err.println("确认缺少分片: " + chunkIndex);
-                } else {
-                    System.out.println("分片存在但未被列出: " + chunkIndex);
-                    // 添加到已上传分片集合中
-                    uploadedChunks.add(chunkIndex);
-                }
             }
-            
-            // 更新缺失分片列表
-            missingChunks = stillMissingChunks;
         }
-        
-        // 如果仍然有分片缺失，抛出异常
-        if (!missingChunks.isEmpty()) {
+        if (actualChunks == 0 || !missingChunks.isEmpty()) {
             throw new Exception("分片文件不完整，缺少分片: " + missingChunks);
         }
         
         // 创建源对象名称数组
         String[] sourceObjectNames = new String[actualChunks];
         for (int i = 0; i < actualChunks; i++) {
-            sourceObjectNames[i] = chunkFolderPath + i + ".chunk";
+            sourceObjectNames[i] = getChunkObjectName(md5, i, userId);
         }
         
-        System.out.println("所有分片都已存在，开始合并 " + actualChunks + " 个分片");
-        
-        // 2. 创建文件元数据
-        File fileEntity = new File();
-        fileEntity.setFileName(fileName);
-        fileEntity.setFileType(getFileType(fileName));
-        fileEntity.setMd5(md5); // 设置文件MD5值
-        
-        // 合并后的文件路径
-        String mergedFilePath = userId + "/" + md5 + "/" + fileName;
-        fileEntity.setObjectName(mergedFilePath);
+        // 2. 确定文件类型和合并后的文件路径
+        String fileType = getFileType(fileName);
+        String mergedFilePath = isContentAddressed() ? getStagingObjectName() : userId + "/" + md5 + "/" + fileName;
         
-        // 3. 请求对象存储服务合并分片
+        // 3. 请求对象存储服务合并分片，内容类型和MD5在合并时一并写入对象元数据
+        Map<String, String> userMetadata = new HashMap<>();
+        userMetadata.put("file-md5", md5);
         boolean mergeResult = storageService.composeObject(
             bucketName, 
             sourceObjectNames, 
             mergedFilePath, 
-            fileEntity.getFileType()
+            fileType,
+            userMetadata
         );
         
         if (!mergeResult) {
             throw new Exception("合并文件分片失败");
         }
         
-        // 获取合并后的文件大小
-        // 这里简化处理，实际项目中应该通过对象存储API获取文件大小
-        long totalSize = 0;
+        // 4. 校验合并后文件的MD5，同时得到SHA-256和实际大小
+        HashingInputStream digest;
         try {
-            // 获取合并后文件的实际大小
-            totalSize = storageService.getObjectSize(bucketName, mergedFilePath);
+            digest = verifyMergedObject(mergedFilePath, md5);
         } catch (Exception e) {
-            // 忽略异常，使用默认大小
-            totalSize = 1024 * 1024; // 临时设置为1MB
+            // 分片内容有误，清理后由客户端重新上传
+            removeChunkObjects(sourceObjectNames);
+            uploadSessionService.removeSession(md5, userId);
+            throw e;
         }
         
-        fileEntity.setFileSize(totalSize);
-        fileEntity.setUsageCount(1);
-        fileEntity.setStatus(1);
-        fileEntity.setCreateTime(new Date());
-        fileEntity.setUpdateTime(new Date());
+        // 5. 保存文件元数据和用户文件记录
+        UserFile userFile = saveMergedFile(digest.getMd5(), digest.getSha256(), fileName, parentId, mergedFilePath, fileType, digest.getBytesRead(), userId);
         
-        fileMapper.insert(fileEntity);
+        // 6. 清理分片文件和上传会话
+        removeChunkObjects(sourceObjectNames);
+        uploadSessionService.removeSession(md5, userId);
+        
+        return userFile;
+    }
+    
+    private void removeChunkObjects(String[] chunkObjectNames) {
+        for (String chunkObjectName : chunkObjectNames) {
+            try {
+                storageService.removeFile(bucketName, chunkObjectName);
+            } catch (Exception e) {
+                // 忽略清理分片的异常
+            }
+        }
+    }
+    
+    /**
+     * 读取合并后的对象计算摘要，校验客户端提供的MD5，不一致时删除合并后的对象
+     * 分片可能乱序或经预签名URL直接上传到对象存储，无法在接收时计算整体摘要，因此合并后读取一次；
+     * 读取耗时与文件大小成正比，应在事务外调用
+     * @return 读取完毕的摘要流，可获取MD5、SHA-256和文件大小
+     */
+    private HashingInputStream verifyMergedObject(String objectName, String expectedMd5) throws Exception {
+        HashingInputStream hashingInputStream = new HashingInputStream(storageService.downloadFile(bucketName, objectName));
+        try (hashingInputStream) {
+            hashingInputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        
+        if (!hashingInputStream.getMd5().equalsIgnoreCase(expectedMd5)) {
+            log.warn("合并后文件MD5不一致, 期望: {}, 实际: {}", expectedMd5, hashingInputStream.getMd5());
+            storageService.removeFile(bucketName, objectName);
+            throw new Exception("文件MD5校验失败");
+        }
+        return hashingInputStream;
+    }
+    
+    /**
+     * 在一个短事务中保存合并后的文件元数据和用户文件记录，并更新用户空间、发布索引事件
+     */
+    private UserFile saveMergedFile(String md5, String sha256, String fileName, Long parentId, String objectName, String fileType, long totalSize, Long userId) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+                doSaveMergedFile(md5, sha256, fileName, parentId, objectName, fileType, totalSize, userId));
+    }
+    
+    private UserFile doSaveMergedFile(String md5, String sha256, String fileName, Long parentId, String objectName, String fileType, long totalSize, Long userId) {
+        File fileEntity = saveFileEntity(md5, sha256, fileName, fileType, objectName, totalSize);
         
-        // 4. 创建用户文件记录
+        // 创建用户文件记录
         UserFile userFile = new UserFile();
         userFile.setFileName(fileName);
         userFile.setFileSize(totalSize);
-        userFile.setFileType(fileEntity.getFileType());
+        userFile.setFileType(fileType);
         userFile.setIsDir(false);
         userFile.setDelFlag(0);
         userFile.setUserId(userId);
@@ -783,22 +1047,105 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
         
         userFileService.save(userFile);
         
-        // 5. 更新用户已使用空间
+        // 更新用户已使用空间
         userService.updateUsedSize(userId, totalSize);
         
-        // 6. 发布文件上传事件，用于索引
+        // 发布文件上传事件，用于索引
         eventPublisher.publishEvent(FileEvent.createUploadEvent(userFile));
         
-        // 7. 清理分片文件
-        for (String sourceObjectName : sourceObjectNames) {
-            try {
-                storageService.removeFile(bucketName, sourceObjectName);
-            } catch (Exception e) {
-                // 忽略清理分片的异常
+        return userFile;
+    }
+    
+    /**
+     * 保存文件元数据，相同内容的文件已存在时复用已有记录
+     * 以MD5查找已有文件，并用文件大小和SHA-256确认内容一致；命中时增加其使用次数并删除刚上传的重复对象
+     * @return 文件元数据
+     */
+    private File saveFileEntity(String md5, String sha256, String fileName, String fileType, String objectName, long fileSize) {
+        File existingFile = fileMapper.selectByMd5(md5);
+        if (existingFile != null
+                && existingFile.getFileSize() != null && existingFile.getFileSize() == fileSize
+                && (existingFile.getSha256() == null || existingFile.getSha256().equals(sha256))) {
+            log.info("文件内容已存在，复用文件: {}, MD5: {}", existingFile.getId(), md5);
+            fileMapper.increaseUsageCount(existingFile.getId());
+            if (!objectName.equals(existingFile.getObjectName())) {
+                try {
+                    storageService.removeFile(bucketName, objectName);
+                } catch (Exception e) {
+                    log.warn("删除重复对象失败: {}, {}", objectName, e.getMessage());
+                }
             }
+            return existingFile;
         }
         
-        return userFile;
+        if (isContentAddressed()) {
+            objectName = moveToContentAddress(objectName, sha256, md5, fileType);
+        }
+        
+        File fileEntity = new File();
+        fileEntity.setFileName(fileName);
+        fileEntity.setFileType(fileType);
+        fileEntity.setMd5(md5);
+        fileEntity.setSha256(sha256);
+        fileEntity.setObjectName(objectName);
+        fileEntity.setFileSize(fileSize);
+        fileEntity.setUsageCount(1);
+        fileEntity.setStatus(1);
+        fileEntity.setCreateTime(new Date());
+        fileEntity.setUpdateTime(new Date());
+        
+        fileMapper.insert(fileEntity);
+        return fileEntity;
+    }
+    
+    /**
+     * 是否按内容寻址命名对象
+     */
+    private boolean isContentAddressed() {
+        return "content".equalsIgnoreCase(storageLayout);
+    }
+    
+    /**
+     * 上传过程中使用的临时对象名称
+     */
+    private String getStagingObjectName() {
+        return STAGING_PREFIX + UUID.randomUUID();
+    }
+    
+    /**
+     * 按内容寻址的对象名称，以SHA-256前两级作为前缀分散对象：ab/cd/<sha256>
+     */
+    private String getContentObjectName(String sha256) {
+        return sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256;
+    }
+    
+    /**
+     * 将临时对象移动到内容地址，内容地址已存在时直接删除临时对象
+     * @return 内容地址
+     */
+    private String moveToContentAddress(String objectName, String sha256, String md5, String fileType) {
+        String contentObjectName = getContentObjectName(sha256);
+        // 内容地址的对象可能刚被彻底删除、仍在等待后台删除，先撤销登记再确认对象是否存在
+        deletionQueueService.cancel(bucketName, contentObjectName);
+        if (contentObjectName.equals(objectName)) {
+            return contentObjectName;
+        }
+        
+        if (!storageService.objectExists(bucketName, contentObjectName)) {
+            Map<String, String> userMetadata = new HashMap<>();
+            userMetadata.put("file-md5", md5);
+            userMetadata.put("file-sha256", sha256);
+            if (!storageService.composeObject(bucketName, new String[]{objectName}, contentObjectName, fileType, userMetadata)) {
+                throw new RuntimeException("保存文件失败: " + contentObjectName);
+            }
+        }
+        
+        try {
+            storageService.removeFile(bucketName, objectName);
+        } catch (Exception e) {
+            log.warn("删除临时对象失败: {}, {}", objectName, e.getMessage());
+        }
+        return contentObjectName;
     }
     
     /**
@@ -862,9 +1209,7 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
         
         try {
             // 1. 检查是否有相同MD5的文件
-            LambdaQueryWrapper<File> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(File::getMd5, md5);
-            File existingFile = fileMapper.selectOne(queryWrapper);
+            File existingFile = fileMapper.selectByMd5(md5);
             
             if (existingFile != null) {
                 // 文件已存在，可以实现秒传
@@ -895,51 +1240,14 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
                 return result;
             }
             
-            // 2. 检查是否有已上传的分片
-            String chunkFolderPath = userId + "/" + md5 + "/";
-            
-            System.out.println("检查文件MD5: " + md5 + ", 文件名: " + fileName);
-            
-            // 使用 listObjects 方法获取已上传的分片
-            List<String> existingObjects = storageService.listObjects(bucketName, chunkFolderPath);
-            Set<Integer> uploadedChunks = new HashSet<>();
-            int maxChunkIndex = -1;
-            
-            System.out.println("找到对象数量: " + existingObjects.size());
-            
-            // 解析对象名称，提取分片索引
-            for (String objectName : existingObjects) {
-                if (objectName.endsWith(".chunk")) {
-                    String chunkFileName = objectName.substring(objectName.lastIndexOf('/') + 1);
-                    String chunkIndexStr = chunkFileName.replace(".chunk", "");
-                    try {
-                        int chunkIndex = Integer.parseInt(chunkIndexStr);
-                        uploadedChunks.add(chunkIndex);
-                        if (chunkIndex > maxChunkIndex) {
-                            maxChunkIndex = chunkIndex;
-                        }
-                        System.out.println("找到分片: " + chunkIndex);
-                    } catch (NumberFormatException e) {
-                        // 忽略无法解析的文件名
-                        System.err.println("无法解析分片索引: " + chunkFileName);
-                    }
-                }
+            // 2. 原生分片上传模式：初始化（或复用）分片上传
+            if (isMultipartMode()) {
+                getOrCreateMultipartUpload(md5, userId, getFileType(fileName));
             }
             
-            System.out.println("已上传分片数量: " + uploadedChunks.size() + ", 最大分片索引: " + maxChunkIndex);
-            
-            // 检查是否有缺失的分片，使用objectExists方法进行二次验证
-            if (maxChunkIndex >= 0) {
-                for (int i = 0; i <= maxChunkIndex; i++) {
-                    if (!uploadedChunks.contains(i)) {
-                        String chunkName = chunkFolderPath + i + ".chunk";
-                        if (storageService.objectExists(bucketName, chunkName)) {
-                            uploadedChunks.add(i);
-                            System.out.println("分片存在但未被列出: " + i);
-                        }
-                    }
-                }
-            }
+            // 3. 从上传会话获取已上传的分片，并记录文件名和大小
+            Set<Integer> uploadedChunks = resolveUploadedChunks(md5, userId, null);
+            uploadSessionService.createSession(md5, userId, fileName, fileSize);
             
             result.put("uploadedChunks", new ArrayList<>(uploadedChunks));
             
@@ -949,6 +1257,67 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
         }
     }
 
+    @Override
+    public Map<String, Object> presignChunkUrls(String md5, String fileName, Long fileSize, Long chunkSize, Integer chunks, Long userId) {
+        checkChunkCount(fileSize, chunkSize, chunks);
+        List<Map<String, Object>> urls = new ArrayList<>();
+        
+        if (isMultipartMode()) {
+            // 原生分片上传模式：预签名UploadPart请求，分片直接写入最终对象
+            String objectName = getMultipartObjectName(md5, userId);
+            String uploadId = getOrCreateMultipartUpload(md5, userId, getFileType(fileName));
+            for (int i = 0; i < chunks; i++) {
+                Map<String, String> queryParams = new HashMap<>();
+                queryParams.put("uploadId", uploadId);
+                queryParams.put("partNumber", String.valueOf(i + 1));
+                urls.add(buildChunkUrl(i, storageService.getPresignedObjectUrl(bucketName, objectName, presignExpireSeconds, "PUT", queryParams)));
+            }
+        } else {
+            // 分片对象模式：预签名每个分片对象的PUT请求，路径与服务端中转上传时一致
+            for (int i = 0; i < chunks; i++) {
+                String objectName = getChunkObjectName(md5, i, userId);
+                urls.add(buildChunkUrl(i, storageService.getPresignedObjectUrl(bucketName, objectName, presignExpireSeconds, "PUT", null)));
+            }
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("urls", urls);
+        result.put("expires", presignExpireSeconds);
+        return result;
+    }
+    
+    /**
+     * 校验分片数，避免一次请求生成任意数量的预签名URL
+     */
+    private void checkChunkCount(Long fileSize, Long chunkSize, Integer chunks) {
+        if (fileSize == null || fileSize <= 0) {
+            throw new BusinessException("文件大小无效");
+        }
+        if (chunks == null || chunks <= 0 || chunks > MAX_UPLOAD_PARTS) {
+            throw new BusinessException("分片数必须在1到" + MAX_UPLOAD_PARTS + "之间");
+        }
+        if (chunkSize != null) {
+            if (chunkSize <= 0) {
+                throw new BusinessException("分片大小无效");
+            }
+            if (chunkSize < minChunkSize && chunks > 1) {
+                throw new BusinessException("分片大小不能小于" + minChunkSize + "字节");
+            }
+            if (chunks != (fileSize + chunkSize - 1) / chunkSize) {
+                throw new BusinessException("分片数与文件大小不一致");
+            }
+        } else if (chunks > (fileSize + minChunkSize - 1) / minChunkSize) {
+            throw new BusinessException("分片数超过文件大小允许的最大分片数");
+        }
+    }
+    
+    private Map<String, Object> buildChunkUrl(int chunkIndex, String url) {
+        Map<String, Object> chunkUrl = new HashMap<>();
+        chunkUrl.put("chunkIndex", chunkIndex);
+        chunkUrl.put("url", url);
+        return chunkUrl;
+    }
+
     /**
      * 批量删除文件（移入回收站）
      * @param fileIds 文件ID列表
@@ -975,4 +1344,113 @@ public class FileServiceImpl extends ServiceImpl<FileMapper, File> implements Fi
         
         return success;
     }
-} 
\ No newline at end of file
+    
+    @Override
+    public List<ZipEntryDTO> listZipEntries(List<Long> userFileIds, Long userId) {
+        // 先展开目录树，再按批次查询文件元数据，避免逐个文件查询
+        List<UserFile> userFiles = new ArrayList<>();
+        List<String> entryNames = new ArrayList<>();
+        Set<String> rootNames = new HashSet<>();
+        for (Long userFileId : userFileIds) {
+            UserFile userFile = userFileService.getById(userFileId);
+            if (userFile == null || userFile.getDelFlag() != 0 || !userFile.getUserId().equals(userId)) {
+                throw new BusinessException("文件不存在或无权限访问: " + userFileId);
+            }
+            collectZipEntries(userFile, uniqueEntryName(userFile.getFileName(), rootNames), userFiles, entryNames);
+        }
+
+        List<Long> fileIds = new ArrayList<>();
+        for (UserFile userFile : userFiles) {
+            if (!Boolean.TRUE.equals(userFile.getIsDir())) {
+                fileIds.add(userFile.getFileId());
+            }
+        }
+        Map<Long, File> files = new HashMap<>();
+        for (int i = 0; i < fileIds.size(); i += QUERY_BATCH_SIZE) {
+            List<Long> batch = fileIds.subList(i, Math.min(i + QUERY_BATCH_SIZE, fileIds.size()));
+            for (File file : fileMapper.selectBatchIds(batch)) {
+                files.put(file.getId(), file);
+            }
+        }
+
+        List<ZipEntryDTO> entries = new ArrayList<>(userFiles.size());
+        for (int i = 0; i < userFiles.size(); i++) {
+            UserFile userFile = userFiles.get(i);
+            ZipEntryDTO entry = new ZipEntryDTO();
+            entry.setEntryName(entryNames.get(i));
+            entry.setLastModified(userFile.getUpdateTime() != null ? userFile.getUpdateTime().getTime() : null);
+            if (!Boolean.TRUE.equals(userFile.getIsDir())) {
+                File file = files.get(userFile.getFileId());
+                if (file == null) {
+                    log.warn("打包下载时文件元数据不存在，已跳过: userFileId={}", userFile.getId());
+                    continue;
+                }
+                entry.setObjectName(file.getObjectName());
+                entry.setFileType(file.getFileType());
+                entry.setFileSize(file.getFileSize());
+                entry.setMd5(file.getMd5());
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * 先序遍历目录树，文件夹条目名以/结尾；整个子树按祖先路径一次查询后在内存中按父文件夹分组
+     */
+    private void collectZipEntries(UserFile userFile, String entryName, List<UserFile> userFiles, List<String> entryNames) {
+        if (!Boolean.TRUE.equals(userFile.getIsDir())) {
+            userFiles.add(userFile);
+            entryNames.add(entryName);
+            return;
+        }
+
+        Map<Long, List<UserFile>> children = new HashMap<>();
+        for (UserFile descendant : userFileService.getDescendants(userFile)) {
+            children.computeIfAbsent(descendant.getParentId(), k -> new ArrayList<>()).add(descendant);
+        }
+        collectZipEntries(userFile, entryName, children, userFiles, entryNames);
+    }
+
+    private void collectZipEntries(UserFile folder, String entryName, Map<Long, List<UserFile>> children,
+                                   List<UserFile> userFiles, List<String> entryNames) {
+        userFiles.add(folder);
+        entryNames.add(entryName + "/");
+        for (UserFile child : children.getOrDefault(folder.getId(), Collections.emptyList())) {
+            String childEntryName = entryName + "/" + sanitizeEntryName(child.getFileName());
+            if (Boolean.TRUE.equals(child.getIsDir())) {
+                collectZipEntries(child, childEntryName, children, userFiles, entryNames);
+            } else {
+                userFiles.add(child);
+                entryNames.add(childEntryName);
+            }
+        }
+    }
+
+    /**
+     * 选中的文件可能来自不同文件夹，同名时追加序号
+     */
+    private String uniqueEntryName(String fileName, Set<String> usedNames) {
+        String name = sanitizeEntryName(fileName);
+        if (usedNames.add(name)) {
+            return name;
+        }
+
+        int dotIndex = name.lastIndexOf('.');
+        String baseName = dotIndex > 0 ? name.substring(0, dotIndex) : name;
+        String extension = dotIndex > 0 ? name.substring(dotIndex) : "";
+        for (int i = 1; ; i++) {
+            String candidate = baseName + " (" + i + ")" + extension;
+            if (usedNames.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * 文件名中的路径分隔符会改变解压后的目录结构，替换为下划线
+     */
+    private String sanitizeEntryName(String fileName) {
+        return fileName.replace('/', '_').replace('\\', '_');
+    }
+}
@@ -0,0 +1,540 @@
+package com.clouddrive.service.impl;
+
+import com.clouddrive.exception.BusinessException;
+import com.clouddrive.model.dto.MultipartUploadDTO;
+import com.clouddrive.model.dto.StorageObjectDTO;
+import com.clouddrive.service.StorageService;
+import com.clouddrive.util.FileRegionInputStream;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 本地文件系统存储服务实现类
+ * 存储桶对应根目录下的子目录，对象名称中的/对应子目录，对象名称本身已按用户和MD5或按SHA-256前缀分散到多级目录。
+ * 写入先落到同一文件系统的临时文件，完成后原子重命名，读取方不会看到写了一半的对象；
+ * 合并对象时通过FileChannel.transferTo拼接，小文件通过内存映射读取。
+ * 单节点部署或基准测试时通过 localfs profile 启用，替代MinIO存储服务。
+ */
+@Service
+@Profile("localfs")
+@Qualifier("objectStore")
+public class LocalFsStorageServiceImpl implements StorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalFsStorageServiceImpl.class);
+
+    /**
+     * 临时文件目录，位于根目录下，与对象在同一文件系统，重命名是原子的
+     */
+    private static final String TMP_DIR = ".tmp";
+
+    /**
+     * 原生分片上传的分片目录
+     */
+    private static final String MULTIPART_DIR = ".multipart";
+
+    /**
+     * 分片上传目录旁记录存储桶和最终对象名称的文件后缀
+     */
+    private static final String MULTIPART_NAME_SUFFIX = ".name";
+
+    @Value("${storage.local.root:./data/storage}")
+    private String rootDir;
+
+    /**
+     * 不超过该大小（字节）的读取使用内存映射
+     */
+    @Value("${storage.local.mmap-max-size:1048576}")
+    private long mmapMaxSize;
+
+    /**
+     * 上传接口返回的文件URL前缀，对象名称拼接在其后；公开前缀下的对象由LocalFsResourceConfig通过该路径提供
+     */
+    @Value("${storage.local.url-prefix:/file/storage/}")
+    private String urlPrefix;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(rootDir).toAbsolutePath().normalize();
+        Files.createDirectories(root.resolve(TMP_DIR));
+        Files.createDirectories(root.resolve(MULTIPART_DIR));
+        // 清理上次未完成的写入
+        try (Stream<Path> files = Files.list(root.resolve(TMP_DIR))) {
+            files.forEach(this::deleteQuietly);
+        }
+        log.info("本地文件系统存储已启用: {}", root);
+    }
+
+    @Override
+    public boolean createBucket(String bucketName) {
+        try {
+            Files.createDirectories(bucketPath(bucketName));
+            return true;
+        } catch (IOException e) {
+            throw new BusinessException("创建存储桶失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean bucketExists(String bucketName) {
+        return Files.isDirectory(bucketPath(bucketName));
+    }
+
+    @Override
+    public String uploadFile(String bucketName, String objectName, MultipartFile file, String contentType) {
+        try {
+            return uploadFile(bucketName, objectName, file.getInputStream(), file.getSize(), contentType);
+        } catch (IOException e) {
+            throw new BusinessException("上传文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String uploadFile(String bucketName, String objectName, InputStream inputStream, long size, String contentType) {
+        Path tmp = newTempFile();
+        try {
+            Files.copy(inputStream, tmp, StandardCopyOption.REPLACE_EXISTING);
+            moveIntoPlace(tmp, objectPath(bucketName, objectName));
+            return urlPrefix + objectName;
+        } catch (IOException e) {
+            throw new BusinessException("上传文件失败: " + e.getMessage());
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName) {
+        return downloadFile(bucketName, objectName, 0, -1);
+    }
+
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName, String contentMd5, long offset, long length) {
+        return length < 0 ? downloadFile(bucketName, objectName) : downloadFile(bucketName, objectName, offset, length);
+    }
+
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName, long offset, long length) {
+        Path path = objectPath(bucketName, objectName);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = Math.min(offset, size);
+            long count = length < 0 ? size - start : Math.min(length, size - start);
+            if (count <= mmapMaxSize) {
+                // 映射在通道关闭后仍然有效
+                return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, count));
+            }
+        } catch (NoSuchFileException e) {
+            throw new BusinessException("下载文件失败: 对象不存在 " + objectName);
+        } catch (IOException e) {
+            throw new BusinessException("下载文件失败: " + e.getMessage());
+        }
+
+        try {
+            return new FileRegionInputStream(path, offset, length);
+        } catch (IOException e) {
+            throw new BusinessException("下载文件失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 本地存储没有可供客户端直接访问的地址，调用方需改为经由应用转发
+     */
+    @Override
+    public String getPresignedObjectUrl(String bucketName, String objectName, int expires) {
+        throw new BusinessException("本地文件系统存储不支持预签名URL");
+    }
+
+    @Override
+    public String getPresignedObjectUrl(String bucketName, String objectName, int expires, String method, Map<String, String> queryParams) {
+        throw new BusinessException("本地文件系统存储不支持预签名URL");
+    }
+
+    @Override
+    public boolean removeFile(String bucketName, String objectName) {
+        Path path = objectPath(bucketName, objectName);
+        try {
+            Files.deleteIfExists(path);
+            removeEmptyParents(path.getParent(), bucketPath(bucketName));
+            return true;
+        } catch (IOException e) {
+            throw new BusinessException("删除文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, String> removeFiles(String bucketName, List<String> objectNames) {
+        Map<String, String> failures = new HashMap<>();
+        for (String objectName : objectNames) {
+            try {
+                removeFile(bucketName, objectName);
+            } catch (BusinessException e) {
+                failures.put(objectName, e.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType) {
+        return composeObject(bucketName, sourceObjectNames, targetObjectName, contentType, null);
+    }
+
+    /**
+     * 按顺序拼接源对象，内容类型和用户元数据不单独保存
+     */
+    @Override
+    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType, Map<String, String> userMetadata) {
+        List<Path> sources = new ArrayList<>();
+        for (String sourceObjectName : sourceObjectNames) {
+            sources.add(objectPath(bucketName, sourceObjectName));
+        }
+        try {
+            concatenate(sources, objectPath(bucketName, targetObjectName));
+            return true;
+        } catch (IOException e) {
+            throw new BusinessException("合并文件分片失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getObjectSize(String bucketName, String objectName) {
+        try {
+            return Files.size(objectPath(bucketName, objectName));
+        } catch (IOException e) {
+            throw new BusinessException("获取对象大小失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean objectExists(String bucketName, String objectName) {
+        return Files.isRegularFile(objectPath(bucketName, objectName));
+    }
+
+    @Override
+    public List<String> listObjects(String bucketName, String prefix) {
+        Path bucket = bucketPath(bucketName);
+        // 只遍历前缀中最后一个/之前的目录
+        int slashIndex = prefix.lastIndexOf('/');
+        Path dir = slashIndex >= 0 ? objectPath(bucketName, prefix.substring(0, slashIndex)) : bucket;
+        List<String> objectNames = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return objectNames;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.filter(Files::isRegularFile)
+                    .map(path -> bucket.relativize(path).toString().replace('\\', '/'))
+                    .filter(name -> name.startsWith(prefix))
+                    .sorted()
+                    .forEach(objectNames::add);
+            return objectNames;
+        } catch (IOException e) {
+            throw new BusinessException("列出对象失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 边遍历目录边处理，内存中只保存当前路径上各级目录的句柄；
+     * 处理方法可以删除对象，删除后清理掉的空目录在遍历到时跳过
+     */
+    @Override
+    public void walkObjects(String bucketName, String prefix, Consumer<StorageObjectDTO> visitor) {
+        Path bucket = bucketPath(bucketName);
+        int slashIndex = prefix.lastIndexOf('/');
+        Path dir = slashIndex >= 0 ? objectPath(bucketName, prefix.substring(0, slashIndex)) : bucket;
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String objectName = bucket.relativize(path).toString().replace('\\', '/');
+                    if (objectName.startsWith(prefix)) {
+                        StorageObjectDTO object = new StorageObjectDTO();
+                        object.setObjectName(objectName);
+                        object.setSize(attrs.size());
+                        object.setLastModified(new Date(attrs.lastModifiedTime().toMillis()));
+                        visitor.accept(object);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
+                    if (e instanceof NoSuchFileException) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw e;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path path, IOException e) throws IOException {
+                    if (e != null && !(e instanceof NoSuchFileException)) {
+                        throw e;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new BusinessException("列出对象失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String initMultipartUpload(String bucketName, String objectName, String contentType) {
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        try {
+            Files.createDirectories(root.resolve(MULTIPART_DIR).resolve(uploadId));
+            // 记录存储桶和最终对象名称，清理未完成的分片上传时按对象名称判断所属的上传会话
+            Files.writeString(multipartNamePath(uploadId), bucketName + "\n" + objectName, StandardCharsets.UTF_8);
+            return uploadId;
+        } catch (IOException e) {
+            throw new BusinessException("初始化分片上传失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber, InputStream inputStream, long size) {
+        Path tmp = newTempFile();
+        try {
+            Files.copy(inputStream, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, multipartPath(uploadId).resolve(String.valueOf(partNumber)),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return uploadId + "-" + partNumber;
+        } catch (IOException e) {
+            throw new BusinessException("上传分片失败: " + e.getMessage());
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    @Override
+    public List<Integer> listUploadedParts(String bucketName, String objectName, String uploadId) {
+        Path dir = multipartPath(uploadId);
+        List<Integer> partNumbers = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return partNumbers;
+        }
+        try (Stream<Path> parts = Files.list(dir)) {
+            parts.map(path -> Integer.parseInt(path.getFileName().toString()))
+                    .sorted()
+                    .forEach(partNumbers::add);
+            return partNumbers;
+        } catch (IOException e) {
+            throw new BusinessException("列出已上传分片失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean completeMultipartUpload(String bucketName, String objectName, String uploadId) {
+        Path dir = multipartPath(uploadId);
+        List<Path> parts = new ArrayList<>();
+        for (Integer partNumber : listUploadedParts(bucketName, objectName, uploadId)) {
+            parts.add(dir.resolve(String.valueOf(partNumber)));
+        }
+        try {
+            concatenate(parts, objectPath(bucketName, objectName));
+        } catch (IOException e) {
+            throw new BusinessException("完成分片上传失败: " + e.getMessage());
+        }
+        return abortMultipartUpload(bucketName, objectName, uploadId);
+    }
+
+    @Override
+    public boolean abortMultipartUpload(String bucketName, String objectName, String uploadId) {
+        Path dir = multipartPath(uploadId);
+        if (!Files.isDirectory(dir)) {
+            deleteQuietly(multipartNamePath(uploadId));
+            return true;
+        }
+        try (Stream<Path> parts = Files.list(dir)) {
+            parts.forEach(this::deleteQuietly);
+            Files.deleteIfExists(dir);
+            deleteQuietly(multipartNamePath(uploadId));
+            return true;
+        } catch (IOException e) {
+            throw new BusinessException("取消分片上传失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void walkMultipartUploads(String bucketName, String prefix, Consumer<MultipartUploadDTO> visitor) {
+        try (DirectoryStream<Path> uploads = Files.newDirectoryStream(root.resolve(MULTIPART_DIR), Files::isDirectory)) {
+            for (Path dir : uploads) {
+                String uploadId = dir.getFileName().toString();
+                String[] names;
+                BasicFileAttributes attrs;
+                try {
+                    names = Files.readString(multipartNamePath(uploadId), StandardCharsets.UTF_8).split("\n", 2);
+                    attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // 已完成或已取消
+                    continue;
+                }
+                if (names.length < 2 || !names[0].equals(bucketName) || !names[1].startsWith(prefix)) {
+                    continue;
+                }
+                MultipartUploadDTO upload = new MultipartUploadDTO();
+                upload.setObjectName(names[1]);
+                upload.setUploadId(uploadId);
+                upload.setInitiated(new Date(attrs.creationTime().toMillis()));
+                visitor.accept(upload);
+            }
+        } catch (IOException e) {
+            throw new BusinessException("列出分片上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 通过FileChannel.transferTo按顺序拼接文件到临时文件，完成后原子重命名为目标文件
+     */
+    private void concatenate(List<Path> sources, Path target) throws IOException {
+        Path tmp = newTempFile();
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Path source : sources) {
+                    try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                        long position = 0;
+                        long size = in.size();
+                        while (position < size) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+            }
+            moveIntoPlace(tmp, target);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    private void moveIntoPlace(Path tmp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path newTempFile() {
+        return root.resolve(TMP_DIR).resolve(UUID.randomUUID().toString());
+    }
+
+    private Path bucketPath(String bucketName) {
+        return resolveInside(root, bucketName);
+    }
+
+    private Path objectPath(String bucketName, String objectName) {
+        return resolveInside(bucketPath(bucketName), objectName);
+    }
+
+    private Path multipartPath(String uploadId) {
+        return resolveInside(root.resolve(MULTIPART_DIR), uploadId);
+    }
+
+    private Path multipartNamePath(String uploadId) {
+        return resolveInside(root.resolve(MULTIPART_DIR), uploadId + MULTIPART_NAME_SUFFIX);
+    }
+
+    /**
+     * 解析子路径，拒绝通过..等方式访问目录之外的文件
+     */
+    private Path resolveInside(Path parent, String name) {
+        Path path = parent.resolve(name).normalize();
+        if (!path.startsWith(parent) || path.equals(parent) && !name.isEmpty()) {
+            throw new BusinessException("无效的对象名称: " + name);
+        }
+        return path;
+    }
+
+    /**
+     * 删除对象后清理空的上级目录，保留存储桶目录本身
+     */
+    private void removeEmptyParents(Path dir, Path bucket) {
+        while (dir != null && dir.startsWith(bucket) && !dir.equals(bucket)) {
+            try {
+                Files.deleteIfExists(dir);
+            } catch (DirectoryNotEmptyException e) {
+                return;
+            } catch (IOException e) {
+                log.debug("清理空目录失败: {}, {}", dir, e.getMessage());
+                return;
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}, {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取内存映射区域的输入流
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package com.clouddrive.service.impl;
 
+import com.clouddrive.config.MinioBucketRegistry;
 import com.clouddrive.config.MinioConfig;
+import com.clouddrive.config.MultipartMinioClient;
 import com.clouddrive.exception.BusinessException;
+import com.clouddrive.model.dto.MultipartUploadDTO;
+import com.clouddrive.model.dto.StorageObjectDTO;
 import com.clouddrive.service.StorageService;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
 import io.minio.*;
 import io.minio.errors.*;
 import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import io.minio.messages.ListMultipartUploadsResult;
+import io.minio.messages.Part;
+import io.minio.messages.Upload;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -17,21 +30,50 @@ import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * MinIO存储服务实现类
+ * 未启用 localfs profile 时作为底层对象存储
  */
 @Service
+@Profile("!localfs")
+@Qualifier("objectStore")
 public class MinioStorageServiceImpl implements StorageService {
     
+    /**
+     * 服务端单次合并支持的最大源对象数量
+     */
+    private static final int MAX_COMPOSE_SOURCES = 10000;
+    
+    /**
+     * 服务端单次批量删除支持的最大对象数量
+     */
+    private static final int MAX_DELETE_OBJECTS = 1000;
+    
+    /**
+     * 大小未知的流式上传使用的分片大小，单次上传的内存占用不超过该值
+     */
+    private static final long STREAM_PART_SIZE = 10L * 1024 * 1024;
+    
     @Autowired
     private MinioClient minioClient;
     
     @Autowired
     private MinioConfig minioConfig;
     
+    @Autowired
+    private MultipartMinioClient multipartMinioClient;
+    
+    @Autowired
+    private MinioBucketRegistry bucketRegistry;
+    
     /**
      * 初始化存储桶，确保应用启动时已正确配置
      */
@@ -56,29 +98,17 @@ public class MinioStorageServiceImpl implements StorageService {
     
     @Override
     public boolean createBucket(String bucketName) {
-        try {
-            boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-            if (!found) {
-                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
-                
-                // 设置存储桶策略，允许公开访问
-                setBucketPolicy(bucketName);
-                System.out.println("存储桶 " + bucketName + " 创建成功并已设置公开访问策略");
-            } else {
-                // 如果存储桶已存在，也确保策略正确设置
-                setBucketPolicy(bucketName);
-                System.out.println("存储桶 " + bucketName + " 已存在，已更新访问策略");
-            }
-            return true;
-        } catch (Exception e) {
-            System.err.println("创建或更新存储桶失败: " + e.getMessage());
-            e.printStackTrace();
-            throw new BusinessException("创建存储桶失败: " + e.getMessage());
-        }
+        // 创建存储桶（已存在时跳过）并确保策略正确设置，结果登记后上传时不再检查
+        boolean created = bucketRegistry.validate(bucketName);
+        System.out.println("存储桶 " + bucketName + (created ? " 创建成功" : " 已存在") + "，已设置公开访问策略");
+        return true;
     }
     
     @Override
     public boolean bucketExists(String bucketName) {
+        if (bucketRegistry.isReady(bucketName)) {
+            return true;
+        }
         try {
             return minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
         } catch (Exception e) {
@@ -99,25 +129,25 @@ public class MinioStorageServiceImpl implements StorageService {
     @Override
     public String uploadFile(String bucketName, String objectName, InputStream inputStream, long size, String contentType) {
         try {
-            // 确保存储桶存在
-            boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-            if (!found) {
-                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
-            }
+            // 确保存储桶存在，已校验过的存储桶不访问对象存储
+            bucketRegistry.ensureBucket(bucketName);
             
             // 上传文件
             minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucketName)
                             .object(objectName)
-                            .stream(inputStream, size, -1)
+                            .stream(inputStream, size, size < 0 ? STREAM_PART_SIZE : -1)
                             .contentType(contentType)
                             .build()
             );
             
             // 获取文件URL
             return getFileUrl(bucketName, objectName);
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
+            bucketRegistry.invalidateOnError(bucketName, e);
             throw new BusinessException("上传文件失败: " + e.getMessage());
         }
     }
@@ -136,6 +166,27 @@ public class MinioStorageServiceImpl implements StorageService {
         }
     }
     
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName, String contentMd5, long offset, long length) {
+        return length < 0 ? downloadFile(bucketName, objectName) : downloadFile(bucketName, objectName, offset, length);
+    }
+    
+    @Override
+    public InputStream downloadFile(String bucketName, String objectName, long offset, long length) {
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .offset(offset)
+                            .length(length)
+                            .build()
+            );
+        } catch (Exception e) {
+            throw new BusinessException("下载文件失败: " + e.getMessage());
+        }
+    }
+    
     @Override
     public String getPresignedObjectUrl(String bucketName, String objectName, int expires) {
         try {
@@ -152,6 +203,23 @@ public class MinioStorageServiceImpl implements StorageService {
         }
     }
     
+    @Override
+    public String getPresignedObjectUrl(String bucketName, String objectName, int expires, String method, Map<String, String> queryParams) {
+        try {
+            GetPresignedObjectUrlArgs.Builder builder = GetPresignedObjectUrlArgs.builder()
+                    .method(Method.valueOf(method.toUpperCase()))
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .expiry(expires, TimeUnit.SECONDS);
+            if (queryParams != null && !queryParams.isEmpty()) {
+                builder.extraQueryParams(queryParams);
+            }
+            return minioClient.getPresignedObjectUrl(builder.build());
+        } catch (Exception e) {
+            throw new BusinessException("获取文件URL失败: " + e.getMessage());
+        }
+    }
+    
     @Override
     public boolean removeFile(String bucketName, String objectName) {
         try {
@@ -168,66 +236,120 @@ public class MinioStorageServiceImpl implements StorageService {
     }
     
     @Override
-    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType) {
-        try {
-            // 创建源对象列表
-            List<ComposeSource> sources = new ArrayList<>();
-            for (String sourceObjectName : sourceObjectNames) {
-                sources.add(
-                    ComposeSource.builder()
-                        .bucket(bucketName)
-                        .object(sourceObjectName)
-                        .build()
+    public Map<String, String> removeFiles(String bucketName, List<String> objectNames) {
+        Map<String, String> failures = new HashMap<>();
+        for (int i = 0; i < objectNames.size(); i += MAX_DELETE_OBJECTS) {
+            List<String> batch = objectNames.subList(i, Math.min(i + MAX_DELETE_OBJECTS, objectNames.size()));
+            List<DeleteObject> objects = new ArrayList<>(batch.size());
+            for (String objectName : batch) {
+                objects.add(new DeleteObject(objectName));
+            }
+            try {
+                // 结果是惰性的，遍历时才发送请求，只返回删除失败的对象
+                Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                        RemoveObjectsArgs.builder()
+                                .bucket(bucketName)
+                                .objects(objects)
+                                .build()
                 );
+                for (Result<DeleteError> result : results) {
+                    DeleteError error = result.get();
+                    failures.put(error.objectName(), error.code() + ": " + error.message());
+                }
+            } catch (Exception e) {
+                // 整批请求失败，批内对象均视为删除失败
+                for (String objectName : batch) {
+                    failures.putIfAbsent(objectName, e.getMessage());
+                }
             }
+        }
+        return failures;
+    }
+    
+    @Override
+    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType) {
+        return composeObject(bucketName, sourceObjectNames, targetObjectName, contentType, null);
+    }
+    
+    @Override
+    public boolean composeObject(String bucketName, String[] sourceObjectNames, String targetObjectName, String contentType, Map<String, String> userMetadata) {
+        List<String> intermediateObjects = new ArrayList<>();
+        try {
+            bucketRegistry.ensureBucket(bucketName);
             
-            // 执行合并操作
-            minioClient.composeObject(
-                ComposeObjectArgs.builder()
-                    .bucket(bucketName)
-                    .object(targetObjectName)
-                    .sources(sources)
-                    .build()
-            );
-            
-            // 获取合并后的对象信息
-            StatObjectResponse stat = minioClient.statObject(
-                StatObjectArgs.builder()
-                    .bucket(bucketName)
-                    .object(targetObjectName)
-                    .build()
-            );
-            
-            // 如果需要设置内容类型，则重新上传对象元数据
-            if (contentType != null && !contentType.isEmpty()) {
-                // 获取对象数据
-                InputStream is = minioClient.getObject(
-                    GetObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(targetObjectName)
-                        .build()
-                );
-                
-                // 重新上传对象，设置正确的内容类型
-                minioClient.putObject(
-                    PutObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(targetObjectName)
-                        .stream(is, stat.size(), -1)
-                        .contentType(contentType)
-                        .build()
-                );
-                
-                // 关闭输入流
-                is.close();
+            // 源对象数量超过服务端单次合并上限时，先分组合并为中间对象，逐层构建合并树
+            List<String> currentLevel = new ArrayList<>(Arrays.asList(sourceObjectNames));
+            int level = 0;
+            while (currentLevel.size() > MAX_COMPOSE_SOURCES) {
+                List<String> nextLevel = new ArrayList<>();
+                for (int i = 0; i < currentLevel.size(); i += MAX_COMPOSE_SOURCES) {
+                    List<String> group = currentLevel.subList(i, Math.min(i + MAX_COMPOSE_SOURCES, currentLevel.size()));
+                    String intermediateObjectName = targetObjectName + ".compose-" + level + "-" + (i / MAX_COMPOSE_SOURCES);
+                    doCompose(bucketName, group, intermediateObjectName, null, null);
+                    intermediateObjects.add(intermediateObjectName);
+                    nextLevel.add(intermediateObjectName);
+                }
+                currentLevel = nextLevel;
+                level++;
             }
             
+            // 最终合并时直接设置内容类型和用户元数据，无需再下载并重新上传对象
+            doCompose(bucketName, currentLevel, targetObjectName, contentType, userMetadata);
             return true;
         } catch (Exception e) {
+            bucketRegistry.invalidateOnError(bucketName, e);
             throw new BusinessException("合并文件分片失败: " + e.getMessage());
+        } finally {
+            // 清理中间对象
+            for (String intermediateObject : intermediateObjects) {
+                try {
+                    removeFile(bucketName, intermediateObject);
+                } catch (Exception e) {
+                    System.err.println("清理中间合并对象失败: " + intermediateObject + ", " + e.getMessage());
+                }
+            }
         }
     }
     
+    /**
+     * 执行一次服务端合并
+     * @param bucketName 存储桶名称
+     * @param sourceObjectNames 源对象名称列表
+     * @param targetObjectName 目标对象名称
+     * @param contentType 内容类型，可为null
+     * @param userMetadata 用户元数据，可为null
+     */
+    private void doCompose(String bucketName, List<String> sourceObjectNames, String targetObjectName,
+                           String contentType, Map<String, String> userMetadata) throws Exception {
+        // 创建源对象列表
+        List<ComposeSource> sources = new ArrayList<>();
+        for (String sourceObjectName : sourceObjectNames) {
+            sources.add(
+                ComposeSource.builder()
+                    .bucket(bucketName)
+                    .object(sourceObjectName)
+                    .build()
+            );
+        }
+        
+        ComposeObjectArgs.Builder builder = ComposeObjectArgs.builder()
+                .bucket(bucketName)
+                .object(targetObjectName)
+                .sources(sources);
+        
+        if (contentType != null && !contentType.isEmpty()) {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", contentType);
+            builder.headers(headers);
+        }
+        if (userMetadata != null && !userMetadata.isEmpty()) {
+            builder.userMetadata(userMetadata);
+        }
+        
+        // 执行合并操作
+        minioClient.composeObject(builder.build());
+    }
+    
     @Override
     public long getObjectSize(String bucketName, String objectName) {
         try {
@@ -310,6 +432,140 @@ public class MinioStorageServiceImpl implements StorageService {
         }
     }
     
+    @Override
+    public void walkObjects(String bucketName, String prefix, Consumer<StorageObjectDTO> visitor) {
+        // 结果按页惰性获取，每页最多1000个对象
+        Iterable<Result<Item>> results = minioClient.listObjects(
+            ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .recursive(true)
+                .build()
+        );
+        
+        for (Result<Item> result : results) {
+            Item item;
+            try {
+                item = result.get();
+            } catch (Exception e) {
+                throw new BusinessException("列出对象失败: " + e.getMessage());
+            }
+            if (item.isDir()) {
+                continue;
+            }
+            StorageObjectDTO object = new StorageObjectDTO();
+            object.setObjectName(item.objectName());
+            object.setSize(item.size());
+            object.setLastModified(item.lastModified() != null ? Date.from(item.lastModified().toInstant()) : null);
+            visitor.accept(object);
+        }
+    }
+    
+    @Override
+    public String initMultipartUpload(String bucketName, String objectName, String contentType) {
+        try {
+            bucketRegistry.ensureBucket(bucketName);
+            Multimap<String, String> headers = HashMultimap.create();
+            if (contentType != null && !contentType.isEmpty()) {
+                headers.put("Content-Type", contentType);
+            }
+            return multipartMinioClient.initMultipartUpload(bucketName, objectName, headers);
+        } catch (Exception e) {
+            bucketRegistry.invalidateOnError(bucketName, e);
+            throw new BusinessException("初始化分片上传失败: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber, InputStream inputStream, long size) {
+        try {
+            // 单个分片大小受前端分片大小限制，直接读入内存后上传
+            byte[] data = inputStream.readNBytes((int) size);
+            return multipartMinioClient.uploadPart(bucketName, objectName, uploadId, partNumber, data);
+        } catch (Exception e) {
+            throw new BusinessException("上传分片失败: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public List<Integer> listUploadedParts(String bucketName, String objectName, String uploadId) {
+        try {
+            List<Integer> partNumbers = new ArrayList<>();
+            Integer partNumberMarker = null;
+            while (true) {
+                ListPartsResponse response = multipartMinioClient.listParts(bucketName, objectName, uploadId, 1000, partNumberMarker);
+                for (Part part : response.result().partList()) {
+                    partNumbers.add(part.partNumber());
+                }
+                if (!response.result().isTruncated()) {
+                    break;
+                }
+                partNumberMarker = response.result().nextPartNumberMarker();
+            }
+            return partNumbers;
+        } catch (Exception e) {
+            throw new BusinessException("列出已上传分片失败: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public boolean completeMultipartUpload(String bucketName, String objectName, String uploadId) {
+        try {
+            // 按分片序号从服务端获取分片及ETag，避免依赖客户端上报
+            List<Part> parts = new ArrayList<>();
+            Integer partNumberMarker = null;
+            while (true) {
+                ListPartsResponse response = multipartMinioClient.listParts(bucketName, objectName, uploadId, 1000, partNumberMarker);
+                for (Part part : response.result().partList()) {
+                    parts.add(new Part(part.partNumber(), part.etag()));
+                }
+                if (!response.result().isTruncated()) {
+                    break;
+                }
+                partNumberMarker = response.result().nextPartNumberMarker();
+            }
+            
+            multipartMinioClient.completeMultipartUpload(bucketName, objectName, uploadId, parts.toArray(new Part[0]));
+            return true;
+        } catch (Exception e) {
+            throw new BusinessException("完成分片上传失败: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public boolean abortMultipartUpload(String bucketName, String objectName, String uploadId) {
+        try {
+            multipartMinioClient.abortMultipartUpload(bucketName, objectName, uploadId);
+            return true;
+        } catch (Exception e) {
+            throw new BusinessException("取消分片上传失败: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public void walkMultipartUploads(String bucketName, String prefix, Consumer<MultipartUploadDTO> visitor) {
+        // 按页获取，每页最多1000个分片上传
+        String keyMarker = null;
+        String uploadIdMarker = null;
+        ListMultipartUploadsResult result;
+        do {
+            try {
+                result = multipartMinioClient.listMultipartUploads(bucketName, prefix, keyMarker, uploadIdMarker, 1000);
+            } catch (Exception e) {
+                throw new BusinessException("列出分片上传失败: " + e.getMessage());
+            }
+            for (Upload upload : result.uploads()) {
+                MultipartUploadDTO multipartUpload = new MultipartUploadDTO();
+                multipartUpload.setObjectName(upload.objectName());
+                multipartUpload.setUploadId(upload.uploadId());
+                multipartUpload.setInitiated(upload.initiated() != null ? Date.from(upload.initiated().toInstant()) : null);
+                visitor.accept(multipartUpload);
+            }
+            keyMarker = result.nextKeyMarker();
+            uploadIdMarker = result.nextUploadIdMarker();
+        } while (result.isTruncated());
+    }
+    
     /**
      * 获取文件URL
      * @param bucketName 存储桶名称
@@ -320,17 +576,7 @@ public class MinioStorageServiceImpl implements StorageService {
         try {
             // 判断是否为头像文件
             if (objectName.startsWith("avatars/")) {
-                // 检查桶是否存在
-                boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-                if (!found) {
-                    minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
-                    setBucketPolicy(bucketName);
-                } else {
-                    // 确保桶策略正确设置
-                    setBucketPolicy(bucketName);
-                }
-                
-                // 对于头像文件，返回直接访问的URL（不带过期时间）
+                // 对于头像文件，返回直接访问的URL（不带过期时间），公开读取策略已在校验存储桶时设置
                 return minioConfig.getEndpoint() + "/" + bucketName + "/" + objectName;
             } else {
                 // 对于其他文件，返回带有过期时间的URL
@@ -347,40 +593,4 @@ public class MinioStorageServiceImpl implements StorageService {
             throw new BusinessException("获取文件URL失败: " + e.getMessage());
         }
     }
-    
-    /**
-     * 设置存储桶策略，允许公开读取
-     * @param bucketName 存储桶名称
-     */
-    private void setBucketPolicy(String bucketName) {
-        try {
-            System.out.println("正在设置存储桶策略，允许公开读取avatars目录下的文件...");
-            
-            // 创建一个策略，允许公开读取avatars目录下的文件
-            String policy = "{\n" +
-                    "    \"Version\": \"2012-10-17\",\n" +
-                    "    \"Statement\": [\n" +
-                    "        {\n" +
-                    "            \"Effect\": \"Allow\",\n" +
-                    "            \"Principal\": {\"AWS\": [\"*\"]},\n" +
-                    "            \"Action\": [\"s3:GetObject\"],\n" +
-                    "            \"Resource\": [\"arn:aws:s3:::" + bucketName + "/avatars/*\"]\n" +
-                    "        }\n" +
-                    "    ]\n" +
-                    "}";
-            
-            minioClient.setBucketPolicy(
-                    SetBucketPolicyArgs.builder()
-                            .bucket(bucketName)
-                            .config(policy)
-                            .build()
-            );
-            
-            System.out.println("存储桶策略设置成功!");
-        } catch (Exception e) {
-            System.err.println("设置存储桶策略失败: " + e.getMessage());
-            e.printStackTrace();
-            throw new BusinessException("设置存储桶策略失败: " + e.getMessage());
-        }
-    }
 } 
\ No newline at end of file
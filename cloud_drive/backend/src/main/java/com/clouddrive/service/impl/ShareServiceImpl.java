@@ -13,6 +13,7 @@ import com.clouddrive.model.entity.User;
 import com.clouddrive.model.entity.UserFile;
 import com.clouddrive.model.vo.ShareVO;
 import com.clouddrive.service.ShareService;
+import com.clouddrive.service.UserFileService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
@@ -35,6 +36,7 @@ public class ShareServiceImpl extends ServiceImpl<ShareMapper, Share> implements
     private final UserFileMapper userFileMapper;
     private final FileMapper fileMapper;
     private final UserMapper userMapper;
+    private final UserFileService userFileService;
 
     @Override
     @Transactional
@@ -278,7 +280,7 @@ public class ShareServiceImpl extends ServiceImpl<ShareMapper, Share> implements
     }
     
     /**
-     * 检查文件是否在指定文件夹内（递归检查父级目录）
+     * 检查文件是否在指定文件夹内（根据祖先路径判断，不需要逐级查询父级目录）
      * @param file 要检查的文件
      * @param folderId 目标文件夹ID
      * @return 是否在文件夹内
@@ -289,23 +291,8 @@ public class ShareServiceImpl extends ServiceImpl<ShareMapper, Share> implements
             return true;
         }
         
-        // 如果文件没有父级目录，返回false
-        if (file.getParentId() == null || file.getParentId() == 0) {
-            return false;
-        }
-        
-        // 如果文件的父级就是目标文件夹，返回true
-        if (file.getParentId().equals(folderId)) {
-            return true;
-        }
-        
-        // 递归检查父级目录
-        UserFile parentFile = userFileMapper.selectById(file.getParentId());
-        if (parentFile == null) {
-            return false;
-        }
-        
-        return isInFolder(parentFile, folderId);
+        // 祖先路径中包含目标文件夹即在其中
+        return userFileService.isDescendantOf(file, folderId);
     }
     
     @Override
@@ -349,7 +336,7 @@ public class ShareServiceImpl extends ServiceImpl<ShareMapper, Share> implements
         try {
             // 创建新的用户文件记录
             UserFile newUserFile = new UserFile();
-            BeanUtils.copyProperties(sourceFile, newUserFile, "id", "userId", "parentId", "createTime", "updateTime");
+            BeanUtils.copyProperties(sourceFile, newUserFile, "id", "userId", "parentId", "path", "createTime", "updateTime");
             
             newUserFile.setId(null); // 自动生成新ID
             newUserFile.setUserId(targetUserId);
@@ -388,8 +375,8 @@ public class ShareServiceImpl extends ServiceImpl<ShareMapper, Share> implements
             
             newUserFile.setFileName(newFileName);
             
-            // 保存新的用户文件记录
-            userFileMapper.insert(newUserFile);
+            // 保存新的用户文件记录，同时填充祖先路径
+            userFileService.save(newUserFile);
             
             return true;
         } catch (Exception e) {
@@ -410,7 +397,7 @@ public class ShareServiceImpl extends ServiceImpl<ShareMapper, Share> implements
         try {
             // 创建新的文件夹记录
             UserFile newFolder = new UserFile();
-            BeanUtils.copyProperties(sourceFolder, newFolder, "id", "userId", "parentId", "createTime", "updateTime");
+            BeanUtils.copyProperties(sourceFolder, newFolder, "id", "userId", "parentId", "path", "createTime", "updateTime");
             
             newFolder.setId(null); // 自动生成新ID
             newFolder.setUserId(targetUserId);
@@ -442,8 +429,8 @@ public class ShareServiceImpl extends ServiceImpl<ShareMapper, Share> implements
             
             newFolder.setFileName(newFolderName);
             
-            // 保存新的文件夹记录
-            userFileMapper.insert(newFolder);
+            // 保存新的文件夹记录，同时填充祖先路径
+            userFileService.save(newFolder);
             
             // 获取新文件夹的ID
             Long newFolderId = newFolder.getId();
@@ -0,0 +1,167 @@
+package com.clouddrive.service.impl;
+
+import com.clouddrive.model.dto.UploadSessionDTO;
+import com.clouddrive.service.UploadSessionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传会话服务实现类
+ * 会话信息保存在 upload:session:{userId}:{md5} 哈希中，已接收分片保存在 upload:session:{userId}:{md5}:chunks 位图中
+ */
+@Service
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private static final String SESSION_KEY_PREFIX = "upload:session:";
+
+    private static final String CHUNKS_KEY_SUFFIX = ":chunks";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 上传会话保留时间（小时）
+     */
+    @Value("${upload.chunk.session-expire-hours:24}")
+    private long sessionExpireHours;
+
+    @Override
+    public UploadSessionDTO getSession(String md5, Long userId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(getSessionKey(md5, userId));
+        if (entries == null || entries.isEmpty()) {
+            return null;
+        }
+
+        UploadSessionDTO session = new UploadSessionDTO();
+        session.setMd5(md5);
+        session.setUserId(userId);
+        session.setFileName(getString(entries, "fileName"));
+        session.setFileSize(getLong(entries, "fileSize"));
+        Long chunks = getLong(entries, "chunks");
+        session.setChunks(chunks != null ? chunks.intValue() : null);
+        session.setUploadId(getString(entries, "uploadId"));
+        session.setCreateTime(getLong(entries, "createTime"));
+        session.setExpireTime(getLong(entries, "expireTime"));
+        return session;
+    }
+
+    @Override
+    public UploadSessionDTO createSession(String md5, Long userId, String fileName, Long fileSize) {
+        String sessionKey = getSessionKey(md5, userId);
+        long now = System.currentTimeMillis();
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("md5", md5);
+        if (fileName != null) {
+            values.put("fileName", fileName);
+        }
+        if (fileSize != null) {
+            values.put("fileSize", fileSize);
+        }
+        values.put("expireTime", now + TimeUnit.HOURS.toMillis(sessionExpireHours));
+        redisTemplate.opsForHash().putAll(sessionKey, values);
+        redisTemplate.opsForHash().putIfAbsent(sessionKey, "createTime", now);
+        refreshExpire(md5, userId);
+
+        return getSession(md5, userId);
+    }
+
+    @Override
+    public void rebuildSession(String md5, Long userId, Collection<Integer> uploadedChunks) {
+        String chunksKey = getChunksKey(md5, userId);
+        redisTemplate.delete(chunksKey);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] rawKey = chunksKey.getBytes(StandardCharsets.UTF_8);
+            for (Integer chunkIndex : uploadedChunks) {
+                connection.stringCommands().setBit(rawKey, chunkIndex, true);
+            }
+            return null;
+        });
+        createSession(md5, userId, null, null);
+    }
+
+    @Override
+    public void markChunkUploaded(String md5, Long userId, int chunkIndex, Integer chunks) {
+        String sessionKey = getSessionKey(md5, userId);
+        redisTemplate.opsForValue().setBit(getChunksKey(md5, userId), chunkIndex, true);
+        if (chunks != null) {
+            redisTemplate.opsForHash().put(sessionKey, "chunks", chunks);
+        }
+        redisTemplate.opsForHash().putIfAbsent(sessionKey, "md5", md5);
+        refreshExpire(md5, userId);
+    }
+
+    @Override
+    public Set<Integer> getUploadedChunks(String md5, Long userId) {
+        byte[] rawKey = getChunksKey(md5, userId).getBytes(StandardCharsets.UTF_8);
+        byte[] bitmap = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+
+        // Redis位图中偏移量0对应第一个字节的最高位
+        Set<Integer> uploadedChunks = new HashSet<>();
+        if (bitmap != null) {
+            for (int i = 0; i < bitmap.length; i++) {
+                if (bitmap[i] == 0) {
+                    continue;
+                }
+                for (int bit = 0; bit < 8; bit++) {
+                    if ((bitmap[i] & (0x80 >> bit)) != 0) {
+                        uploadedChunks.add(i * 8 + bit);
+                    }
+                }
+            }
+        }
+        return uploadedChunks;
+    }
+
+    @Override
+    public String setUploadIdIfAbsent(String md5, Long userId, String uploadId) {
+        String sessionKey = getSessionKey(md5, userId);
+        redisTemplate.opsForHash().putIfAbsent(sessionKey, "uploadId", uploadId);
+        refreshExpire(md5, userId);
+        Object current = redisTemplate.opsForHash().get(sessionKey, "uploadId");
+        return current != null ? current.toString() : null;
+    }
+
+    @Override
+    public void removeSession(String md5, Long userId) {
+        redisTemplate.delete(getSessionKey(md5, userId));
+        redisTemplate.delete(getChunksKey(md5, userId));
+    }
+
+    /**
+     * 刷新会话和位图的过期时间
+     */
+    private void refreshExpire(String md5, Long userId) {
+        redisTemplate.expire(getSessionKey(md5, userId), sessionExpireHours, TimeUnit.HOURS);
+        redisTemplate.expire(getChunksKey(md5, userId), sessionExpireHours, TimeUnit.HOURS);
+    }
+
+    private String getSessionKey(String md5, Long userId) {
+        return SESSION_KEY_PREFIX + userId + ":" + md5;
+    }
+
+    private String getChunksKey(String md5, Long userId) {
+        return getSessionKey(md5, userId) + CHUNKS_KEY_SUFFIX;
+    }
+
+    private String getString(Map<Object, Object> entries, String field) {
+        Object value = entries.get(field);
+        return value != null ? value.toString() : null;
+    }
+
+    private Long getLong(Map<Object, Object> entries, String field) {
+        Object value = entries.get(field);
+        return value != null ? Long.valueOf(value.toString()) : null;
+    }
+}
@@ -1,23 +1,76 @@
 package com.clouddrive.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.clouddrive.exception.BusinessException;
 import com.clouddrive.mapper.UserFileMapper;
+import com.clouddrive.mapper.UserMapper;
+import com.clouddrive.model.dto.FileListItemDTO;
+import com.clouddrive.model.dto.FileListQueryDTO;
 import com.clouddrive.model.entity.UserFile;
 import com.clouddrive.service.UserFileService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 用户文件服务实现类
+ * 每条记录保存祖先路径（根目录到父文件夹的各级ID），子树查询、祖先判断和面包屑都只需一次查询；
+ * 面包屑使用的文件夹名称和父文件夹ID另有进程内缓存，改名和移动事件提交后清除
  */
 @Service
 public class UserFileServiceImpl extends ServiceImpl<UserFileMapper, UserFile> implements UserFileService {
 
+    /**
+     * 文件夹最大层数，沿缓存向上查找时不超过该层数，防止数据异常形成环时无限循环
+     */
+    private static final int MAX_FOLDER_DEPTH = 500;
+    
+    /**
+     * 批量创建文件夹时每次查询和插入的最大数量
+     */
+    private static final int FOLDER_BATCH_SIZE = 1000;
+
     @Autowired
     private UserFileMapper userFileMapper;
     
+    @Autowired
+    private UserMapper userMapper;
+    
+    /**
+     * 文件夹缓存最大条数
+     */
+    @Value("${folder.cache.max-size:100000}")
+    private int folderCacheMaxSize;
+    
+    /**
+     * 文件夹缓存有效期（毫秒）
+     */
+    @Value("${folder.cache.ttl-ms:600000}")
+    private long folderCacheTtl;
+    
+    /**
+     * 文件夹ID到名称和父文件夹ID的缓存。文件夹移动只改变自身的父文件夹ID，子文件夹的缓存不受影响
+     */
+    private final Map<Long, FolderNode> folderCache = new ConcurrentHashMap<>();
+    
     @Override
     public List<UserFile> getUserFileList(Long parentId, Long userId) {
         return userFileMapper.selectUserFileList(parentId, userId);
@@ -28,6 +81,32 @@ public class UserFileServiceImpl extends ServiceImpl<UserFileMapper, UserFile> i
         return userFileMapper.selectRecycleBinList(userId);
     }
     
+    @Override
+    public List<FileListItemDTO> getFilePage(FileListQueryDTO query) {
+        return userFileMapper.selectFilePage(query);
+    }
+    
+    @Override
+    public List<FileListItemDTO> getStarredPage(FileListQueryDTO query) {
+        return userFileMapper.selectStarredPage(query);
+    }
+    
+    @Override
+    public List<FileListItemDTO> getRecycleBinPage(FileListQueryDTO query) {
+        return userFileMapper.selectRecycleBinPage(query);
+    }
+    
+    /**
+     * 保存前根据父文件夹填充祖先路径
+     */
+    @Override
+    public boolean save(UserFile entity) {
+        if (entity.getPath() == null) {
+            entity.setPath(getChildPath(entity.getParentId()));
+        }
+        return super.save(entity);
+    }
+    
     @Override
     public UserFile getById(Long userFileId) {
         return userFileMapper.selectById(userFileId);
@@ -87,4 +166,346 @@ public class UserFileServiceImpl extends ServiceImpl<UserFileMapper, UserFile> i
         int rows = userFileMapper.increaseDownloadCount(userFileId);
         return rows > 0;
     }
-} 
\ No newline at end of file
+    
+    @Override
+    public String getChildPath(Long parentId) {
+        if (parentId == null || parentId == 0L) {
+            return "/";
+        }
+        UserFile parent = userFileMapper.selectById(parentId);
+        return parent != null ? getChildPath(parent) : "/";
+    }
+    
+    @Override
+    public List<UserFile> getDescendants(UserFile folder) {
+        return userFileMapper.selectDescendants(getChildPath(folder), folder.getUserId());
+    }
+    
+    @Override
+    public List<UserFile> getDeletedDescendants(UserFile folder, Long userId) {
+        return userFileMapper.selectDeletedDescendants(getChildPath(folder), userId);
+    }
+    
+    @Override
+    public List<UserFile> getAncestors(UserFile userFile) {
+        List<Long> ancestorIds = new ArrayList<>();
+        String path = userFile.getPath();
+        if (path != null) {
+            for (String segment : path.split("/")) {
+                if (!segment.isEmpty()) {
+                    ancestorIds.add(Long.valueOf(segment));
+                }
+            }
+        }
+        if (ancestorIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<Long, UserFile> folders = new HashMap<>();
+        for (UserFile folder : userFileMapper.selectBatchIds(ancestorIds)) {
+            folders.put(folder.getId(), folder);
+        }
+        List<UserFile> ancestors = new ArrayList<>(ancestorIds.size());
+        for (Long ancestorId : ancestorIds) {
+            UserFile folder = folders.get(ancestorId);
+            if (folder != null) {
+                ancestors.add(folder);
+            }
+        }
+        return ancestors;
+    }
+    
+    @Override
+    public boolean isDescendantOf(UserFile userFile, Long folderId) {
+        return userFile.getPath() != null && userFile.getPath().contains("/" + folderId + "/");
+    }
+    
+    @Override
+    public boolean move(UserFile userFile, Long targetParentId) {
+        String newPath = "/";
+        if (targetParentId != null && targetParentId != 0L) {
+            UserFile targetFolder = userFileMapper.selectById(targetParentId);
+            if (targetFolder == null || !targetFolder.getUserId().equals(userFile.getUserId()) || !targetFolder.getIsDir()) {
+                throw new BusinessException("目标文件夹不存在");
+            }
+            if (targetFolder.getId().equals(userFile.getId()) || isDescendantOf(targetFolder, userFile.getId())) {
+                throw new BusinessException("不能将文件夹移动到自身或其子文件夹中");
+            }
+            newPath = getChildPath(targetFolder);
+        }
+        
+        LambdaUpdateWrapper<UserFile> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(UserFile::getId, userFile.getId())
+                    .eq(UserFile::getUserId, userFile.getUserId())
+                    .set(UserFile::getParentId, targetParentId)
+                    .set(UserFile::getPath, newPath)
+                    .set(UserFile::getUpdateTime, new Date());
+        boolean result = update(updateWrapper);
+        
+        // 文件夹的子树整体替换路径前缀，一条语句完成
+        if (result && Boolean.TRUE.equals(userFile.getIsDir())) {
+            userFileMapper.updateSubtreePath(getChildPath(userFile), newPath + userFile.getId() + "/", userFile.getUserId());
+        }
+        return result;
+    }
+    
+    @Override
+    public int updateSubtreeDelFlag(UserFile userFile, Integer fromDelFlag, Integer toDelFlag, Long userId) {
+        String pathPrefix = Boolean.TRUE.equals(userFile.getIsDir()) ? getChildPath(userFile) : null;
+        return userFileMapper.updateSubtreeDelFlag(userFile.getId(), pathPrefix, fromDelFlag, toDelFlag, userId);
+    }
+    
+    @Override
+    public List<UserFile> getFolderChain(Long folderId) {
+        // 从文件夹开始沿缓存向上查找，遇到未缓存或已过期的文件夹时按该文件夹的祖先路径一次查询其余部分
+        List<UserFile> cached = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Long currentId = folderId;
+        while (currentId != null && currentId != 0L && cached.size() < MAX_FOLDER_DEPTH) {
+            FolderNode node = folderCache.get(currentId);
+            if (node == null || node.expireTime < now) {
+                break;
+            }
+            cached.add(node.toUserFile(currentId));
+            currentId = node.parentId;
+        }
+        
+        List<UserFile> chain = new ArrayList<>();
+        if (currentId != null && currentId != 0L && cached.size() < MAX_FOLDER_DEPTH) {
+            UserFile folder = userFileMapper.selectById(currentId);
+            if (folder != null) {
+                chain.addAll(getAncestors(folder));
+                chain.add(folder);
+                for (UserFile item : chain) {
+                    cacheFolder(item, now);
+                }
+            }
+        }
+        Collections.reverse(cached);
+        chain.addAll(cached);
+        return chain;
+    }
+    
+    @Override
+    public void evictFolder(Long userFileId) {
+        folderCache.remove(userFileId);
+    }
+    
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Map<String, Long> getOrCreateFolders(Long parentId, Collection<String> folderPaths, Long userId) {
+        // 按层级分组规范化后的路径，各级上级路径自动补齐
+        TreeMap<Integer, Set<String>> levels = new TreeMap<>();
+        for (String folderPath : folderPaths) {
+            List<String> segments = splitFolderPath(folderPath);
+            StringBuilder current = new StringBuilder();
+            for (int i = 0; i < segments.size(); i++) {
+                if (i > 0) {
+                    current.append('/');
+                }
+                current.append(segments.get(i));
+                levels.computeIfAbsent(i + 1, k -> new LinkedHashSet<>()).add(current.toString());
+            }
+        }
+        
+        Map<String, Long> folderIds = new LinkedHashMap<>();
+        if (levels.isEmpty()) {
+            return folderIds;
+        }
+        if (parentId == null) {
+            parentId = 0L;
+        }
+        String rootPath = getTargetChildPath(parentId, userId);
+        
+        // 先不加锁查找，文件夹都已存在时不需要等待同一用户的其他上传
+        if (resolveFolders(parentId, rootPath, levels, userId, folderIds, false)) {
+            return folderIds;
+        }
+        
+        // 有文件夹需要创建时锁定用户记录，加锁后读取最新提交的数据重新查找，同一文件夹只会被创建一次
+        userMapper.lockById(userId);
+        folderIds.clear();
+        resolveFolders(parentId, rootPath, levels, userId, folderIds, true);
+        return folderIds;
+    }
+    
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Long getOrCreateFolder(Long parentId, String folderPath, Long userId) {
+        List<String> segments = splitFolderPath(folderPath);
+        if (segments.isEmpty()) {
+            return parentId;
+        }
+        return getOrCreateFolders(parentId, Collections.singletonList(folderPath), userId).get(String.join("/", segments));
+    }
+    
+    /**
+     * 逐层查找文件夹，同一层级按批次一次查询
+     * @param create 是否创建不存在的文件夹，为false时遇到不存在的文件夹立即返回
+     * @return 是否所有文件夹都已找到或创建
+     */
+    private boolean resolveFolders(Long parentId, String rootPath, TreeMap<Integer, Set<String>> levels,
+                                   Long userId, Map<String, Long> folderIds, boolean create) {
+        Map<String, String> childPaths = new HashMap<>();
+        for (Set<String> level : levels.values()) {
+            List<String> paths = new ArrayList<>(level);
+            for (int i = 0; i < paths.size(); i += FOLDER_BATCH_SIZE) {
+                List<String> batch = paths.subList(i, Math.min(i + FOLDER_BATCH_SIZE, paths.size()));
+                
+                Set<Long> parentIds = new HashSet<>();
+                Set<String> names = new HashSet<>();
+                for (String path : batch) {
+                    parentIds.add(getParentFolderId(path, parentId, folderIds));
+                    names.add(path.substring(path.lastIndexOf('/') + 1));
+                }
+                
+                // 数据库默认排序规则不区分大小写，精确匹配不到时按忽略大小写匹配
+                Map<String, UserFile> existing = new HashMap<>();
+                Map<String, UserFile> existingIgnoreCase = new HashMap<>();
+                for (UserFile child : userFileMapper.selectChildrenByNames(parentIds, names, userId, create)) {
+                    String key = child.getParentId() + "/" + child.getFileName();
+                    existing.putIfAbsent(key, child);
+                    existingIgnoreCase.putIfAbsent(key.toLowerCase(Locale.ROOT), child);
+                }
+                
+                List<UserFile> created = new ArrayList<>();
+                List<String> createdPaths = new ArrayList<>();
+                Date now = new Date();
+                for (String path : batch) {
+                    Long folderParentId = getParentFolderId(path, parentId, folderIds);
+                    String name = path.substring(path.lastIndexOf('/') + 1);
+                    String key = folderParentId + "/" + name;
+                    UserFile child = existing.get(key);
+                    if (child == null) {
+                        child = existingIgnoreCase.get(key.toLowerCase(Locale.ROOT));
+                    }
+                    
+                    if (child != null) {
+                        if (!Boolean.TRUE.equals(child.getIsDir())) {
+                            throw new BusinessException("目标路径中存在同名文件，无法创建文件夹: " + path);
+                        }
+                        folderIds.put(path, child.getId());
+                        childPaths.put(path, getChildPath(child));
+                    } else if (!create) {
+                        return false;
+                    } else {
+                        int separator = path.lastIndexOf('/');
+                        UserFile folder = new UserFile();
+                        folder.setFileName(name);
+                        folder.setFileSize(0L);
+                        folder.setFileType("folder");
+                        folder.setIsDir(true);
+                        folder.setDelFlag(0);
+                        folder.setUserId(userId);
+                        folder.setParentId(folderParentId);
+                        folder.setPath(separator < 0 ? rootPath : childPaths.get(path.substring(0, separator)));
+                        folder.setCreateTime(now);
+                        folder.setUpdateTime(now);
+                        created.add(folder);
+                        createdPaths.add(path);
+                    }
+                }
+                
+                if (!created.isEmpty()) {
+                    userFileMapper.insertBatch(created);
+                    for (int j = 0; j < created.size(); j++) {
+                        folderIds.put(createdPaths.get(j), created.get(j).getId());
+                        childPaths.put(createdPaths.get(j), getChildPath(created.get(j)));
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    private Long getParentFolderId(String path, Long parentId, Map<String, Long> folderIds) {
+        int separator = path.lastIndexOf('/');
+        return separator < 0 ? parentId : folderIds.get(path.substring(0, separator));
+    }
+    
+    /**
+     * 拆分相对路径，兼容Windows和Unix风格的分隔符，忽略空的路径段
+     */
+    private List<String> splitFolderPath(String folderPath) {
+        List<String> segments = new ArrayList<>();
+        if (folderPath == null) {
+            return segments;
+        }
+        for (String segment : folderPath.replace('\\', '/').split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (".".equals(segment) || "..".equals(segment)) {
+                throw new BusinessException("文件夹路径不合法: " + folderPath);
+            }
+            segments.add(segment);
+        }
+        return segments;
+    }
+    
+    /**
+     * 校验起始文件夹并返回其下文件的祖先路径
+     */
+    private String getTargetChildPath(Long parentId, Long userId) {
+        if (parentId == null || parentId == 0L) {
+            return "/";
+        }
+        UserFile parent = userFileMapper.selectById(parentId);
+        if (parent == null || !parent.getUserId().equals(userId) || !Boolean.TRUE.equals(parent.getIsDir())
+                || !Integer.valueOf(0).equals(parent.getDelFlag())) {
+            throw new BusinessException("目标文件夹不存在");
+        }
+        return getChildPath(parent);
+    }
+    
+    private void cacheFolder(UserFile folder, long now) {
+        // 超过最大条数时整体清空，缓存只用于加速面包屑，清空后按需重新加载
+        if (folderCache.size() >= folderCacheMaxSize) {
+            folderCache.clear();
+        }
+        folderCache.put(folder.getId(), new FolderNode(folder.getFileName(), folder.getParentId(),
+                folder.getUserId(), folder.getIsDir(), now + folderCacheTtl));
+    }
+    
+    /**
+     * 文件夹下文件的祖先路径：文件夹自身的祖先路径加上文件夹ID
+     */
+    private String getChildPath(UserFile folder) {
+        String path = folder.getPath() != null ? folder.getPath() : "/";
+        return path + folder.getId() + "/";
+    }
+    
+    /**
+     * 缓存的文件夹信息
+     */
+    private static class FolderNode {
+        
+        private final String fileName;
+        
+        private final Long parentId;
+        
+        private final Long userId;
+        
+        private final Boolean isDir;
+        
+        private final long expireTime;
+        
+        private FolderNode(String fileName, Long parentId, Long userId, Boolean isDir, long expireTime) {
+            this.fileName = fileName;
+            this.parentId = parentId;
+            this.userId = userId;
+            this.isDir = isDir;
+            this.expireTime = expireTime;
+        }
+        
+        private UserFile toUserFile(Long id) {
+            UserFile userFile = new UserFile();
+            userFile.setId(id);
+            userFile.setFileName(fileName);
+            userFile.setParentId(parentId);
+            userFile.setUserId(userId);
+            userFile.setIsDir(isDir);
+            return userFile;
+        }
+    }
+}
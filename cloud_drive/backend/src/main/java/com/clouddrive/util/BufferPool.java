@@ -0,0 +1,88 @@
+package com.clouddrive.util;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 固定大小缓冲区池
+ * 缓冲区按需创建并在归还后复用，总数达到上限时借用方阻塞等待，以此限制同时在途的数据量
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+
+    private final int maxBuffers;
+
+    private final BlockingQueue<byte[]> available;
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    public BufferPool(int bufferSize, int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.available = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    /**
+     * 借用缓冲区
+     * @param timeoutMillis 池已耗尽时的最长等待时间（毫秒）
+     * @return 缓冲区
+     * @throws IOException 等待超时或被中断
+     */
+    public byte[] acquire(long timeoutMillis) throws IOException {
+        byte[] buffer = available.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+
+        // 未达到上限时创建新的缓冲区
+        int count = created.get();
+        while (count < maxBuffers) {
+            if (created.compareAndSet(count, count + 1)) {
+                return new byte[bufferSize];
+            }
+            count = created.get();
+        }
+
+        try {
+            buffer = available.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待缓冲区时被中断", e);
+        }
+        if (buffer == null) {
+            throw new IOException("等待缓冲区超时");
+        }
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区
+     */
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            available.offer(buffer);
+        }
+    }
+
+    /**
+     * 已创建的缓冲区数量
+     */
+    public int getCreated() {
+        return created.get();
+    }
+
+    /**
+     * 池中空闲的缓冲区数量
+     */
+    public int getAvailable() {
+        return available.size();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
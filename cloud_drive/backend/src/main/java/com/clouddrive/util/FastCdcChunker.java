@@ -0,0 +1,120 @@
+package com.clouddrive.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 基于内容的分块器（FastCDC）
+ * 使用Gear滚动哈希寻找切分点，切分点只取决于附近的内容，文件中间插入或删除数据时只影响相邻的块，
+ * 其余块保持不变，从而可以在不同文件、不同版本之间去重。
+ * 采用归一化分块：未达到平均块大小前使用更严格的掩码，之后使用更宽松的掩码，使块大小集中在平均值附近。
+ */
+public class FastCdcChunker {
+
+    /**
+     * Gear表，固定种子保证不同实例、不同节点的切分结果一致
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5eedL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final InputStream in;
+
+    private final int minSize;
+
+    private final int avgSize;
+
+    private final int maxSize;
+
+    private final long maskS;
+
+    private final long maskL;
+
+    private final byte[] buffer;
+
+    private int length;
+
+    private boolean eof;
+
+    /**
+     * @param in 输入流
+     * @param minSize 最小块大小
+     * @param avgSize 平均块大小，需为2的幂
+     * @param maxSize 最大块大小
+     */
+    public FastCdcChunker(InputStream in, int minSize, int avgSize, int maxSize) {
+        if (minSize <= 0 || minSize > avgSize || avgSize > maxSize || Integer.bitCount(avgSize) != 1) {
+            throw new IllegalArgumentException("分块大小配置无效");
+        }
+        this.in = in;
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        int bits = Integer.numberOfTrailingZeros(avgSize);
+        // 掩码取哈希的高位，高位受最近64个字节影响
+        this.maskS = -1L << (64 - (bits + 1));
+        this.maskL = -1L << (64 - (bits - 1));
+        this.buffer = new byte[maxSize];
+    }
+
+    /**
+     * 读取下一个块
+     * @return 块数据，读取完毕时返回null
+     */
+    public byte[] nextChunk() throws IOException {
+        fill();
+        if (length == 0) {
+            return null;
+        }
+
+        int cut = findCutPoint(length);
+        byte[] chunk = Arrays.copyOf(buffer, cut);
+        System.arraycopy(buffer, cut, buffer, 0, length - cut);
+        length -= cut;
+        return chunk;
+    }
+
+    /**
+     * 缓冲区填满至最大块大小或读取到流末尾
+     */
+    private void fill() throws IOException {
+        while (length < maxSize && !eof) {
+            int n = in.read(buffer, length, maxSize - length);
+            if (n < 0) {
+                eof = true;
+            } else {
+                length += n;
+            }
+        }
+    }
+
+    private int findCutPoint(int n) {
+        if (n <= minSize) {
+            return n;
+        }
+
+        int normalSize = Math.min(avgSize, n);
+        long fingerprint = 0;
+        int i = minSize;
+        for (; i < normalSize; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[buffer[i] & 0xff];
+            if ((fingerprint & maskS) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < n; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[buffer[i] & 0xff];
+            if ((fingerprint & maskL) == 0) {
+                return i + 1;
+            }
+        }
+        return n;
+    }
+}
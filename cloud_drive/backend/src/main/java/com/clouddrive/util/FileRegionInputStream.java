@@ -0,0 +1,95 @@
+package com.clouddrive.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 读取本地文件指定区域的输入流
+ * 除普通读取外支持通过FileChannel.transferTo直接输出到目标流，不经过调用方的缓冲区
+ */
+public class FileRegionInputStream extends InputStream {
+
+    private final FileChannel channel;
+
+    private long position;
+
+    private final long end;
+
+    /**
+     * @param path 文件路径
+     * @param offset 起始位置
+     * @param length 长度，为负数时读到文件末尾
+     */
+    public FileRegionInputStream(Path path, long offset, long length) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        this.position = Math.min(offset, size);
+        this.end = length < 0 ? size : Math.min(size, offset + length);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (position >= end) {
+            return -1;
+        }
+        int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    /**
+     * 输出最多count个字节到目标流
+     * @return 实际输出的字节数，已读完时返回0
+     */
+    public long transferTo(OutputStream out, long count) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long remaining = Math.min(count, end - position);
+        long transferred = 0;
+        while (transferred < remaining) {
+            long n = channel.transferTo(position, remaining - transferred, target);
+            if (n <= 0) {
+                break;
+            }
+            position += n;
+            transferred += n;
+        }
+        return transferred;
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        return transferTo(out, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,113 @@
+package com.clouddrive.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 计算摘要的输入流
+ * 数据流经时同时计算MD5和SHA-256并统计字节数，上传的同时即可得到文件摘要，无需再次读取
+ */
+public class HashingInputStream extends FilterInputStream {
+
+    private final MessageDigest md5Digest;
+
+    private final MessageDigest sha256Digest;
+
+    private long bytesRead;
+
+    private String md5;
+
+    private String sha256;
+
+    public HashingInputStream(InputStream in) {
+        super(in);
+        try {
+            this.md5Digest = MessageDigest.getInstance("MD5");
+            this.sha256Digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("不支持的摘要算法", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            md5Digest.update((byte) b);
+            sha256Digest.update((byte) b);
+            bytesRead++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            md5Digest.update(b, off, n);
+            sha256Digest.update(b, off, n);
+            bytesRead += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 跳过的数据同样需要计入摘要
+        byte[] buffer = new byte[8192];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("不支持reset");
+    }
+
+    /**
+     * 已读取数据的MD5（十六进制小写），应在数据读取完毕后调用
+     */
+    public String getMd5() {
+        if (md5 == null) {
+            md5 = HexFormat.of().formatHex(md5Digest.digest());
+        }
+        return md5;
+    }
+
+    /**
+     * 已读取数据的SHA-256（十六进制小写），应在数据读取完毕后调用
+     */
+    public String getSha256() {
+        if (sha256 == null) {
+            sha256 = HexFormat.of().formatHex(sha256Digest.digest());
+        }
+        return sha256;
+    }
+
+    /**
+     * 已读取的字节数
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+}
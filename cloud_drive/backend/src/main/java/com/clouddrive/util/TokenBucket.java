@@ -0,0 +1,72 @@
+package com.clouddrive.util;
+
+/**
+ * 令牌桶限速器
+ * 令牌按速率持续补充，桶容量为速率乘以突发时长。取令牌时允许桶内余量为负（预支），
+ * 调用方按欠额等待，等待在锁外进行，多个调用方按到达顺序依次获得带宽
+ */
+public class TokenBucket {
+
+    private final double burstSeconds;
+
+    private long rate;
+
+    private double capacity;
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    /**
+     * @param rate 速率（每秒令牌数），小于等于0表示不限速
+     * @param burstSeconds 允许突发的时长（秒）
+     */
+    public TokenBucket(long rate, double burstSeconds) {
+        this.burstSeconds = burstSeconds;
+        this.lastRefillNanos = System.nanoTime();
+        setRate(rate);
+        this.tokens = capacity;
+    }
+
+    /**
+     * 预支令牌
+     * @param permits 令牌数
+     * @return 需要等待的时间（纳秒），不限速时为0
+     */
+    public synchronized long reserve(long permits) {
+        if (rate <= 0) {
+            return 0;
+        }
+        refill();
+        tokens -= permits;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens / rate * 1_000_000_000L);
+    }
+
+    /**
+     * 调整速率，已有的余量不超过新的容量
+     * @param rate 速率（每秒令牌数），小于等于0表示不限速
+     */
+    public synchronized void setRate(long rate) {
+        refill();
+        this.rate = rate;
+        this.capacity = rate > 0 ? rate * burstSeconds : 0;
+        if (tokens > capacity) {
+            tokens = capacity;
+        }
+    }
+
+    public synchronized long getRate() {
+        return rate;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (rate > 0) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * rate);
+        }
+        lastRefillNanos = now;
+    }
+}
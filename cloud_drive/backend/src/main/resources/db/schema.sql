@@ -6,12 +6,14 @@ CREATE TABLE IF NOT EXISTS `file` (
   `file_size` bigint(20) NOT NULL COMMENT '文件大小（字节）',
   `file_type` varchar(100) DEFAULT NULL COMMENT '文件类型',
   `md5` varchar(32) DEFAULT NULL COMMENT '文件MD5',
+  `sha256` char(64) DEFAULT NULL COMMENT '文件SHA-256',
   `usage_count` int(11) DEFAULT '0' COMMENT '使用次数',
   `status` tinyint(1) DEFAULT '1' COMMENT '状态，1:可用，0:不可用',
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`id`),
-  KEY `idx_md5` (`md5`)
+  KEY `idx_md5` (`md5`),
+  KEY `idx_object_name` (`object_name`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件表';
 
 -- 创建user_file表
@@ -20,9 +22,10 @@ CREATE TABLE IF NOT EXISTS `user_file` (
   `user_id` bigint(20) NOT NULL COMMENT '用户ID',
   `file_id` bigint(20) DEFAULT NULL COMMENT '文件ID，如果是目录则为null',
   `file_name` varchar(255) NOT NULL COMMENT '文件名',
-  `file_size` bigint(20) DEFAULT '0' COMMENT '文件大小（字节）',
+  `file_size` bigint(20) NOT NULL DEFAULT '0' COMMENT '文件大小（字节）',
   `file_type` varchar(100) DEFAULT NULL COMMENT '文件类型',
   `parent_id` bigint(20) NOT NULL DEFAULT '0' COMMENT '父文件夹ID',
+  `path` varchar(1000) NOT NULL DEFAULT '/' COMMENT '祖先路径，如 /12/34/，根目录下为 /',
   `is_dir` tinyint(1) NOT NULL DEFAULT '0' COMMENT '是否为文件夹',
   `del_flag` tinyint(1) NOT NULL DEFAULT '0' COMMENT '删除标志，0:未删除，1:回收站，2:已删除',
   `is_starred` tinyint(1) DEFAULT '0' COMMENT '是否已收藏',
@@ -32,7 +35,13 @@ CREATE TABLE IF NOT EXISTS `user_file` (
   PRIMARY KEY (`id`),
   KEY `idx_user_id` (`user_id`),
   KEY `idx_parent_id` (`parent_id`),
-  KEY `idx_file_id` (`file_id`)
+  KEY `idx_file_id` (`file_id`),
+  KEY `idx_user_path` (`user_id`,`path`(255)),
+  KEY `idx_user_parent_name` (`user_id`,`parent_id`,`del_flag`,`file_name`),
+  KEY `idx_user_parent_size` (`user_id`,`parent_id`,`del_flag`,`file_size`),
+  KEY `idx_user_parent_time` (`user_id`,`parent_id`,`del_flag`,`update_time`),
+  KEY `idx_user_del_time` (`user_id`,`del_flag`,`update_time`),
+  KEY `idx_user_starred_time` (`user_id`,`is_starred`,`del_flag`,`update_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户文件表';
 
 -- 创建share表
@@ -122,4 +131,45 @@ CREATE TABLE IF NOT EXISTS `file_operation_log` (
   KEY `idx_user_file_id` (`user_file_id`),
   KEY `idx_operation_type` (`operation_type`),
   KEY `idx_create_time` (`create_time`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件操作日志表'; 
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件操作日志表';
+
+-- 创建storage_block表（分块去重存储引擎，每个唯一内容块保存一次）
+CREATE TABLE IF NOT EXISTS `storage_block` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `bucket_name` varchar(63) NOT NULL COMMENT '存储桶名称',
+  `block_hash` char(64) NOT NULL COMMENT '块内容SHA-256',
+  `block_size` int(11) NOT NULL COMMENT '块大小（字节）',
+  `ref_count` int(11) NOT NULL DEFAULT '0' COMMENT '引用次数',
+  `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_bucket_hash` (`bucket_name`,`block_hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='存储块表';
+
+-- 创建storage_manifest表（对象由哪些块按顺序组成）
+CREATE TABLE IF NOT EXISTS `storage_manifest` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `bucket_name` varchar(63) NOT NULL COMMENT '存储桶名称',
+  `object_name` varchar(255) NOT NULL COMMENT '对象名称',
+  `block_index` int(11) NOT NULL COMMENT '块序号，从0开始',
+  `block_hash` char(64) NOT NULL COMMENT '块内容SHA-256',
+  `block_size` int(11) NOT NULL COMMENT '块大小（字节）',
+  `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '写入时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_bucket_object` (`bucket_name`,`object_name`,`block_index`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='对象清单表';
+
+-- 创建storage_tombstone表（彻底删除时在事务内登记，由后台批量删除对象）
+CREATE TABLE IF NOT EXISTS `storage_tombstone` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `bucket_name` varchar(63) NOT NULL COMMENT '存储桶名称',
+  `object_name` varchar(255) NOT NULL COMMENT '对象名称',
+  `retry_count` int(11) NOT NULL DEFAULT '0' COMMENT '已重试次数',
+  `next_attempt_time` datetime NOT NULL COMMENT '下次由定时任务处理的时间',
+  `claim_token` varchar(36) DEFAULT NULL COMMENT '最近一次认领的标识',
+  `last_error` varchar(500) DEFAULT NULL COMMENT '最近一次删除失败的错误信息',
+  `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_next_attempt_time` (`next_attempt_time`),
+  KEY `idx_claim_token` (`claim_token`),
+  KEY `idx_object_name` (`bucket_name`,`object_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='待删除对象表';
@@ -0,0 +1,5 @@
+-- 已有数据库升级：为file表增加SHA-256列，秒传和合并去重时用于确认内容一致
+-- 已有记录保持为NULL，比较时只校验MD5和文件大小
+
+ALTER TABLE `file`
+  ADD COLUMN `sha256` char(64) DEFAULT NULL COMMENT '文件SHA-256' AFTER `md5`;
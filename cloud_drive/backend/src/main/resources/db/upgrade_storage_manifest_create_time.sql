@@ -0,0 +1,5 @@
+-- 已有数据库升级：为storage_manifest表增加写入时间，清理任务按该时间判断对象是否超过保留时间
+-- 已有记录的写入时间取执行升级的时间
+
+ALTER TABLE `storage_manifest`
+  ADD COLUMN `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '写入时间';
@@ -0,0 +1,20 @@
+-- 已有数据库升级：增加待删除对象表，彻底删除文件时在事务内登记对象，由后台认领后批量删除
+-- 删除前按对象名称确认对象未被文件记录重新引用，为file表的object_name列增加索引
+
+CREATE TABLE IF NOT EXISTS `storage_tombstone` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `bucket_name` varchar(63) NOT NULL COMMENT '存储桶名称',
+  `object_name` varchar(255) NOT NULL COMMENT '对象名称',
+  `retry_count` int(11) NOT NULL DEFAULT '0' COMMENT '已重试次数',
+  `next_attempt_time` datetime NOT NULL COMMENT '下次由定时任务处理的时间',
+  `claim_token` varchar(36) DEFAULT NULL COMMENT '最近一次认领的标识',
+  `last_error` varchar(500) DEFAULT NULL COMMENT '最近一次删除失败的错误信息',
+  `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_next_attempt_time` (`next_attempt_time`),
+  KEY `idx_claim_token` (`claim_token`),
+  KEY `idx_object_name` (`bucket_name`,`object_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='待删除对象表';
+
+ALTER TABLE `file`
+  ADD KEY `idx_object_name` (`object_name`);
@@ -0,0 +1,13 @@
+-- 已有数据库升级：为文件列表、收藏和回收站的游标分页增加排序索引
+-- InnoDB二级索引末尾隐含主键ID，索引顺序与 ORDER BY 排序列, id 一致，翻页只读取一页的数据
+-- 游标按排序列的值比较，file_size 改为非空，避免 NULL 值的文件在按大小翻页时被跳过或重复
+
+UPDATE `user_file` SET `file_size` = 0 WHERE `file_size` IS NULL;
+
+ALTER TABLE `user_file`
+  MODIFY COLUMN `file_size` bigint(20) NOT NULL DEFAULT '0' COMMENT '文件大小（字节）',
+  ADD KEY `idx_user_parent_name` (`user_id`,`parent_id`,`del_flag`,`file_name`),
+  ADD KEY `idx_user_parent_size` (`user_id`,`parent_id`,`del_flag`,`file_size`),
+  ADD KEY `idx_user_parent_time` (`user_id`,`parent_id`,`del_flag`,`update_time`),
+  ADD KEY `idx_user_del_time` (`user_id`,`del_flag`,`update_time`),
+  ADD KEY `idx_user_starred_time` (`user_id`,`is_starred`,`del_flag`,`update_time`);
@@ -0,0 +1,18 @@
+-- 已有数据库升级：为user_file表增加祖先路径列并按现有父子关系回填（需要MySQL 8.0及以上）
+
+ALTER TABLE `user_file`
+  ADD COLUMN `path` varchar(1000) NOT NULL DEFAULT '/' COMMENT '祖先路径，如 /12/34/，根目录下为 /' AFTER `parent_id`,
+  ADD KEY `idx_user_path` (`user_id`,`path`(255));
+
+UPDATE `user_file` u
+JOIN (
+  WITH RECURSIVE `tree` (`id`, `path`) AS (
+    SELECT `id`, CAST('/' AS CHAR(1000)) FROM `user_file` WHERE `parent_id` = 0
+    UNION ALL
+    SELECT c.`id`, CONCAT(t.`path`, c.`parent_id`, '/')
+    FROM `user_file` c
+    JOIN `tree` t ON c.`parent_id` = t.`id`
+  )
+  SELECT `id`, `path` FROM `tree`
+) t ON u.`id` = t.`id`
+SET u.`path` = t.`path`;
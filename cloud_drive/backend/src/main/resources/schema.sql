@@ -22,12 +22,14 @@ CREATE TABLE IF NOT EXISTS `file` (
   `file_size` BIGINT NOT NULL COMMENT '文件大小（字节）',
   `file_type` VARCHAR(50) DEFAULT NULL COMMENT '文件类型',
   `md5` VARCHAR(32) DEFAULT NULL COMMENT '文件MD5值',
+  `sha256` CHAR(64) DEFAULT NULL COMMENT '文件SHA-256值',
   `usage_count` INT DEFAULT 0 COMMENT '使用次数',
   `status` TINYINT DEFAULT 1 COMMENT '状态，1:可用，0:不可用',
   `create_time` DATETIME NOT NULL COMMENT '创建时间',
   `update_time` DATETIME NOT NULL COMMENT '更新时间',
   PRIMARY KEY (`id`),
-  KEY `idx_md5` (`md5`)
+  KEY `idx_md5` (`md5`),
+  KEY `idx_object_name` (`object_name`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件表';
 
 -- 创建用户文件表（关联用户和文件）
@@ -36,16 +38,22 @@ CREATE TABLE IF NOT EXISTS `user_file` (
   `user_id` BIGINT NOT NULL COMMENT '用户ID',
   `file_id` BIGINT DEFAULT NULL COMMENT '文件ID，如果是目录则为null',
   `parent_id` BIGINT NOT NULL DEFAULT 0 COMMENT '父目录ID，0表示根目录',
+  `path` VARCHAR(1000) NOT NULL DEFAULT '/' COMMENT '祖先路径，如 /12/34/，根目录下为 /',
   `file_name` VARCHAR(255) NOT NULL COMMENT '文件名',
   `is_dir` TINYINT NOT NULL DEFAULT 0 COMMENT '是否为目录，1:是，0:否',
-  `file_size` BIGINT DEFAULT 0 COMMENT '文件大小（字节）',
+  `file_size` BIGINT NOT NULL DEFAULT 0 COMMENT '文件大小（字节）',
   `file_type` VARCHAR(50) DEFAULT NULL COMMENT '文件类型',
   `del_flag` TINYINT DEFAULT 0 COMMENT '删除标志，0:未删除，1:回收站，2:已删除',
+  `is_starred` TINYINT DEFAULT 0 COMMENT '是否已收藏，1:是，0:否',
   `create_time` DATETIME NOT NULL COMMENT '创建时间',
   `update_time` DATETIME NOT NULL COMMENT '更新时间',
   PRIMARY KEY (`id`),
-  KEY `idx_user_parent` (`user_id`, `parent_id`),
-  KEY `idx_user_del` (`user_id`, `del_flag`)
+  KEY `idx_user_parent_name` (`user_id`, `parent_id`, `del_flag`, `file_name`),
+  KEY `idx_user_parent_size` (`user_id`, `parent_id`, `del_flag`, `file_size`),
+  KEY `idx_user_parent_time` (`user_id`, `parent_id`, `del_flag`, `update_time`),
+  KEY `idx_user_del_time` (`user_id`, `del_flag`, `update_time`),
+  KEY `idx_user_starred_time` (`user_id`, `is_starred`, `del_flag`, `update_time`),
+  KEY `idx_user_path` (`user_id`, `path`(255))
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户文件表';
 
 -- 创建分享表
@@ -64,4 +72,45 @@ CREATE TABLE IF NOT EXISTS `share` (
   PRIMARY KEY (`id`),
   UNIQUE KEY `uk_share_code` (`share_code`),
   KEY `idx_user_id` (`user_id`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='分享表'; 
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='分享表';
+
+-- 创建存储块表（分块去重存储引擎，每个唯一内容块保存一次）
+CREATE TABLE IF NOT EXISTS `storage_block` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `bucket_name` VARCHAR(63) NOT NULL COMMENT '存储桶名称',
+  `block_hash` CHAR(64) NOT NULL COMMENT '块内容SHA-256',
+  `block_size` INT NOT NULL COMMENT '块大小（字节）',
+  `ref_count` INT NOT NULL DEFAULT 0 COMMENT '引用次数',
+  `create_time` DATETIME NOT NULL COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_bucket_hash` (`bucket_name`, `block_hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='存储块表';
+
+-- 创建对象清单表（对象由哪些块按顺序组成）
+CREATE TABLE IF NOT EXISTS `storage_manifest` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `bucket_name` VARCHAR(63) NOT NULL COMMENT '存储桶名称',
+  `object_name` VARCHAR(255) NOT NULL COMMENT '对象名称',
+  `block_index` INT NOT NULL COMMENT '块序号，从0开始',
+  `block_hash` CHAR(64) NOT NULL COMMENT '块内容SHA-256',
+  `block_size` INT NOT NULL COMMENT '块大小（字节）',
+  `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '写入时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_bucket_object` (`bucket_name`, `object_name`, `block_index`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='对象清单表';
+
+-- 创建待删除对象表（彻底删除时在事务内登记，由后台批量删除对象）
+CREATE TABLE IF NOT EXISTS `storage_tombstone` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `bucket_name` VARCHAR(63) NOT NULL COMMENT '存储桶名称',
+  `object_name` VARCHAR(255) NOT NULL COMMENT '对象名称',
+  `retry_count` INT NOT NULL DEFAULT 0 COMMENT '已重试次数',
+  `next_attempt_time` DATETIME NOT NULL COMMENT '下次由定时任务处理的时间',
+  `claim_token` VARCHAR(36) DEFAULT NULL COMMENT '最近一次认领的标识',
+  `last_error` VARCHAR(500) DEFAULT NULL COMMENT '最近一次删除失败的错误信息',
+  `create_time` DATETIME NOT NULL COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_next_attempt_time` (`next_attempt_time`),
+  KEY `idx_claim_token` (`claim_token`),
+  KEY `idx_object_name` (`bucket_name`,`object_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='待删除对象表';
@@ -45,7 +45,9 @@ export const getFileList = (params: {
   parentId: number;
   orderBy?: string;
   orderDirection?: 'asc' | 'desc';
-}): Promise<{ list: FileInfo[], path: Breadcrumb[] }> => {
+  cursor?: string;
+  limit?: number;
+}): Promise<{ list: FileInfo[], path: Breadcrumb[], nextCursor?: string | null }> => {
   return request({
     url: '/file/list',
     method: 'get',
@@ -89,6 +91,30 @@ export const createFolder = (parentId: number, name: string): Promise<{ list: Fi
   });
 };
 
+/**
+ * 文件夹上传前按目录清单一次创建所有文件夹
+ * @param parentId 上传目标文件夹ID
+ * @param folders 文件夹相对路径列表，例如 "a/b/c"
+ * @returns 相对路径到文件夹ID的映射
+ */
+export const prepareFolderUpload = (parentId: number, folders: string[]): Promise<{ [path: string]: number }> => {
+  if (parentId === undefined || parentId === null) {
+    return Promise.reject(new Error('parentId不能为空'));
+  }
+  
+  return request({
+    url: '/file/folder-upload',
+    method: 'post',
+    headers: {
+      'Content-Type': 'application/json'
+    },
+    data: {
+      parentId,
+      folders
+    }
+  });
+};
+
 /**
  * 重命名文件/文件夹
  */
@@ -185,6 +211,8 @@ export const clearRecycleBin = () => {
 export const getRecycleBinList = (params: {
   orderBy?: string;
   orderDirection?: 'asc' | 'desc';
+  cursor?: string;
+  limit?: number;
 }) => {
   return request({
     url: '/file/recycle',
@@ -209,14 +237,25 @@ export const getRecycleBinFolderContents = (folderId: number, params: {
 
 /**
  * 获取文件下载链接
+ * 大文件由后端返回对象存储的预签名URL，直接跳转下载；其余文件通过接口下载后生成Blob URL
  */
-export const getFileDownloadUrl = (id: number) => {
+export const getFileDownloadUrl = async (id: number): Promise<string> => {
+  const result = await request({
+    url: `/file/download-url/${id}`,
+    method: 'get'
+  }) as unknown as { url: string | null; fileName: string };
+  if (result && result.url) {
+    return result.url;
+  }
+  
   // 从localStorage获取token
   const token = localStorage.getItem('token');
   
   return request({
     url: `/file/download/${id}`,
     method: 'get',
+    // XHR跟随跨域重定向时无法携带Authorization请求头，要求后端直接返回文件内容
+    params: { redirect: false },
     responseType: 'blob',
     headers: {
       // 确保请求头包含Authorization
@@ -251,9 +290,9 @@ export function getBatchDownloadUrl(fileIds: number[]) {
   const token = localStorage.getItem('token');
   
   return request({
-    url: '/file/batch/download',
-    method: 'post',
-    data: { fileIds },
+    url: '/file/download/zip',
+    method: 'get',
+    params: { fileIds: fileIds.join(',') },
     responseType: 'blob',
     headers: {
       // 确保请求头包含Authorization
@@ -309,7 +348,9 @@ export const toggleStarFile = (id: number, isStar: boolean) => {
 export const getStarredFiles = (params: {
   orderBy?: string;
   orderDirection?: 'asc' | 'desc';
-}): Promise<{ list: FileInfo[] }> => {
+  cursor?: string;
+  limit?: number;
+}): Promise<{ list: FileInfo[], nextCursor?: string | null }> => {
   return request({
     url: '/file/starred',
     method: 'get',
@@ -392,6 +433,45 @@ export const uploadFile = (params: {
   });
 };
 
+/**
+ * 流式上传文件，请求体直接为文件内容，服务端边接收边写入存储
+ * @param params 上传参数
+ * @returns Promise
+ */
+export const uploadFileStream = (params: {
+  file: File;
+  parentId: number;
+  relativePath?: string;
+  onProgress?: (percentage: number) => void;
+}) => {
+  const { file, parentId, relativePath, onProgress } = params;
+  
+  // 从localStorage获取token
+  const token = localStorage.getItem('token');
+  
+  return request({
+    url: '/file/upload/stream',
+    method: 'put',
+    params: {
+      fileName: file.name,
+      parentId,
+      relativePath
+    },
+    data: file,
+    headers: {
+      'Content-Type': file.type || 'application/octet-stream',
+      // 确保请求头包含Authorization
+      Authorization: token ? `Bearer ${token}` : ''
+    },
+    onUploadProgress: (progressEvent: any) => {
+      if (onProgress && progressEvent.total > 0) {
+        const percentage = Math.round((progressEvent.loaded * 100) / progressEvent.total);
+        onProgress(percentage);
+      }
+    }
+  });
+};
+
 /**
  * 检查文件MD5
  * @param md5 文件MD5值
@@ -418,6 +498,36 @@ export const checkFileMd5 = (md5: string, fileName: string, fileSize: number) =>
   });
 };
 
+/**
+ * 获取分片预签名上传URL，分片直接上传到对象存储
+ * @param md5 文件MD5值
+ * @param fileName 文件名
+ * @param fileSize 文件大小
+ * @param chunks 分片数量
+ * @param chunkSize 分片大小，服务端据此校验分片数
+ * @returns Promise
+ */
+export const presignChunkUrls = (md5: string, fileName: string, fileSize: number, chunks: number, chunkSize?: number) => {
+  // 从localStorage获取token
+  const token = localStorage.getItem('token');
+  
+  return request({
+    url: '/file/presign-chunks',
+    method: 'post',
+    data: {
+      md5,
+      fileName,
+      fileSize,
+      chunks,
+      chunkSize
+    },
+    headers: {
+      // 确保请求头包含Authorization
+      Authorization: token ? `Bearer ${token}` : ''
+    }
+  });
+};
+
 /**
  * 上传文件分片
  * @param params 分片参数
@@ -455,6 +565,39 @@ export const uploadChunk = (params: {
   });
 };
 
+/**
+ * 流式上传文件分片，请求体直接为分片内容
+ * @param params 分片参数
+ * @returns Promise
+ */
+export const uploadChunkStream = (params: {
+  file: Blob;
+  md5: string;
+  chunkIndex: number;
+  chunks: number;
+}) => {
+  const { file, md5, chunkIndex, chunks } = params;
+  
+  // 从localStorage获取token
+  const token = localStorage.getItem('token');
+  
+  return request({
+    url: '/file/upload-chunk',
+    method: 'put',
+    params: {
+      md5,
+      chunkIndex,
+      chunks
+    },
+    data: file,
+    headers: {
+      'Content-Type': 'application/octet-stream',
+      // 确保请求头包含Authorization
+      Authorization: token ? `Bearer ${token}` : ''
+    }
+  });
+};
+
 /**
  * 合并文件分片
  * @param md5 文件MD5值